@@ -0,0 +1,54 @@
+package benchmark.jmh;
+
+import exception.ChomskyException;
+import exception.GrammarException;
+import grammar.Clean;
+import grammar.Grammar;
+import normalform.Chomsky;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures Chomsky.normalize on cleaned grammars
+ * The grammar is copied before each normalization
+ * (see CleanBenchmark.copy for the cost of the copy)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChomskyBenchmark {
+
+    @Param({"clean1.txt", "clean2.txt", "clean3.txt", "cyk1.txt", "earley1.txt",
+            "synthetic-100", "synthetic-1000"})
+    public String grammar;
+
+    private Grammar cleaned;
+
+    @Setup
+    public void setup() throws IOException, GrammarException {
+        cleaned = Grammars.load(grammar);
+        Clean.normalize(cleaned);
+    }
+
+    @Benchmark
+    public Grammar chomsky() throws ChomskyException, GrammarException {
+        Grammar g = new Grammar(cleaned);
+        Chomsky.normalize(g);
+        return g;
+    }
+}
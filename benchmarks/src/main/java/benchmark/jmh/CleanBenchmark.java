@@ -0,0 +1,65 @@
+package benchmark.jmh;
+
+import exception.GrammarException;
+import grammar.Clean;
+import grammar.Grammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures Clean.normalize
+ * The grammar is copied before each normalization,
+ * the copy alone is measured by the copy benchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CleanBenchmark {
+
+    @Param({"clean1.txt", "clean2.txt", "clean3.txt", "cyk1.txt", "earley1.txt",
+            "synthetic-100", "synthetic-1000"})
+    public String grammar;
+
+    private Grammar parsed;
+
+    @Setup
+    public void setup() throws IOException, GrammarException {
+        parsed = Grammars.load(grammar);
+    }
+
+    @Benchmark
+    public Grammar copy() {
+        return new Grammar(parsed);
+    }
+
+    @Benchmark
+    public Grammar clean(Options options) throws GrammarException {
+        Grammar g = new Grammar(parsed);
+        Clean.normalize(g, options.binarizeFirst);
+        return g;
+    }
+
+    /**
+     * The options of Clean.normalize, which do not apply to the copy
+     */
+    @State(Scope.Benchmark)
+    public static class Options {
+        @Param({"false", "true"})
+        public boolean binarizeFirst;
+    }
+}
@@ -0,0 +1,47 @@
+package benchmark.jmh;
+
+import exception.BadFormattedGrammarException;
+import grammar.Grammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures the parsing of a grammar file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrammarLoadBenchmark {
+
+    @Param({"clean1.txt", "clean2.txt", "clean3.txt", "cyk1.txt", "cyk2.txt", "cyk3.txt", "earley1.txt", "weighted1.txt",
+            "synthetic-100", "synthetic-1000"})
+    public String grammar;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Grammars.path(grammar);
+    }
+
+    @Benchmark
+    public Grammar load() throws IOException, BadFormattedGrammarException {
+        return new Grammar(file);
+    }
+}
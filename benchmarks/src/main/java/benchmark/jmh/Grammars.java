@@ -0,0 +1,133 @@
+package benchmark.jmh;
+
+import exception.BadFormattedGrammarException;
+import grammar.Grammar;
+import grammar.Rule;
+import grammar.Rules;
+import utils.SpecialChars;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * This class gives the grammars of the benchmarks :
+ * the files of the grammars directory (-Dgrammars.dir, ../grammars by default)
+ * and synthetic grammars of a given number of axioms ("synthetic-1000")
+ */
+final class Grammars {
+    /**
+     * The prefix of the synthetic grammars
+     */
+    private static final String SYNTHETIC = "synthetic-";
+
+    private Grammars() {}
+
+    /**
+     * Get the file of a grammar, a synthetic grammar
+     * is written in a temporary file
+     *
+     * @param name
+     *          the file in the grammars directory or the synthetic grammar
+     * @return
+     *          the file
+     * @throws IOException
+     */
+    static Path path(String name) throws IOException {
+        if (name.startsWith(SYNTHETIC)) {
+            Path file = Files.createTempFile("grammar", ".txt");
+            file.toFile().deleteOnExit();
+            Files.write(file, synthetic(Integer.parseInt(name.substring(SYNTHETIC.length()))).getBytes(StandardCharsets.UTF_8));
+            return file;
+        }
+
+        Path directory = Paths.get(System.getProperty("grammars.dir", "../grammars"));
+        if (!Files.isDirectory(directory)) {
+            directory = Paths.get("grammars");
+        }
+        return directory.resolve(name);
+    }
+
+    /**
+     * Parse a grammar
+     *
+     * @param name
+     *          the file in the grammars directory or the synthetic grammar
+     * @return
+     *          the grammar
+     * @throws IOException
+     * @throws BadFormattedGrammarException
+     */
+    static Grammar load(String name) throws IOException, BadFormattedGrammarException {
+        return new Grammar(path(name));
+    }
+
+    /**
+     * Generate a grammar with everything the normalizations have to remove :
+     * chains of unit rules, epsilon rules, long rules and terminals in long rules
+     *
+     * @param axioms
+     *          the number of axioms
+     * @return
+     *          the text of the grammar
+     */
+    static String synthetic(int axioms) {
+        StringBuilder ret = new StringBuilder();
+        for (int i = 0; i < axioms; ++i) {
+            String next = "<A" + (i + 1) % axioms + ">";
+            String afterNext = "<A" + (i + 2) % axioms + ">";
+            ret.append("<A").append(i).append("> : a").append(next).append('b').append(afterNext).append('c')
+                    .append(" | ").append(afterNext).append('e').append(next)
+                    .append(" | ").append((char) ('d' + i % 4));
+            if (i % 10 != 9 && i + 1 < axioms) {
+                ret.append(" | ").append(next);
+            }
+            if (i % 7 == 3) {
+                ret.append(" | ").append(SpecialChars.epsilon);
+            }
+            ret.append('\n');
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Generate random words on the terminals of a grammar
+     *
+     * @param g
+     *          the grammar
+     * @param count
+     *          the number of words
+     * @param length
+     *          the length of the words
+     * @return
+     *          the words
+     */
+    static String[] randomWords(Grammar g, int count, int length) {
+        TreeSet<Character> terminals = new TreeSet<>();
+        for (Rules rules : g.getAxioms().values()) {
+            for (Rule rule : rules) {
+                for (char c : rule.toCharArray()) {
+                    if (!Grammar.isAxiom(c) && c != SpecialChars.epsilon) {
+                        terminals.add(c);
+                    }
+                }
+            }
+        }
+
+        Character[] alphabet = terminals.toArray(new Character[0]);
+        Random random = new Random(length);
+        String[] words = new String[count];
+        for (int i = 0; i < count; ++i) {
+            StringBuilder word = new StringBuilder();
+            for (int j = 0; j < length; ++j) {
+                word.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+}
@@ -0,0 +1,69 @@
+package benchmark.jmh;
+
+import algorithm.CYK;
+import algorithm.CompiledGrammar;
+import exception.CYKException;
+import exception.ChomskyException;
+import exception.GrammarException;
+import grammar.Clean;
+import grammar.Grammar;
+import normalform.Chomsky;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures CYK.isMember on compiled grammars,
+ * with random words on the terminals of the grammar
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MembershipBenchmark {
+
+    /**
+     * The number of words, a power of 2
+     */
+    private static final int WORDS = 16;
+
+    @Param({"clean1.txt", "cyk1.txt", "cyk2.txt", "cyk3.txt", "earley1.txt",
+            "synthetic-100", "synthetic-1000"})
+    public String grammar;
+
+    @Param({"10", "50", "200"})
+    public int length;
+
+    private CompiledGrammar compiled;
+
+    private String[] words;
+
+    private int next;
+
+    @Setup
+    public void setup() throws IOException, GrammarException, ChomskyException, CYKException {
+        Grammar g = Grammars.load(grammar);
+        Clean.normalize(g);
+        Chomsky.normalize(g);
+        compiled = CompiledGrammar.compile(g);
+        words = Grammars.randomWords(g, WORDS, length);
+    }
+
+    @Benchmark
+    public boolean isMember() {
+        return CYK.isMember(compiled, words[next++ & (WORDS - 1)]);
+    }
+}
@@ -1,15 +1,31 @@
 import algorithm.CYK;
+import algorithm.CompiledGrammar;
+import algorithm.WeightedCYK;
+import cli.BatchChecker;
 import exception.CYKException;
 import exception.ChomskyException;
 import exception.GrammarException;
+import exception.GreibachException;
 import grammar.Clean;
 import grammar.Grammar;
 import normalform.Chomsky;
+import normalform.Greibach;
 
 import java.io.IOException;
+import java.util.Arrays;
 
+/**
+ * Usage :
+ *      Main                                            runs the examples
+ *      Main batch grammarsDirectory [wordsFile]        checks words against grammars (see BatchChecker)
+ */
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0 && "batch".equals(args[0])) {
+            BatchChecker.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         try {
             System.out.println("----------------------------------------------------------------------------------------------");
             System.out.println("TEST CLEAN + CHOMSKY");
@@ -26,16 +42,39 @@ public class Main {
             System.out.println("Chomsky Normal Form Grammar : ");
             System.out.println(g);
 
+            System.out.println("----------------------------------------------------------------------------------------------");
+            System.out.println("TEST GREIBACH");
+            System.out.println("----------------------------------------------------------------------------------------------");
+            g = new Grammar("grammars/cyk3.txt");
+            System.out.println("Parsed Grammar (size " + g.getSize() + ") : ");
+            System.out.println(g);
+
+            Greibach.normalize(g);
+            System.out.println("Greibach Normal Form Grammar (size " + g.getSize() + ") : ");
+            System.out.println(g);
+
             System.out.println("----------------------------------------------------------------------------------------------");
             System.out.println("TEST CYK");
             System.out.println("----------------------------------------------------------------------------------------------");
             g = new Grammar("grammars/cyk3.txt");
             System.out.println("Parsed Grammar : ");
             System.out.println(g);
-            System.out.println("CYK.isMember(aab) : " + CYK.isMember(g, "aab"));
-            System.out.println("CYK.isMember(aba) : " + CYK.isMember(g, "aba"));
+            CompiledGrammar compiled = CompiledGrammar.compile(g);
+            System.out.println("CYK.isMember(aab) : " + CYK.isMember(compiled, "aab"));
+            System.out.println("CYK.isMember(aba) : " + CYK.isMember(compiled, "aba"));
+            System.out.println("CYK.parseFirst(aab) : " + CYK.parseFirst(compiled, "aab"));
+
+            System.out.println("----------------------------------------------------------------------------------------------");
+            System.out.println("TEST WEIGHTED CYK");
+            System.out.println("----------------------------------------------------------------------------------------------");
+            g = new Grammar("grammars/weighted1.txt");
+            System.out.println("Parsed Grammar : ");
+            System.out.println(g);
+            compiled = CompiledGrammar.compile(g);
+            System.out.println("WeightedCYK.viterbi(aaab) : " + Math.exp(WeightedCYK.viterbi(compiled, "aaab")));
+            System.out.println("WeightedCYK.inside(aaab) : " + Math.exp(WeightedCYK.inside(compiled, "aaab")));
 
-        } catch (IOException | ChomskyException | GrammarException | CYKException e) {
+        } catch (IOException | ChomskyException | GreibachException | GrammarException | CYKException e) {
             e.printStackTrace();
         }
     }
@@ -0,0 +1,131 @@
+package algorithm;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * This class checks a batch of words against one compiled grammar
+ *
+ * The words are spread on the common fork-join pool,
+ * and each thread reuses its own chart (see MembershipChecker)
+ * sized to the longest word it has seen, for all the calls
+ * and all the grammars (see MembershipChecker.setGrammar).
+ * A stream of words is checked lazily (see members) :
+ * the words are not collected, so it may be infinite or read from a file.
+ */
+public class BatchCYK {
+    /**
+     * The checker of each thread, set to the grammar of the current call
+     */
+    private static final ThreadLocal<MembershipChecker> CHECKERS = new ThreadLocal<>();
+
+    private BatchCYK() {}
+
+    /**
+     * get the checker of the current thread, for a grammar
+     *
+     * @param g
+     *          the compiled grammar
+     * @return
+     *          the checker
+     */
+    private static MembershipChecker checker(CompiledGrammar g) {
+        MembershipChecker checker = CHECKERS.get();
+        if (checker == null) {
+            checker = new MembershipChecker(g);
+            CHECKERS.set(checker);
+        } else if (checker.getGrammar() != g) {
+            checker.setGrammar(g);
+        }
+        return checker;
+    }
+
+    /**
+     * Check if the given words can be generated
+     * with a compiled grammar
+     *
+     * @param g
+     *          the compiled grammar
+     * @param words
+     *          the words to check
+     * @return
+     *          for each word, in the same order, true if the word can be generated
+     */
+    public static boolean[] isMemberAll(CompiledGrammar g, String[] words) {
+        boolean[] results = new boolean[words.length];
+        IntStream.range(0, words.length).parallel().forEach(i -> results[i] = checker(g).isMember(words[i]));
+        return results;
+    }
+
+    /**
+     * Check if the given words can be generated
+     * with a compiled grammar
+     *
+     * @param g
+     *          the compiled grammar
+     * @param words
+     *          the words to check
+     * @return
+     *          for each word, in the same order, true if the word can be generated
+     */
+    public static boolean[] isMemberAll(CompiledGrammar g, List<String> words) {
+        return isMemberAll(g, words.toArray(new String[words.size()]));
+    }
+
+    /**
+     * Check if the given words can be generated
+     * with a compiled grammar
+     *
+     * @param g
+     *          the compiled grammar
+     * @param words
+     *          the words to check
+     * @return
+     *          for each word, in the encounter order of the stream, true if the word can be generated
+     */
+    public static boolean[] isMemberAll(CompiledGrammar g, Stream<String> words) {
+        Results results = new Results();
+        members(g, words).forEachOrdered(results::add);
+        return results.toArray();
+    }
+
+    /**
+     * Check lazily if the given words can be generated
+     * with a compiled grammar
+     *
+     * A word is checked when its result is consumed, by the thread
+     * consuming it with its own chart : the stream is parallel
+     * if the stream of words is parallel.
+     *
+     * @param g
+     *          the compiled grammar
+     * @param words
+     *          the words to check
+     * @return
+     *          for each word, in the encounter order of the stream of words, true if the word can be generated
+     */
+    public static Stream<Boolean> members(CompiledGrammar g, Stream<String> words) {
+        return words.map(word -> checker(g).isMember(word));
+    }
+
+    /**
+     * The results of a stream of words, in a growing array
+     */
+    private static final class Results {
+        private boolean[] values = new boolean[64];
+        private int size;
+
+        void add(boolean value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        boolean[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
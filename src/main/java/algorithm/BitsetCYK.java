@@ -0,0 +1,67 @@
+package algorithm;
+
+import exception.CYKException;
+import grammar.Grammar;
+
+/**
+ * This class performs the CYK algorithm on a chart of bitsets
+ *
+ * A cell of the chart is a bitset of axiom ids (see CompiledGrammar
+ * and BitsetChart), and the binary rules A -> BC are looked up through the
+ * (B, C) index of the compiled grammar.
+ * Combining two cells then costs a few ORs instead of
+ * scanning every rule of the grammar.
+ */
+public class BitsetCYK {
+
+    private BitsetCYK() {}
+
+    /**
+     * Check if the given word can be generated
+     * with the grammar
+     *
+     * Condition : the grammar must be in CNF (Chomsky Normal Form)
+     *
+     * @param g
+     *          the grammar
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     * @throws CYKException
+     *          thrown if the grammar is not in CNF
+     * @deprecated the grammar is compiled on every call,
+     *          compile it once (see CompiledGrammar.compile) and use isMember(CompiledGrammar, String)
+     */
+    @Deprecated
+    public static boolean isMember(Grammar g, String word) throws CYKException {
+        return isMember(CompiledGrammar.compile(g), word);
+    }
+
+    /**
+     * Check if the given word can be generated
+     * with a compiled grammar
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     * @throws IllegalArgumentException
+     *          if the chart of the word does not fit in memory
+     */
+    public static boolean isMember(CompiledGrammar g, String word) {
+        if (word.length() == 0) {
+            return g.acceptsEmptyWord();
+        }
+
+        BitsetChart chart = new BitsetChart(g);
+        if (!chart.init(word)) {
+            return false;
+        }
+
+        chart.fill();
+        return chart.isMember();
+    }
+}
@@ -0,0 +1,348 @@
+package algorithm;
+
+import metrics.ChartEvent;
+import metrics.Metrics;
+
+/**
+ * This class stores the chart of the bitset CYK algorithm
+ *
+ * The cell (i, j) is the set of axioms producing the characters
+ * j to j + i of the word, as a bitset of axiom ids.
+ * Each cell is stored twice :
+ * - in byStart, where the cells starting at the same character are contiguous
+ * - in byEnd, where the cells ending at the same character are contiguous
+ * so the left cells (j, k) and the right cells (j + k + 1, i - k - 1)
+ * combined to fill a cell are both read sequentially.
+ *
+ * The arrays are kept between words and between grammars (see setGrammar),
+ * they only grow when a longer word is checked.
+ *
+ * The pairs (B, C) checked against the rules are counted
+ * in local variables, for the statistics of the chart (see Metrics).
+ */
+final class BitsetChart {
+    /**
+     * The compiled grammar
+     */
+    private CompiledGrammar g;
+
+    /**
+     * The number of longs in a cell
+     */
+    private int words;
+
+    /**
+     * The length of the current word
+     */
+    private int wordLength;
+
+    /**
+     * The cells, grouped by first character
+     */
+    private long[] byStart = new long[0];
+
+    /**
+     * The cells, grouped by last character
+     */
+    private long[] byEnd = new long[0];
+
+    BitsetChart(CompiledGrammar g) {
+        setGrammar(g);
+    }
+
+    /**
+     * Use the chart for another grammar, keeping its arrays
+     *
+     * @param g
+     *          the compiled grammar
+     */
+    void setGrammar(CompiledGrammar g) {
+        this.g = g;
+        this.words = g.words;
+        this.wordLength = 0;
+    }
+
+    /**
+     * Prepare the chart for a word and build its first line
+     * by finding axioms which produce each characters
+     *
+     * @param word
+     *          the word to check
+     * @return
+     *          false if a non producible character is found, true otherwise
+     * @throws IllegalArgumentException
+     *          if the chart of the word does not fit in memory (see fitsInMemory)
+     */
+    boolean init(CharSequence word) {
+        if (!fitsInMemory(g, word.length())) {
+            throw new IllegalArgumentException("The chart of a word of length " + word.length() + " does not fit in memory");
+        }
+
+        wordLength = word.length();
+        int size = (int) (cellsCount(wordLength) * words);
+        if (byStart.length < size) {
+            byStart = new long[size];
+            byEnd = new long[size];
+        }
+
+        for (int i = 0; i < wordLength; ++i) {
+            int cell = startOffset(i);
+            if (!g.copyTerminalParents(word.charAt(i), byStart, cell)) {
+                return false;
+            }
+            System.arraycopy(byStart, cell, byEnd, endOffset(i), words);
+        }
+
+        return true;
+    }
+
+    /**
+     * get the length of the current word
+     *
+     * @return
+     *          the length of the word
+     */
+    int getWordLength() {
+        return wordLength;
+    }
+
+    /**
+     * Fill all the lines of the chart,
+     * the first one must have been built by init
+     * The statistics of the chart are sent to the listener
+     * if the instrumentation is enabled
+     */
+    void fill() {
+        boolean instrumented = Metrics.isEnabled();
+        long start = instrumented ? System.nanoTime() : 0;
+
+        long checks = 0;
+        for (int i = 1; i < wordLength; ++i) {
+            for (int j = 0; j < wordLength - i; ++j) {
+                checks += fillCell(i, j);
+            }
+        }
+
+        if (instrumented) {
+            report(System.nanoTime() - start, checks, false);
+        }
+    }
+
+    /**
+     * Send the statistics of the chart to the listener (see Metrics)
+     *
+     * @param nanos
+     *          the time to fill the chart, in nanoseconds
+     * @param pairChecks
+     *          the number of pairs (B, C) checked
+     * @param parallel
+     *          true if the chart has been filled by several threads
+     */
+    void report(long nanos, long pairChecks, boolean parallel) {
+        long nonEmptyCells = 0;
+        for (int cell = 0, size = (int) (cellsCount(wordLength) * words); cell < size; cell += words) {
+            for (int x = 0; x < words; ++x) {
+                if (byStart[cell + x] != 0) {
+                    ++nonEmptyCells;
+                    break;
+                }
+            }
+        }
+        Metrics.chartFilled(new ChartEvent(wordLength, nanos, cellsCount(wordLength), nonEmptyCells, pairChecks, parallel));
+    }
+
+    /**
+     * Fill the cell (i, j) of the chart from the cells
+     * of the previous lines
+     *
+     * @param i
+     *          the line of the cell
+     * @param j
+     *          the column of the cell
+     * @return
+     *          the number of pairs (B, C) checked
+     */
+    long fillCell(int i, int j) {
+        if (words == 1) {
+            return fillSingleWordCell(i, j);
+        }
+
+        int left = startOffset(j);
+        int right = endOffset(j + i) + (i - 1) * words;
+        int cell = startOffset(j) + i * words;
+        for (int x = 0; x < words; ++x) {
+            byStart[cell + x] = 0;
+        }
+
+        long checks = 0;
+        for (int k = 0; k < i; ++k, left += words, right -= words) {
+            checks += combine(left, right, cell);
+        }
+        System.arraycopy(byStart, cell, byEnd, endOffset(j + i) + i * words, words);
+        return checks;
+    }
+
+    /**
+     * Fill the cell (i, j) of the chart when the grammar
+     * has at most 64 axioms : each cell is a single long
+     *
+     * @param i
+     *          the line of the cell
+     * @param j
+     *          the column of the cell
+     * @return
+     *          the number of pairs (B, C) checked
+     */
+    private long fillSingleWordCell(int i, int j) {
+        int[] pairStart = g.pairStart;
+        int[] pairRight = g.pairRight;
+        long[] pairParents = g.pairParents;
+        int left = startOffset(j);
+        int right = endOffset(j + i) + i - 1;
+
+        long cell = 0;
+        long checks = 0;
+        for (int k = 0; k < i; ++k) {
+            long B = byStart[left + k];
+            long C = byEnd[right - k];
+            if (B == 0 || C == 0) {
+                continue;
+            }
+
+            while (B != 0) {
+                int b = Long.numberOfTrailingZeros(B);
+                B &= B - 1;
+                int end = pairStart[b + 1];
+                checks += end - pairStart[b];
+                for (int p = pairStart[b]; p < end; ++p) {
+                    if ((C & (1L << pairRight[p])) != 0) {
+                        cell |= pairParents[p];
+                    }
+                }
+            }
+        }
+
+        byStart[left + i] = cell;
+        byEnd[right + 1] = cell;
+        return checks;
+    }
+
+    /**
+     * Add to a cell all axioms A such as A -> BC
+     * with B in the left cell and C in the right cell
+     *
+     * @param left
+     *          the position of the left cell in byStart
+     * @param right
+     *          the position of the right cell in byEnd
+     * @param cell
+     *          the position of the cell to fill in byStart
+     * @return
+     *          the number of pairs (B, C) checked
+     */
+    private long combine(int left, int right, int cell) {
+        long checks = 0;
+        for (int w = 0; w < words; ++w) {
+            long bits = byStart[left + w];
+            while (bits != 0) {
+                int B = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                checks += g.pairStart[B + 1] - g.pairStart[B];
+                for (int p = g.pairStart[B]; p < g.pairStart[B + 1]; ++p) {
+                    int C = g.pairRight[p];
+                    if ((byEnd[right + (C >>> 6)] & (1L << C)) != 0) {
+                        int parents = p * words;
+                        for (int x = 0; x < words; ++x) {
+                            byStart[cell + x] |= g.pairParents[parents + x];
+                        }
+                    }
+                }
+            }
+        }
+        return checks;
+    }
+
+    /**
+     * Check if an axiom produces the characters j to j + i of the word
+     *
+     * @param i
+     *          the line of the cell
+     * @param j
+     *          the column of the cell
+     * @param axiom
+     *          the id of the axiom
+     * @return
+     *          true if the axiom is in the cell (i, j), false otherwise
+     */
+    boolean contains(int i, int j, int axiom) {
+        return (byStart[startOffset(j) + i * words + (axiom >>> 6)] & (1L << axiom)) != 0;
+    }
+
+    /**
+     * Check if the starting axiom produces the whole word
+     *
+     * @return
+     *          true if the word can be generated, false otherwise
+     */
+    boolean isMember() {
+        int start = g.getStartAxiom();
+        return start >= 0 && contains(wordLength - 1, 0, start);
+    }
+
+    /**
+     * Check if the chart of a word can be indexed by an int
+     * and fits in half of the maximum memory of the JVM
+     *
+     * @param g
+     *          the compiled grammar
+     * @param wordLength
+     *          the length of the word
+     * @return
+     *          true if the word can be checked with a chart, false otherwise
+     */
+    static boolean fitsInMemory(CompiledGrammar g, int wordLength) {
+        long size = cellsCount(wordLength) * g.words;
+        return size <= Integer.MAX_VALUE - 8 && 2 * size * Long.BYTES <= Runtime.getRuntime().maxMemory() / 2;
+    }
+
+    /**
+     * get the number of cells of the chart
+     *
+     * @param wordLength
+     *          the length of the word
+     * @return
+     *          the number of cells
+     */
+    private static long cellsCount(int wordLength) {
+        return (long) wordLength * (wordLength + 1) / 2;
+    }
+
+    /**
+     * Get the position of the first cell starting at a character
+     * The cells starting at the character j are stored with
+     * an increasing length : (j, 0), (j, 1), ..., (j, wordLength - j - 1)
+     *
+     * @param j
+     *          the position of the character
+     * @return
+     *          the position of the cell (0, j) in byStart
+     */
+    private int startOffset(int j) {
+        return (int) (((long) j * wordLength - (long) j * (j - 1) / 2) * words);
+    }
+
+    /**
+     * Get the position of the first cell ending at a character
+     * The cells ending at the character e are stored with
+     * an increasing length : (0, e), (1, e - 1), ..., (e, 0)
+     *
+     * @param e
+     *          the position of the character
+     * @return
+     *          the position of the cell (0, e) in byEnd
+     */
+    private int endOffset(int e) {
+        return (int) ((long) e * (e + 1) / 2 * words);
+    }
+}
@@ -0,0 +1,99 @@
+package algorithm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is a thread safe map with a maximal size
+ * When it is full, the least recently used entry is evicted.
+ *
+ * The hits, misses and evictions are counted.
+ */
+final class BoundedCache<K, V> {
+    private final Map<K, V> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Default constructor
+     *
+     * @param maxSize
+     *          the maximal number of entries
+     */
+    BoundedCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The size of a cache must be strictly positive : " + maxSize);
+        }
+
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > maxSize) {
+                    ++evictions;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * get the value of a key, and count a hit or a miss
+     *
+     * @param key
+     *          the key
+     * @return
+     *          the value, null if it is not in the cache
+     */
+    synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return value;
+    }
+
+    /**
+     * Add a value, the least recently used entry is evicted if the cache is full
+     * If another thread has added the key meanwhile, its value is kept
+     *
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     * @return
+     *          the value in the cache
+     */
+    synchronized V put(K key, V value) {
+        V present = entries.get(key);
+        if (present != null) {
+            return present;
+        }
+        entries.put(key, value);
+        return value;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -2,21 +2,29 @@ package algorithm;
 
 import exception.CYKException;
 import grammar.Grammar;
-import grammar.Rule;
-import grammar.Rules;
-import normalform.Chomsky;
 
-import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * This class performs the CYK (CockeYoungerKasami)
  * algorithm to check if a word can be generated
- * by a Grammar
- *
- * TODO : get the parse tree
+ * by a Grammar, and to get its parse trees
  */
 public class CYK {
 
+    /**
+     * The length from which the chart is filled
+     * by several threads (see ParallelCYK)
+     */
+    public static final int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * The length from which the chart is computed
+     * by products of boolean matrices (see ValiantCYK),
+     * measured with ValiantBenchmark
+     */
+    public static final int VALIANT_THRESHOLD = 512;
+
     private CYK() {}
 
     /**
@@ -33,125 +41,153 @@ public class CYK {
      *          true if the word can be generated, false otherwise
      * @throws CYKException
      *          thrown if the grammar is not in CNF
+     * @deprecated the grammar is compiled on every call,
+     *          compile it once (see CompiledGrammar.compile) and use isMember(CompiledGrammar, String)
      */
+    @Deprecated
     public static boolean isMember(Grammar g, String word) throws CYKException {
-        if (!Chomsky.isNormalized(g)) {
-            throw new CYKException("Grammar is not in CNF");
-        }
+        return isMember(CompiledGrammar.compile(g), word);
+    }
 
-        if (word.length() == 0) {
-            return g.getAxiomsWithEpsilon().contains(g.getStartAxiom());
+    /**
+     * Check if the given word can be generated
+     * with a compiled grammar
+     *
+     * The CNF condition has already been checked by the compilation,
+     * and the compiled grammar can be shared between threads.
+     * Words longer than PARALLEL_THRESHOLD are checked
+     * on the common fork-join pool, and words longer than
+     * VALIANT_THRESHOLD with Valiant's algorithm
+     * if its matrices fit in memory
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     * @throws IllegalArgumentException
+     *          if the chart of the word does not fit in memory
+     */
+    public static boolean isMember(CompiledGrammar g, String word) {
+        if (word.length() >= VALIANT_THRESHOLD && ValiantCYK.fitsInMemory(g, word.length())) {
+            return ValiantCYK.isMember(g, word);
         }
 
-        int wordLength = word.length();
-        String[][] vector = new String[wordLength][wordLength];
-        initVector(vector, wordLength);
-
-        try {
-            buildFirstLine(g, word, vector);
-            buildVector(g, wordLength, vector);
-            return vector[wordLength - 1][0].contains(Character.toString(g.getStartAxiom()));
-        } catch (CYKException e) {
-            return false;
+        if (word.length() >= PARALLEL_THRESHOLD) {
+            return ParallelCYK.isMember(g, word);
         }
+
+        return BitsetCYK.isMember(g, word);
     }
 
     /**
-     * Build the first line of the vector by
-     * finding axioms which produce each characters
+     * Check if the given words can be generated
+     * with the grammar, which is compiled once for all words
+     *
+     * Condition : the grammar must be in CNF (Chomsky Normal Form)
      *
      * @param g
      *          the grammar
-     * @param word
-     *          the word to check
-     * @param vector
-     *          the vector of the CYK algorithm
+     * @param words
+     *          the words to check
+     * @return
+     *          for each word, in the encounter order of the stream, true if the word can be generated
      * @throws CYKException
-     *          if a non producible character is found
+     *          thrown if the grammar is not in CNF
+     * @deprecated the grammar is compiled on every call,
+     *          compile it once (see CompiledGrammar.compile) and use isMemberAll(CompiledGrammar, Stream)
      */
-    private static void buildFirstLine(Grammar g, String word, String[][] vector) throws CYKException {
-        int wordLength = word.length();
-        for (int i = 0; i < wordLength; ++i) {
-            for (Map.Entry<Character, Rules> axiom : g.getAxioms().entrySet()) {
-                for (Rule rule : axiom.getValue()) {
-                    if (rule.size() == 1 && rule.get(0) == word.charAt(i) && !vector[0][i].contains(axiom.getKey().toString())) {
-                        vector[0][i] += axiom.getKey().toString();
-                    }
-                }
-            }
-
-            if (vector[0][i].length() == 0) {
-                throw new CYKException("The character " + word.charAt(i) + " is not in the grammar");
-            }
-        }
+    @Deprecated
+    public static boolean[] isMemberAll(Grammar g, Stream<String> words) throws CYKException {
+        return isMemberAll(CompiledGrammar.compile(g), words);
     }
 
     /**
-     * Build the vector by following the CYK algorithm
-     * The indices for characters "B" and "C"
-     * are calculated following the following table
+     * Check if the given words can be generated
+     * with a compiled grammar (see BatchCYK)
      *
-     * 2nd line	    3rd line 	    4th line	    5th line      ...
+     * @param g
+     *          the compiled grammar
+     * @param words
+     *          the words to check
+     * @return
+     *          for each word, in the encounter order of the stream, true if the word can be generated
+     */
+    public static boolean[] isMemberAll(CompiledGrammar g, Stream<String> words) {
+        return BatchCYK.isMemberAll(g, words);
+    }
+
+    /**
+     * Get the forest of all the parse trees of a word
+     * (see ParseForest)
      *
-     * 00 - 01      00 - 11		    00 - 21		    00 - 31
-     * 10 - 02	    10 - 12		    10 - 22
-     * 20 - 03	    20 - 13
-     * 30 - 04
+     * Condition : the grammar must be in CNF (Chomsky Normal Form)
      *
-     * 01 - 02      01 - 12		    01 - 22
-     * 11 - 03	    11 - 13
-     * 21 - 04
+     * @param g
+     *          the grammar
+     * @param word
+     *          the word to parse
+     * @return
+     *          the forest, null if the word can not be generated or if it is the empty word
+     * @throws CYKException
+     *          thrown if the grammar is not in CNF
+     * @deprecated the grammar is compiled on every call,
+     *          compile it once (see CompiledGrammar.compile) and use parse(CompiledGrammar, String)
+     */
+    @Deprecated
+    public static ParseForest parse(Grammar g, String word) throws CYKException {
+        return parse(CompiledGrammar.compile(g), word);
+    }
+
+    /**
+     * Get the forest of all the parse trees of a word
+     * with a compiled grammar (see ParseForest)
      *
-     * 02 - 03	    02 - 13
-     * 12 - 04
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to parse
+     * @return
+     *          the forest, null if the word can not be generated or if it is the empty word
+     */
+    public static ParseForest parse(CompiledGrammar g, String word) {
+        return ParseCYK.parse(g, word);
+    }
+
+    /**
+     * Get the first parse tree of a word
      *
-     * 03 - 04
+     * Condition : the grammar must be in CNF (Chomsky Normal Form)
      *
      * @param g
      *          the grammar
-     * @param wordLength
-     *          the length of the word
-     * @param vector
-     *          the vector of the CYK algorithm
+     * @param word
+     *          the word to parse
+     * @return
+     *          the first parse tree, null if the word can not be generated or if it is the empty word
+     * @throws CYKException
+     *          thrown if the grammar is not in CNF
+     * @deprecated the grammar is compiled on every call,
+     *          compile it once (see CompiledGrammar.compile) and use parseFirst(CompiledGrammar, String)
      */
-    private static void buildVector(Grammar g, int wordLength, String[][] vector) {
-        for (int i = 1; i < wordLength; ++i) {
-            for (int j = 0; j < wordLength - i; ++j) {
-                for (int k = 0; k < i; ++k) {
-
-                    for (Character B : vector[k][j].toCharArray()) {
-                        for (Character C : vector[i - k - 1][j + k +1].toCharArray()) {
-
-                            for (Map.Entry<Character, Rules> axiom : g.getAxioms().entrySet()) {
-                                for (Rule rule : axiom.getValue()) {
-                                    if (rule.size() == 2 && rule.get(0) == B && rule.get(1) == C && !vector[i][j].contains(axiom.getKey().toString())) {
-                                        vector[i][j] += axiom.getKey().toString();
-                                    }
-                                }
-                            }
-
-                        }
-                    }
-
-                }
-            }
-        }
+    @Deprecated
+    public static ParseTree parseFirst(Grammar g, String word) throws CYKException {
+        return parseFirst(CompiledGrammar.compile(g), word);
     }
 
     /**
-     * Init the vector with 0 length strings
-     * Avoid modifying null strings
+     * Get the first parse tree of a word
+     * with a compiled grammar
      *
-     * @param vector
-     *          the vector to initialize
-     * @param wordLength
-     *          the length of the word
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to parse
+     * @return
+     *          the first parse tree, null if the word can not be generated or if it is the empty word
      */
-    private static void initVector(String[][] vector, int wordLength) {
-        for (int i = 0; i < wordLength; ++i) {
-            for (int j = 0; j < wordLength; ++j) {
-                vector[i][j] = "";
-            }
-        }
+    public static ParseTree parseFirst(CompiledGrammar g, String word) {
+        return ParseCYK.parseFirst(g, word);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,733 @@
+package algorithm;
+
+import exception.CYKException;
+import exception.GrammarException;
+import exception.SnapshotException;
+import grammar.Grammar;
+import grammar.Rule;
+import grammar.Rules;
+import grammar.Symbols;
+import metrics.Metrics;
+import metrics.Stage;
+import metrics.StageEvent;
+import normalform.Chomsky;
+import utils.SpecialChars;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * This class is an immutable snapshot of a grammar in CNF
+ * (Chomsky Normal Form), ready for the parsing algorithms
+ *
+ * The CNF condition is checked once, when the grammar is compiled.
+ * Each axiom gets a dense integer id, and the productions
+ * are stored in primitive arrays :
+ * - the terminal rules A -> a as a sorted table of terminals
+ *   with, for each terminal, the bitset of axioms producing it
+ * - the binary rules A -> BC indexed by their first axiom :
+ *   for each B, every C such as A -> BC exists, with the bitset of all those A
+ *
+ * The logarithms of the weights of the rules are stored
+ * for the weighted CYK algorithm.
+ *
+ * Nothing is modified after the construction, so a compiled grammar
+ * can be shared by any number of threads, even if the source
+ * grammar is modified afterwards.
+ */
+public final class CompiledGrammar {
+    /**
+     * The axiom of each id
+     */
+    private final char[] names;
+
+    /**
+     * The names of the axioms, a copy of the table of the grammar
+     */
+    private final Symbols symbols;
+
+    /**
+     * The id of the starting axiom
+     */
+    private final int startAxiom;
+
+    /**
+     * true if the starting axiom produces epsilon
+     */
+    private final boolean acceptsEmptyWord;
+
+    /**
+     * The number of longs in a bitset of axioms
+     */
+    final int words;
+
+    /**
+     * The terminals, sorted
+     */
+    private final char[] terminals;
+
+    /**
+     * The bitset of axioms producing each terminal
+     */
+    private final long[] terminalParents;
+
+    /**
+     * For each axiom B, the pairs (B, C) are stored
+     * from pairStart[B] to pairStart[B + 1]
+     */
+    final int[] pairStart;
+
+    /**
+     * The axiom C of each pair
+     */
+    final int[] pairRight;
+
+    /**
+     * The bitset of axioms A -> BC of each pair
+     */
+    final long[] pairParents;
+
+    /**
+     * The axiom B of each pair
+     */
+    final int[] pairLeft;
+
+    /**
+     * For each axiom A, the pairs (B, C) such as A -> BC are stored
+     * in rulePairs from ruleStart[A] to ruleStart[A + 1]
+     */
+    final int[] ruleStart;
+
+    /**
+     * The pairs of the binary rules, grouped by axiom
+     */
+    final int[] rulePairs;
+
+    /**
+     * The logarithm of the weight of each binary rule, in the order of rulePairs
+     */
+    final double[] ruleLogWeights;
+
+    /**
+     * The logarithm of the inside weight of each binary rule, in the order of rulePairs
+     */
+    final double[] ruleLogInsideWeights;
+
+    /**
+     * For each terminal t, the rules A -> t are stored in terminalRuleAxioms
+     * and terminalRuleLogWeights from terminalRuleStart[t] to terminalRuleStart[t + 1]
+     */
+    final int[] terminalRuleStart;
+
+    /**
+     * The axiom of each terminal rule, grouped by terminal
+     */
+    final int[] terminalRuleAxioms;
+
+    /**
+     * The logarithm of the weight of each terminal rule, grouped by terminal
+     */
+    final double[] terminalRuleLogWeights;
+
+    /**
+     * The logarithm of the inside weight of each terminal rule, grouped by terminal
+     */
+    final double[] terminalRuleLogInsideWeights;
+
+    /**
+     * The logarithm of the weight of the rule S -> epsilon
+     */
+    final double emptyWordLogWeight;
+
+    /**
+     * The logarithm of the inside weight of the rule S -> epsilon
+     */
+    final double emptyWordLogInsideWeight;
+
+    /**
+     * true for the axioms added by the normalization (see Grammar.isGeneratedAxiom)
+     */
+    private final boolean[] generated;
+
+    private CompiledGrammar(Grammar g) {
+        Map<Character, Integer> ids = new HashMap<>();
+        for (Character axiomName : g.getAxioms().keySet()) {
+            ids.put(axiomName, ids.size());
+        }
+
+        names = new char[ids.size()];
+        symbols = new Symbols(g.getSymbols());
+        generated = new boolean[ids.size()];
+        ids.forEach((name, id) -> {
+            names[id] = name;
+            generated[id] = g.isGeneratedAxiom(name);
+        });
+        startAxiom = ids.getOrDefault(g.getStartAxiom(), -1);
+        acceptsEmptyWord = g.getAxiomsWithEpsilon().contains(g.getStartAxiom());
+        words = Math.max(1, (names.length + 63) >>> 6);
+
+        TreeMap<Character, long[]> terminalRules = new TreeMap<>();
+        // the logarithms of the weight and of the inside weight of the rules
+        TreeMap<Character, Map<Integer, double[]>> terminalWeights = new TreeMap<>();
+        Map<Long, double[]> binaryWeights = new HashMap<>();
+        double[] emptyWeights = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        List<Map<Integer, long[]>> pairs = new ArrayList<>();
+        for (int i = 0; i < names.length; ++i) {
+            pairs.add(new HashMap<>());
+        }
+
+        int nbPairs = 0;
+        for (Map.Entry<Character, Rules> axiom : g.getAxioms().entrySet()) {
+            int A = ids.get(axiom.getKey());
+            for (Rule rule : axiom.getValue()) {
+                double[] weights = {Math.log(axiom.getValue().getWeight(rule)), Math.log(axiom.getValue().getInsideWeight(rule))};
+                if (rule.size() == 1) {
+                    set(terminalRules.computeIfAbsent(rule.get(0), c -> new long[words]), A);
+                    terminalWeights.computeIfAbsent(rule.get(0), c -> new LinkedHashMap<>()).putIfAbsent(A, weights);
+                    if (A == startAxiom && rule.get(0) == SpecialChars.epsilon) {
+                        emptyWeights = weights;
+                    }
+                } else if (rule.size() == 2 && ids.containsKey(rule.get(0)) && ids.containsKey(rule.get(1))) {
+                    Map<Integer, long[]> rights = pairs.get(ids.get(rule.get(0)));
+                    int C = ids.get(rule.get(1));
+                    binaryWeights.putIfAbsent(binaryKey(A, ids.get(rule.get(0)), C), weights);
+                    if (!rights.containsKey(C)) {
+                        rights.put(C, new long[words]);
+                        ++nbPairs;
+                    }
+                    set(rights.get(C), A);
+                }
+            }
+        }
+
+        emptyWordLogWeight = emptyWeights[0];
+        emptyWordLogInsideWeight = emptyWeights[1];
+        terminals = new char[terminalRules.size()];
+        terminalParents = new long[terminalRules.size() * words];
+        terminalRuleStart = new int[terminalRules.size() + 1];
+        int nbTerminalRules = 0;
+        int t = 0;
+        for (Map.Entry<Character, long[]> terminal : terminalRules.entrySet()) {
+            terminals[t] = terminal.getKey();
+            System.arraycopy(terminal.getValue(), 0, terminalParents, t * words, words);
+            nbTerminalRules += terminalWeights.get(terminal.getKey()).size();
+            terminalRuleStart[++t] = nbTerminalRules;
+        }
+
+        terminalRuleAxioms = new int[nbTerminalRules];
+        terminalRuleLogWeights = new double[nbTerminalRules];
+        terminalRuleLogInsideWeights = new double[nbTerminalRules];
+        int r = 0;
+        for (Map<Integer, double[]> weights : terminalWeights.values()) {
+            for (Map.Entry<Integer, double[]> weight : weights.entrySet()) {
+                terminalRuleAxioms[r] = weight.getKey();
+                terminalRuleLogWeights[r] = weight.getValue()[0];
+                terminalRuleLogInsideWeights[r] = weight.getValue()[1];
+                ++r;
+            }
+        }
+
+        pairStart = new int[names.length + 1];
+        pairLeft = new int[nbPairs];
+        pairRight = new int[nbPairs];
+        pairParents = new long[nbPairs * words];
+        int p = 0;
+        for (int B = 0; B < names.length; ++B) {
+            pairStart[B] = p;
+            for (Map.Entry<Integer, long[]> pair : pairs.get(B).entrySet()) {
+                pairLeft[p] = B;
+                pairRight[p] = pair.getKey();
+                System.arraycopy(pair.getValue(), 0, pairParents, p * words, words);
+                ++p;
+            }
+        }
+        pairStart[names.length] = p;
+
+        ruleStart = new int[names.length + 1];
+        for (p = 0; p < nbPairs; ++p) {
+            for (int w = 0; w < words; ++w) {
+                for (long bits = pairParents[p * words + w]; bits != 0; bits &= bits - 1) {
+                    ++ruleStart[(w << 6) + Long.numberOfTrailingZeros(bits) + 1];
+                }
+            }
+        }
+        for (int A = 0; A < names.length; ++A) {
+            ruleStart[A + 1] += ruleStart[A];
+        }
+        rulePairs = new int[ruleStart[names.length]];
+        ruleLogWeights = new double[rulePairs.length];
+        ruleLogInsideWeights = new double[rulePairs.length];
+        int[] next = Arrays.copyOf(ruleStart, names.length);
+        for (p = 0; p < nbPairs; ++p) {
+            for (int w = 0; w < words; ++w) {
+                for (long bits = pairParents[p * words + w]; bits != 0; bits &= bits - 1) {
+                    int A = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    double[] weights = binaryWeights.get(binaryKey(A, pairLeft[p], pairRight[p]));
+                    ruleLogWeights[next[A]] = weights[0];
+                    ruleLogInsideWeights[next[A]] = weights[1];
+                    rulePairs[next[A]++] = p;
+                }
+            }
+        }
+    }
+
+    private CompiledGrammar(char[] names, Symbols symbols, boolean[] generated, int startAxiom, boolean acceptsEmptyWord,
+                            double emptyWordLogWeight, double emptyWordLogInsideWeight,
+                            char[] terminals, long[] terminalParents, int[] terminalRuleStart, int[] terminalRuleAxioms,
+                            double[] terminalRuleLogWeights, double[] terminalRuleLogInsideWeights,
+                            int[] pairStart, int[] pairLeft, int[] pairRight, long[] pairParents, int[] ruleStart, int[] rulePairs,
+                            double[] ruleLogWeights, double[] ruleLogInsideWeights) {
+        this.names = names;
+        this.symbols = symbols;
+        this.generated = generated;
+        this.startAxiom = startAxiom;
+        this.acceptsEmptyWord = acceptsEmptyWord;
+        this.emptyWordLogWeight = emptyWordLogWeight;
+        this.emptyWordLogInsideWeight = emptyWordLogInsideWeight;
+        this.words = Math.max(1, (names.length + 63) >>> 6);
+        this.terminals = terminals;
+        this.terminalParents = terminalParents;
+        this.terminalRuleStart = terminalRuleStart;
+        this.terminalRuleAxioms = terminalRuleAxioms;
+        this.terminalRuleLogWeights = terminalRuleLogWeights;
+        this.terminalRuleLogInsideWeights = terminalRuleLogInsideWeights;
+        this.pairStart = pairStart;
+        this.pairLeft = pairLeft;
+        this.pairRight = pairRight;
+        this.pairParents = pairParents;
+        this.ruleStart = ruleStart;
+        this.rulePairs = rulePairs;
+        this.ruleLogWeights = ruleLogWeights;
+        this.ruleLogInsideWeights = ruleLogInsideWeights;
+    }
+
+    /**
+     * Compile a grammar
+     *
+     * Condition : the grammar must be in CNF (Chomsky Normal Form)
+     *
+     * @param g
+     *          the grammar to compile
+     * @return
+     *          the compiled grammar
+     * @throws CYKException
+     *          thrown if the grammar is not in CNF
+     */
+    public static CompiledGrammar compile(Grammar g) throws CYKException {
+        if (!Chomsky.isNormalized(g)) {
+            throw new CYKException("Grammar is not in CNF");
+        }
+
+        StageEvent event = Metrics.begin(Stage.COMPILE, g);
+        CompiledGrammar compiled = new CompiledGrammar(g);
+        Metrics.end(event, g);
+        return compiled;
+    }
+
+    /**
+     * get the number of axioms
+     *
+     * @return
+     *          the number of axioms
+     */
+    public int getAxiomsCount() {
+        return names.length;
+    }
+
+    /**
+     * get the name of an axiom
+     *
+     * @param id
+     *          the id of the axiom
+     * @return
+     *          the name of the axiom
+     */
+    public char getAxiomName(int id) {
+        return names[id];
+    }
+
+    /**
+     * get the table of the axiom names of the grammar
+     *
+     * @return
+     *          the names of the axioms
+     */
+    public Symbols getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Check if an axiom has been added by the normalization
+     * of the grammar (see Grammar.isGeneratedAxiom)
+     *
+     * @param id
+     *          the id of the axiom
+     * @return
+     *          true if the axiom is generated, false otherwise
+     */
+    public boolean isGeneratedAxiom(int id) {
+        return generated[id];
+    }
+
+    /**
+     * get the id of the starting axiom
+     *
+     * @return
+     *          the id of the starting axiom, -1 if it has been removed from the grammar
+     */
+    public int getStartAxiom() {
+        return startAxiom;
+    }
+
+    /**
+     * Check if the empty word is in the language
+     *
+     * @return
+     *          true if the starting axiom produces epsilon, false otherwise
+     */
+    public boolean acceptsEmptyWord() {
+        return acceptsEmptyWord;
+    }
+
+    /**
+     * Get the position of the bitset of axioms producing a terminal
+     *
+     * @param c
+     *          the terminal
+     * @return
+     *          the position of the bitset in terminalParents, -1 if no axiom produces the terminal
+     */
+    int terminalOffset(char c) {
+        int t = terminalIndex(c);
+        return t < 0 ? -1 : t * words;
+    }
+
+    /**
+     * Get the index of a terminal
+     *
+     * @param c
+     *          the terminal
+     * @return
+     *          the index of the terminal, -1 if no axiom produces the terminal
+     */
+    int terminalIndex(char c) {
+        int t = Arrays.binarySearch(terminals, c);
+        return t < 0 ? -1 : t;
+    }
+
+    /**
+     * get the number of terminals
+     *
+     * @return
+     *          the number of terminals produced by the axioms
+     */
+    int getTerminalsCount() {
+        return terminals.length;
+    }
+
+    /**
+     * get a terminal by its index
+     *
+     * @param t
+     *          the index of the terminal
+     * @return
+     *          the terminal
+     */
+    char getTerminal(int t) {
+        return terminals[t];
+    }
+
+    /**
+     * Copy the bitset of axioms producing a terminal
+     *
+     * @param c
+     *          the terminal
+     * @param dest
+     *          the destination array
+     * @param destPos
+     *          the position in the destination array
+     * @return
+     *          false if no axiom produces the terminal, true otherwise
+     */
+    boolean copyTerminalParents(char c, long[] dest, int destPos) {
+        int offset = terminalOffset(c);
+        if (offset < 0) {
+            return false;
+        }
+
+        System.arraycopy(terminalParents, offset, dest, destPos, words);
+        return true;
+    }
+
+    /**
+     * Check if the pair (B, C) is produced by the axiom A
+     *
+     * @param pair
+     *          the pair
+     * @param axiom
+     *          the id of the axiom A
+     * @return
+     *          true if the rule A -> BC exists, false otherwise
+     */
+    boolean hasParent(int pair, int axiom) {
+        return (pairParents[pair * words + (axiom >>> 6)] & (1L << axiom)) != 0;
+    }
+
+    /**
+     * Check if an axiom has a rule A -> a
+     *
+     * @param axiom
+     *          the id of the axiom
+     * @return
+     *          true if the axiom produces a terminal, false otherwise
+     */
+    boolean producesTerminal(int axiom) {
+        for (int t = 0; t < terminals.length; ++t) {
+            if ((terminalParents[t * words + (axiom >>> 6)] & (1L << axiom)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the arrays of the compiled grammar (see GrammarSnapshot)
+     * The axioms are written with their names, because the characters
+     * of the axioms depend on the order in which the names were interned (see Symbols)
+     *
+     * @param out
+     *          the output
+     * @throws IOException
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(names.length);
+        for (int A = 0; A < names.length; ++A) {
+            String name = symbols.getName(names[A]);
+            out.writeInt(name.length());
+            out.writeChars(name);
+            out.writeBoolean(generated[A]);
+        }
+        out.writeInt(startAxiom);
+        out.writeBoolean(acceptsEmptyWord);
+        out.writeDouble(emptyWordLogWeight);
+        out.writeDouble(emptyWordLogInsideWeight);
+
+        out.writeInt(terminals.length);
+        out.writeChars(new String(terminals));
+        writeArray(out, terminalParents);
+        writeArray(out, terminalRuleStart);
+        writeArray(out, terminalRuleAxioms);
+        writeArray(out, terminalRuleLogWeights);
+        writeArray(out, terminalRuleLogInsideWeights);
+
+        writeArray(out, pairStart);
+        writeArray(out, pairLeft);
+        writeArray(out, pairRight);
+        writeArray(out, pairParents);
+        writeArray(out, ruleStart);
+        writeArray(out, rulePairs);
+        writeArray(out, ruleLogWeights);
+        writeArray(out, ruleLogInsideWeights);
+    }
+
+    /**
+     * Read the arrays written by write, the arrays are copied
+     * from the buffer and checked, the grammar is not compiled again
+     *
+     * @param in
+     *          the buffer, at the position of the arrays
+     * @return
+     *          the compiled grammar
+     * @throws SnapshotException
+     *          if the arrays are not consistent
+     */
+    static CompiledGrammar read(ByteBuffer in) throws SnapshotException {
+        try {
+            char[] names = new char[checkLength(in.getInt(), in, 5)];
+            Symbols symbols = new Symbols();
+            boolean[] generated = new boolean[names.length];
+            for (int A = 0; A < names.length; ++A) {
+                char[] name = new char[checkLength(in.getInt(), in, 2)];
+                in.asCharBuffer().get(name);
+                skip(in, 2 * name.length);
+                names[A] = symbols.getAxiom(new String(name));
+                generated[A] = in.get() != 0;
+            }
+            int startAxiom = in.getInt();
+            boolean acceptsEmptyWord = in.get() != 0;
+            double emptyWordLogWeight = in.getDouble();
+            double emptyWordLogInsideWeight = in.getDouble();
+
+            char[] terminals = new char[checkLength(in.getInt(), in, 2)];
+            in.asCharBuffer().get(terminals);
+            skip(in, 2 * terminals.length);
+            long[] terminalParents = readLongs(in);
+            int[] terminalRuleStart = readInts(in);
+            int[] terminalRuleAxioms = readInts(in);
+            double[] terminalRuleLogWeights = readDoubles(in);
+            double[] terminalRuleLogInsideWeights = readDoubles(in);
+
+            int[] pairStart = readInts(in);
+            int[] pairLeft = readInts(in);
+            int[] pairRight = readInts(in);
+            long[] pairParents = readLongs(in);
+            int[] ruleStart = readInts(in);
+            int[] rulePairs = readInts(in);
+            double[] ruleLogWeights = readDoubles(in);
+            double[] ruleLogInsideWeights = readDoubles(in);
+
+            CompiledGrammar g = new CompiledGrammar(names, symbols, generated, startAxiom, acceptsEmptyWord,
+                    emptyWordLogWeight, emptyWordLogInsideWeight,
+                    terminals, terminalParents, terminalRuleStart, terminalRuleAxioms,
+                    terminalRuleLogWeights, terminalRuleLogInsideWeights,
+                    pairStart, pairLeft, pairRight, pairParents, ruleStart, rulePairs,
+                    ruleLogWeights, ruleLogInsideWeights);
+            g.check();
+            return g;
+        } catch (BufferUnderflowException e) {
+            throw new SnapshotException("Truncated compiled grammar");
+        } catch (GrammarException e) {
+            throw new SnapshotException(e.getMessage());
+        }
+    }
+
+    /**
+     * Check the sizes of the arrays and the ids they contain
+     *
+     * @throws SnapshotException
+     *          if the arrays are not consistent
+     */
+    private void check() throws SnapshotException {
+        int n = names.length;
+        int nbPairs = pairLeft.length;
+        boolean consistent = startAxiom >= -1 && startAxiom < n
+                && terminalParents.length == terminals.length * words
+                && terminalRuleStart.length == terminals.length + 1
+                && terminalRuleStart[terminals.length] == terminalRuleAxioms.length
+                && terminalRuleLogWeights.length == terminalRuleAxioms.length
+                && terminalRuleLogInsideWeights.length == terminalRuleAxioms.length
+                && pairStart.length == n + 1 && pairStart[n] == nbPairs
+                && pairRight.length == nbPairs && pairParents.length == nbPairs * words
+                && ruleStart.length == n + 1 && ruleStart[n] == rulePairs.length
+                && ruleLogWeights.length == rulePairs.length
+                && ruleLogInsideWeights.length == rulePairs.length
+                && isIncreasing(terminalRuleStart) && isIncreasing(pairStart) && isIncreasing(ruleStart)
+                && isBetween(terminalRuleAxioms, n) && isBetween(pairLeft, n)
+                && isBetween(pairRight, n) && isBetween(rulePairs, nbPairs);
+        for (int t = 1; consistent && t < terminals.length; ++t) {
+            consistent = terminals[t - 1] < terminals[t];
+        }
+        if (consistent && (n & 63) != 0) {
+            // the bits after the last axiom must be 0
+            long unused = -1L << n;
+            for (int i = words - 1; i < terminalParents.length; i += words) {
+                consistent &= (terminalParents[i] & unused) == 0;
+            }
+            for (int i = words - 1; i < pairParents.length; i += words) {
+                consistent &= (pairParents[i] & unused) == 0;
+            }
+        }
+        Set<Character> distinctNames = new HashSet<>();
+        for (char name : names) {
+            consistent &= distinctNames.add(name);
+        }
+        if (!consistent) {
+            throw new SnapshotException("Inconsistent compiled grammar");
+        }
+    }
+
+    private static boolean isIncreasing(int[] array) {
+        if (array.length == 0 || array[0] != 0) {
+            return false;
+        }
+        for (int i = 1; i < array.length; ++i) {
+            if (array[i] < array[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBetween(int[] array, int max) {
+        for (int value : array) {
+            if (value < 0 || value >= max) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checkLength(int length, ByteBuffer in, int elementSize) {
+        if (length < 0 || (long) length * elementSize > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    private static void skip(ByteBuffer in, int bytes) {
+        // Buffer.position, because ByteBuffer.position does not exist in Java 8
+        ((Buffer) in).position(in.position() + bytes);
+    }
+
+    private static void writeArray(DataOutputStream out, int[] array) throws IOException {
+        out.writeInt(array.length);
+        for (int value : array) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeArray(DataOutputStream out, long[] array) throws IOException {
+        out.writeInt(array.length);
+        for (long value : array) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeArray(DataOutputStream out, double[] array) throws IOException {
+        out.writeInt(array.length);
+        for (double value : array) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int[] array = new int[checkLength(in.getInt(), in, 4)];
+        in.asIntBuffer().get(array);
+        skip(in, 4 * array.length);
+        return array;
+    }
+
+    private static long[] readLongs(ByteBuffer in) {
+        long[] array = new long[checkLength(in.getInt(), in, 8)];
+        in.asLongBuffer().get(array);
+        skip(in, 8 * array.length);
+        return array;
+    }
+
+    private static double[] readDoubles(ByteBuffer in) {
+        double[] array = new double[checkLength(in.getInt(), in, 8)];
+        in.asDoubleBuffer().get(array);
+        skip(in, 8 * array.length);
+        return array;
+    }
+
+    private long binaryKey(int A, int B, int C) {
+        return ((long) A * names.length + B) * names.length + C;
+    }
+
+    private static void set(long[] bitset, int bit) {
+        bitset[bit >>> 6] |= 1L << bit;
+    }
+}
@@ -0,0 +1,510 @@
+package algorithm;
+
+import grammar.Grammar;
+import grammar.Rule;
+import grammar.Rules;
+import utils.SpecialChars;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class performs the Earley algorithm to check if a word
+ * can be generated by a Grammar, without any normalization :
+ * epsilon rules, unit rules and long rules are used as they are.
+ *
+ * The grammar is compiled once in primitive arrays :
+ * - a dotted rule (A -> alpha . beta) is an int, the rules being stored
+ *   one after the other with one dotted rule per position of the dot
+ * - a symbol is an int : an axiom id (>= 0) or -(c + 1) for a terminal c
+ * - an Earley item (dotted rule, origin) is a long
+ *
+ * The algorithm has the following optimizations :
+ * - nullable axioms are skipped when they are predicted (Aycock and Horspool),
+ *   so the completion of an empty derivation is never needed
+ * - the items of a finished set waiting for an axiom are indexed,
+ *   so a completion only reads the items it advances
+ * - the deterministic chains of completions of right recursive rules
+ *   are memoized (Leo), which makes the algorithm linear on LR-regular grammars
+ *
+ * A compiled grammar is immutable and can be shared between threads.
+ */
+public final class Earley {
+    /**
+     * The next symbol of a completed dotted rule
+     */
+    private static final int COMPLETE = Integer.MIN_VALUE;
+
+    /**
+     * The symbol following the dot of each dotted rule
+     */
+    private final int[] next;
+
+    /**
+     * The axiom of the rule of each dotted rule
+     */
+    private final int[] lhs;
+
+    /**
+     * For each axiom X, the dotted rules X -> . alpha are stored
+     * in predictions from predictionStart[X] to predictionStart[X + 1]
+     */
+    private final int[] predictionStart;
+
+    /**
+     * The dotted rules with the dot at the beginning, grouped by axiom
+     */
+    private final int[] predictions;
+
+    /**
+     * true for the axioms deriving the empty word
+     */
+    private final boolean[] nullable;
+
+    /**
+     * The dotted rule S' -> . S of the added starting rule
+     */
+    private final int startItem;
+
+    private Earley(Grammar g) {
+        Map<Character, Integer> ids = new HashMap<>();
+        for (Character axiomName : g.getAxioms().keySet()) {
+            ids.put(axiomName, ids.size());
+        }
+        for (Rules rules : g.getAxioms().values()) {
+            for (Rule rule : rules) {
+                for (Character c : rule) {
+                    if (Grammar.isAxiom(c) && !ids.containsKey(c)) {
+                        ids.put(c, ids.size());
+                    }
+                }
+            }
+        }
+        ids.putIfAbsent(g.getStartAxiom(), ids.size());
+
+        // the starting rule S' -> S is the last axiom
+        int axioms = ids.size() + 1;
+        int nbItems = 2;
+        for (Rules rules : g.getAxioms().values()) {
+            for (Rule rule : rules) {
+                nbItems += rule.size() + 1;
+            }
+        }
+
+        next = new int[nbItems];
+        lhs = new int[nbItems];
+        predictionStart = new int[axioms + 1];
+        predictions = new int[nbItems];
+        int item = 0;
+        int prediction = 0;
+        for (Map.Entry<Character, Rules> axiom : g.getAxioms().entrySet()) {
+            int A = ids.get(axiom.getKey());
+            predictionStart[A] = prediction;
+            for (Rule rule : axiom.getValue()) {
+                predictions[prediction++] = item;
+                for (Character c : rule) {
+                    if (c == SpecialChars.epsilon) {
+                        continue;
+                    }
+                    lhs[item] = A;
+                    next[item++] = ids.containsKey(c) ? ids.get(c) : -(c + 1);
+                }
+                lhs[item] = A;
+                next[item++] = COMPLETE;
+            }
+        }
+        // the axioms present only in rules have no prediction
+        for (int X = g.getAxioms().size(); X < axioms; ++X) {
+            predictionStart[X] = prediction;
+        }
+
+        int start = ids.get(g.getStartAxiom());
+        startItem = item;
+        predictions[prediction++] = item;
+        lhs[item] = axioms - 1;
+        next[item++] = start;
+        lhs[item] = axioms - 1;
+        next[item] = COMPLETE;
+        predictionStart[axioms] = prediction;
+
+        nullable = new boolean[axioms];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int X = 0; X < axioms; ++X) {
+                for (int p = predictionStart[X]; p < predictionStart[X + 1] && !nullable[X]; ++p) {
+                    int d = predictions[p];
+                    while (next[d] >= 0 && nullable[next[d]]) {
+                        ++d;
+                    }
+                    if (next[d] == COMPLETE) {
+                        nullable[X] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compile a grammar for the Earley algorithm
+     * The grammar can be used as it is parsed
+     *
+     * @param g
+     *          the grammar
+     * @return
+     *          the compiled grammar
+     */
+    public static Earley compile(Grammar g) {
+        return new Earley(g);
+    }
+
+    /**
+     * Check if the given word can be generated
+     * with the grammar
+     *
+     * @param g
+     *          the grammar, in any form
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     */
+    public static boolean isMember(Grammar g, String word) {
+        return compile(g).isMember(word);
+    }
+
+    /**
+     * Check if the given word can be generated
+     * with the compiled grammar
+     *
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     */
+    public boolean isMember(String word) {
+        return new Recognizer(word).recognize();
+    }
+
+    private static long item(int d, int origin) {
+        return ((long) origin << 32) | d;
+    }
+
+    private static int dottedRule(long item) {
+        return (int) item;
+    }
+
+    private static int origin(long item) {
+        return (int) (item >>> 32);
+    }
+
+    /**
+     * This class contains the Earley sets of a word
+     */
+    private final class Recognizer {
+        private final String word;
+
+        /**
+         * The items of all sets, one set after the other
+         */
+        private long[] items = new long[64];
+
+        /**
+         * The position of the first item of each set
+         */
+        private final int[] setStart;
+
+        /**
+         * The number of items
+         */
+        private int size;
+
+        /**
+         * The items waiting for an axiom in each finished set,
+         * as (axiom << 32 | position in items), sorted
+         */
+        private long[] waiting = new long[64];
+
+        /**
+         * The position of the first waiting item of each set
+         */
+        private final int[] waitingStart;
+
+        /**
+         * The items of the current set, to avoid duplicates
+         */
+        private final LongHashTable current = new LongHashTable();
+
+        /**
+         * The items scanned for the next set
+         */
+        private long[] scanned = new long[16];
+
+        /**
+         * The Leo items, by (set << 32 | axiom)
+         */
+        private final LongHashTable leo = new LongHashTable();
+
+        private Recognizer(String word) {
+            this.word = word;
+            this.setStart = new int[word.length() + 2];
+            this.waitingStart = new int[word.length() + 2];
+        }
+
+        private boolean recognize() {
+            add(item(startItem, 0));
+            int nbScanned = 0;
+            for (int i = 0; i <= word.length(); ++i) {
+                for (int e = setStart[i]; e < size; ++e) {
+                    long entry = items[e];
+                    int d = dottedRule(entry);
+                    int symbol = next[d];
+                    if (symbol == COMPLETE) {
+                        if (origin(entry) < i) {
+                            complete(lhs[d], origin(entry));
+                        }
+                    } else if (symbol >= 0) {
+                        for (int p = predictionStart[symbol]; p < predictionStart[symbol + 1]; ++p) {
+                            add(item(predictions[p], i));
+                        }
+                        if (nullable[symbol]) {
+                            add(item(d + 1, origin(entry)));
+                        }
+                    } else if (i < word.length() && symbol == -(word.charAt(i) + 1)) {
+                        if (nbScanned == scanned.length) {
+                            scanned = Arrays.copyOf(scanned, nbScanned * 2);
+                        }
+                        scanned[nbScanned++] = item(d + 1, origin(entry));
+                    }
+                }
+
+                if (i == word.length()) {
+                    break;
+                }
+                finishSet(i);
+                if (nbScanned == 0) {
+                    return false;
+                }
+                for (int s = 0; s < nbScanned; ++s) {
+                    add(scanned[s]);
+                }
+                nbScanned = 0;
+            }
+
+            for (int e = setStart[word.length()]; e < size; ++e) {
+                if (items[e] == item(startItem + 1, 0)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Add an item to the current set if it is not already present
+         *
+         * @param entry
+         *          the item
+         */
+        private void add(long entry) {
+            if (!current.add(entry, 0)) {
+                return;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = entry;
+        }
+
+        /**
+         * Index the items of the finished set i waiting for an axiom
+         * and start the set i + 1
+         *
+         * @param i
+         *          the finished set
+         */
+        private void finishSet(int i) {
+            int start = waitingStart[i];
+            int end = start;
+            for (int e = setStart[i]; e < size; ++e) {
+                int symbol = next[dottedRule(items[e])];
+                if (symbol >= 0) {
+                    if (end == waiting.length) {
+                        waiting = Arrays.copyOf(waiting, end * 2);
+                    }
+                    waiting[end++] = ((long) symbol << 32) | e;
+                }
+            }
+            Arrays.sort(waiting, start, end);
+            waitingStart[i + 1] = end;
+            setStart[i + 1] = size;
+            current.clear();
+        }
+
+        /**
+         * Advance the items of the set j waiting for an axiom
+         *
+         * @param axiom
+         *          the completed axiom
+         * @param j
+         *          the origin of the completed item
+         */
+        private void complete(int axiom, int j) {
+            long topmost = leoItem(j, axiom);
+            if (topmost >= 0) {
+                add(topmost);
+                return;
+            }
+
+            for (int w = firstWaiting(j, axiom); w < waitingStart[j + 1] && (int) (waiting[w] >>> 32) == axiom; ++w) {
+                long entry = items[(int) waiting[w]];
+                add(item(dottedRule(entry) + 1, origin(entry)));
+            }
+        }
+
+        /**
+         * Get the Leo item of an axiom in the set j : if only one item
+         * B -> alpha . A waits for A, completing A completes B,
+         * and so on while the chain is deterministic.
+         * The Leo item is the last completed item of the chain.
+         *
+         * @param j
+         *          the finished set
+         * @param axiom
+         *          the axiom A
+         * @return
+         *          the topmost completed item, -1 if the completion is not deterministic
+         */
+        private long leoItem(int j, int axiom) {
+            long key = ((long) j << 32) | axiom;
+            long memo = leo.get(key);
+            if (memo != LongHashTable.ABSENT) {
+                return memo;
+            }
+
+            long topmost = -1;
+            int w = firstWaiting(j, axiom);
+            if (w < waitingStart[j + 1] && (int) (waiting[w] >>> 32) == axiom
+                    && (w + 1 == waitingStart[j + 1] || (int) (waiting[w + 1] >>> 32) != axiom)) {
+                long entry = items[(int) waiting[w]];
+                int d = dottedRule(entry);
+                int k = origin(entry);
+                if (next[d + 1] == COMPLETE) {
+                    topmost = k < j ? leoItem(k, lhs[d]) : -1;
+                    if (topmost < 0) {
+                        topmost = item(d + 1, k);
+                    }
+                }
+            }
+
+            leo.add(key, topmost);
+            return topmost;
+        }
+
+        /**
+         * Find the first item of the set j waiting for an axiom
+         *
+         * @param j
+         *          the finished set
+         * @param axiom
+         *          the axiom
+         * @return
+         *          the position in waiting
+         */
+        private int firstWaiting(int j, int axiom) {
+            long key = (long) axiom << 32;
+            int low = waitingStart[j];
+            int high = waitingStart[j + 1];
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (waiting[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * This class is a hash table of longs to longs with open addressing
+     * The keys must be positive
+     */
+    private static final class LongHashTable {
+        private static final long ABSENT = Long.MIN_VALUE;
+        private static final long FREE = -1;
+
+        private long[] keys = new long[64];
+        private long[] values = new long[64];
+        private int size;
+
+        private LongHashTable() {
+            Arrays.fill(keys, FREE);
+        }
+
+        /**
+         * Add a key if it is not present
+         *
+         * @return
+         *          true if the key was added, false if it was present
+         */
+        private boolean add(long key, long value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == FREE) {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    ++size;
+                    return true;
+                }
+                if (keys[slot] == key) {
+                    return false;
+                }
+            }
+        }
+
+        private long get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == FREE) {
+                    return ABSENT;
+                }
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+        }
+
+        private void clear() {
+            if (size > 0) {
+                Arrays.fill(keys, FREE);
+                size = 0;
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldKeys[i] != FREE) {
+                    add(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
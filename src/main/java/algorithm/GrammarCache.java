@@ -0,0 +1,152 @@
+package algorithm;
+
+import exception.CYKException;
+import exception.ChomskyException;
+import exception.GrammarException;
+import grammar.Clean;
+import grammar.Grammar;
+import normalform.Chomsky;
+
+/**
+ * This class remembers the grammars already normalized and compiled,
+ * with the membership of the words checked against each of them
+ *
+ * The grammars are identified by their fingerprint (see Grammar.getFingerprint),
+ * so a grammar parsed again from the same file is neither cleaned,
+ * nor put in CNF, nor compiled again.
+ * The cache has a maximal number of grammars : when it is full,
+ * the least recently used grammar is forgotten with its words.
+ * It can be shared between threads.
+ */
+public final class GrammarCache {
+    /**
+     * The membership caches, by fingerprint of the grammar as parsed
+     */
+    private final BoundedCache<String, MembershipCache> grammars;
+
+    /**
+     * The maximal number of words remembered for each grammar
+     */
+    private final int maxWords;
+
+    /**
+     * Default constructor
+     *
+     * @param maxGrammars
+     *          the maximal number of grammars remembered
+     * @param maxWords
+     *          the maximal number of words remembered for each grammar
+     */
+    public GrammarCache(int maxGrammars, int maxWords) {
+        if (maxWords <= 0) {
+            throw new IllegalArgumentException("The size of a cache must be strictly positive : " + maxWords);
+        }
+        this.grammars = new BoundedCache<>(maxGrammars);
+        this.maxWords = maxWords;
+    }
+
+    /**
+     * Get the compiled grammar of a grammar
+     * The grammar is not modified : a copy is cleaned and put in CNF
+     *
+     * @param g
+     *          the grammar, in any form
+     * @return
+     *          the compiled grammar
+     * @throws ChomskyException
+     * @throws GrammarException
+     * @throws CYKException
+     */
+    public CompiledGrammar compile(Grammar g) throws ChomskyException, GrammarException, CYKException {
+        return get(g).getGrammar();
+    }
+
+    /**
+     * Check if the given word can be generated with a grammar
+     *
+     * @param g
+     *          the grammar, in any form
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     * @throws ChomskyException
+     * @throws GrammarException
+     * @throws CYKException
+     */
+    public boolean isMember(Grammar g, String word) throws ChomskyException, GrammarException, CYKException {
+        return get(g).isMember(word);
+    }
+
+    /**
+     * Get the membership cache of a grammar,
+     * the grammar is normalized and compiled if needed
+     *
+     * @param g
+     *          the grammar, in any form
+     * @return
+     *          the membership cache of the grammar
+     * @throws ChomskyException
+     * @throws GrammarException
+     * @throws CYKException
+     */
+    public MembershipCache get(Grammar g) throws ChomskyException, GrammarException, CYKException {
+        String fingerprint = g.getFingerprint();
+        MembershipCache cache = grammars.get(fingerprint);
+        if (cache != null) {
+            return cache;
+        }
+
+        Grammar normalized = new Grammar(g);
+        Clean.normalize(normalized);
+        Chomsky.normalize(normalized);
+        return grammars.put(fingerprint, new MembershipCache(CompiledGrammar.compile(normalized), maxWords));
+    }
+
+    /**
+     * get the number of grammars in the cache
+     *
+     * @return
+     *          the number of grammars
+     */
+    public int size() {
+        return grammars.size();
+    }
+
+    /**
+     * get the number of grammars found in the cache
+     *
+     * @return
+     *          the number of hits
+     */
+    public long getHits() {
+        return grammars.getHits();
+    }
+
+    /**
+     * get the number of grammars normalized and compiled
+     *
+     * @return
+     *          the number of misses
+     */
+    public long getMisses() {
+        return grammars.getMisses();
+    }
+
+    /**
+     * get the number of grammars forgotten because the cache was full
+     *
+     * @return
+     *          the number of evictions
+     */
+    public long getEvictions() {
+        return grammars.getEvictions();
+    }
+
+    /**
+     * Forget all the grammars
+     */
+    public void clear() {
+        grammars.clear();
+    }
+}
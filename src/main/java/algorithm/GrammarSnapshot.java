@@ -0,0 +1,205 @@
+package algorithm;
+
+import exception.CYKException;
+import exception.ChomskyException;
+import exception.GrammarException;
+import exception.SnapshotException;
+import grammar.Clean;
+import grammar.Grammar;
+import normalform.Chomsky;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * This class saves a compiled grammar in a binary file,
+ * so a process can load it without parsing, cleaning
+ * and normalizing the source grammar again
+ *
+ * Format (big endian) :
+ * - the magic number "CNFG" and the version of the format
+ * - the CRC32 of the rest of the file
+ * - the fingerprint of the source grammar (see Grammar.getFingerprint)
+ * - the arrays of the compiled grammar : the names of the axioms,
+ *   the terminals with their axioms, and the index of the binary rules
+ *   (see CompiledGrammar)
+ *
+ * The file is memory mapped to be loaded, and a snapshot
+ * of another version, corrupted or made from another
+ * source grammar is rejected.
+ */
+public final class GrammarSnapshot {
+    /**
+     * The first bytes of a snapshot : "CNFG"
+     */
+    private static final int MAGIC = 0x434E4647;
+
+    /**
+     * The version of the format (2 : the inside weights of the rules)
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The size of the magic number, the version and the checksum
+     */
+    private static final int HEADER_SIZE = 16;
+
+    private GrammarSnapshot() {}
+
+    /**
+     * Clean, normalize and compile a grammar, then save it
+     * The grammar is not modified : a copy is normalized
+     *
+     * @param source
+     *          the grammar, in any form
+     * @param file
+     *          the snapshot to write
+     * @throws IOException
+     * @throws ChomskyException
+     * @throws GrammarException
+     * @throws CYKException
+     */
+    public static void write(Grammar source, Path file) throws IOException, ChomskyException, GrammarException, CYKException {
+        Grammar normalized = new Grammar(source);
+        Clean.normalize(normalized);
+        Chomsky.normalize(normalized);
+        write(CompiledGrammar.compile(normalized), source.getFingerprint(), file);
+    }
+
+    /**
+     * Save a compiled grammar
+     * The file is written next to the snapshot then moved,
+     * so a process never loads a partial snapshot
+     *
+     * @param g
+     *          the compiled grammar
+     * @param sourceFingerprint
+     *          the fingerprint of the grammar before the normalization
+     * @param file
+     *          the snapshot to write
+     * @throws IOException
+     */
+    public static void write(CompiledGrammar g, String sourceFingerprint, Path file) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        out.writeUTF(sourceFingerprint);
+        g.write(out);
+        out.flush();
+
+        byte[] bytes = content.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+
+        byte[] header = new byte[HEADER_SIZE];
+        ByteBuffer.wrap(header).putInt(MAGIC).putInt(VERSION).putLong(checksum.getValue());
+
+        Path absolute = file.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer[] buffers = {ByteBuffer.wrap(header), ByteBuffer.wrap(bytes)};
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Load a snapshot made from a grammar
+     *
+     * @param file
+     *          the snapshot
+     * @param source
+     *          the grammar of the snapshot, as parsed
+     * @return
+     *          the compiled grammar
+     * @throws IOException
+     * @throws SnapshotException
+     *          if the snapshot is not valid or if it was made from another grammar
+     */
+    public static CompiledGrammar load(Path file, Grammar source) throws IOException, SnapshotException {
+        return load(file, source.getFingerprint());
+    }
+
+    /**
+     * Load a snapshot
+     *
+     * @param file
+     *          the snapshot
+     * @param sourceFingerprint
+     *          the fingerprint of the source grammar, null to accept any grammar
+     * @return
+     *          the compiled grammar
+     * @throws IOException
+     * @throws SnapshotException
+     *          if the snapshot is not valid or if it was made from another grammar
+     */
+    public static CompiledGrammar load(Path file, String sourceFingerprint) throws IOException, SnapshotException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new SnapshotException("Not a grammar snapshot : " + file);
+            }
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (in.getInt() != MAGIC) {
+                throw new SnapshotException("Not a grammar snapshot : " + file);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new SnapshotException("Unsupported snapshot version " + version + " (expected " + VERSION + ") : " + file);
+            }
+            long expectedChecksum = in.getLong();
+            CRC32 checksum = new CRC32();
+            checksum.update(in.duplicate());
+            if (checksum.getValue() != expectedChecksum) {
+                throw new SnapshotException("Corrupted snapshot : " + file);
+            }
+
+            String fingerprint = readUTF(in);
+            if (sourceFingerprint != null && !sourceFingerprint.equals(fingerprint)) {
+                throw new SnapshotException("Stale snapshot, the source grammar has changed : " + file);
+            }
+            CompiledGrammar g = CompiledGrammar.read(in);
+            if (in.hasRemaining()) {
+                throw new SnapshotException("Corrupted snapshot : " + file);
+            }
+            return g;
+        }
+    }
+
+    /**
+     * Read a string written by DataOutputStream.writeUTF (a fingerprint in ASCII)
+     *
+     * @param in
+     *          the buffer
+     * @return
+     *          the string
+     * @throws SnapshotException
+     *          if the string is truncated
+     */
+    private static String readUTF(ByteBuffer in) throws SnapshotException {
+        if (in.remaining() < 2) {
+            throw new SnapshotException("Truncated snapshot");
+        }
+        int length = in.getShort() & 0xFFFF;
+        if (in.remaining() < length) {
+            throw new SnapshotException("Truncated snapshot");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,331 @@
+package algorithm;
+
+import java.util.Arrays;
+
+/**
+ * This class recognizes a word given one character at a time
+ * with the CYK algorithm
+ *
+ * Appending the character e only computes the new column of the chart,
+ * the cells (s, e) ending at this character, so each character costs
+ * O(e^2) instead of the O(e^3) of a new check of the whole prefix.
+ * The cells are stored by first character (rows) and by last
+ * character (columns), so the cells combined for a split are read
+ * sequentially. reset() keeps the arrays for the next word.
+ *
+ * A session is not thread safe : use one session per thread.
+ */
+public final class IncrementalCYK {
+    /**
+     * The compiled grammar
+     */
+    private final CompiledGrammar g;
+
+    /**
+     * The number of longs in a bitset of axioms
+     */
+    private final int words;
+
+    /**
+     * The bitset of productive axioms
+     */
+    private final long[] productive;
+
+    /**
+     * For each axiom X, the bitset of axioms A such as
+     * A derives X followed by productive axioms (X included)
+     */
+    private final long[] leftCorners;
+
+    /**
+     * The length of the prefix
+     */
+    private int length;
+
+    /**
+     * rows[s] contains the cells (s, s), (s, s + 1), ...
+     */
+    private long[][] rows = new long[16][];
+
+    /**
+     * columns[e] contains the cells (e, e), (e - 1, e), ..., (0, e)
+     */
+    private long[][] columns = new long[16][];
+
+    /**
+     * The axioms deriving each suffix of the prefix
+     * followed by anything, see isViablePrefix
+     */
+    private long[] viable = new long[0];
+
+    /**
+     * The axioms of a cell of viable before the closure
+     */
+    private final long[] base;
+
+    /**
+     * Default constructor
+     *
+     * @param g
+     *          the compiled grammar
+     */
+    public IncrementalCYK(CompiledGrammar g) {
+        this.g = g;
+        this.words = g.words;
+        this.productive = computeProductive(g);
+        this.leftCorners = computeLeftCorners(g, productive);
+        this.base = new long[words];
+    }
+
+    /**
+     * Append a character to the prefix
+     * and compute the new column of the chart
+     *
+     * @param c
+     *          the character
+     */
+    public void append(char c) {
+        int e = length++;
+        if (e == rows.length) {
+            rows = Arrays.copyOf(rows, e * 2);
+            columns = Arrays.copyOf(columns, e * 2);
+        }
+        rows[e] = ensureCapacity(rows[e], words);
+        columns[e] = ensureCapacity(columns[e], (e + 1) * words);
+        long[] column = columns[e];
+
+        Arrays.fill(column, 0, words, 0);
+        g.copyTerminalParents(c, column, 0);
+        System.arraycopy(column, 0, rows[e], 0, words);
+
+        for (int s = e - 1; s >= 0; --s) {
+            int cell = (e - s) * words;
+            rows[s] = ensureCapacity(rows[s], (e - s + 1) * words);
+            long[] row = rows[s];
+
+            Arrays.fill(column, cell, cell + words, 0);
+            for (int k = s; k < e; ++k) {
+                combine(row, (k - s) * words, column, (e - k - 1) * words, column, cell);
+            }
+            System.arraycopy(column, cell, row, cell, words);
+        }
+    }
+
+    /**
+     * Check if the prefix is a word of the language
+     *
+     * @return
+     *          true if the prefix can be generated, false otherwise
+     */
+    public boolean isMember() {
+        if (length == 0) {
+            return g.acceptsEmptyWord();
+        }
+
+        int start = g.getStartAxiom();
+        return start >= 0 && contains(columns[length - 1], (length - 1) * words, start);
+    }
+
+    /**
+     * Check if the prefix can be extended into a word of the language
+     *
+     * The suffix starting at s is viable for A if A derives
+     * this suffix followed by anything :
+     * - if A derives the whole suffix
+     * - if A -> BC, B derives the characters s to k and C is viable on k + 1
+     * - if A -> BC, B is viable on s and C is productive
+     * The last case is handled by the left corners closure.
+     *
+     * @return
+     *          true if a word of the language starts with the prefix, false otherwise
+     */
+    public boolean isViablePrefix() {
+        int start = g.getStartAxiom();
+        if (length == 0) {
+            return g.acceptsEmptyWord() || (start >= 0 && contains(productive, 0, start));
+        }
+        if (start < 0) {
+            return false;
+        }
+
+        viable = ensureCapacity(viable, (length + 1) * words);
+        System.arraycopy(productive, 0, viable, length * words, words);
+
+        for (int s = length - 1; s >= 0; --s) {
+            System.arraycopy(rows[s], (length - 1 - s) * words, base, 0, words);
+            for (int k = s; k < length - 1; ++k) {
+                combine(rows[s], (k - s) * words, viable, (k + 1) * words, base, 0);
+            }
+
+            int cell = s * words;
+            Arrays.fill(viable, cell, cell + words, 0);
+            for (int w = 0; w < words; ++w) {
+                long bits = base[w];
+                while (bits != 0) {
+                    int X = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    for (int x = 0; x < words; ++x) {
+                        viable[cell + x] |= leftCorners[X * words + x];
+                    }
+                }
+            }
+        }
+
+        return contains(viable, 0, start);
+    }
+
+    /**
+     * Forget the prefix, the arrays are kept for the next word
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * get the length of the prefix
+     *
+     * @return
+     *          the length of the prefix
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Add to a bitset all axioms A such as A -> BC
+     * with B in the left bitset and C in the right bitset
+     *
+     * @param left
+     *          the array of the left bitset
+     * @param leftPos
+     *          the position of the left bitset
+     * @param right
+     *          the array of the right bitset
+     * @param rightPos
+     *          the position of the right bitset
+     * @param dest
+     *          the array of the bitset to fill
+     * @param destPos
+     *          the position of the bitset to fill
+     */
+    private void combine(long[] left, int leftPos, long[] right, int rightPos, long[] dest, int destPos) {
+        for (int w = 0; w < words; ++w) {
+            long bits = left[leftPos + w];
+            while (bits != 0) {
+                int B = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                for (int p = g.pairStart[B]; p < g.pairStart[B + 1]; ++p) {
+                    if (contains(right, rightPos, g.pairRight[p])) {
+                        int parents = p * words;
+                        for (int x = 0; x < words; ++x) {
+                            dest[destPos + x] |= g.pairParents[parents + x];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean contains(long[] bitsets, int position, int axiom) {
+        return (bitsets[position + (axiom >>> 6)] & (1L << axiom)) != 0;
+    }
+
+    private static long[] ensureCapacity(long[] array, int size) {
+        if (array == null || array.length < size) {
+            return array == null ? new long[size] : Arrays.copyOf(array, Math.max(size, array.length * 2));
+        }
+        return array;
+    }
+
+    /**
+     * Compute the axioms deriving at least one word
+     *
+     * @param g
+     *          the compiled grammar
+     * @return
+     *          the bitset of productive axioms
+     */
+    private static long[] computeProductive(CompiledGrammar g) {
+        long[] productive = new long[g.words];
+        for (int A = 0; A < g.getAxiomsCount(); ++A) {
+            if (g.producesTerminal(A)) {
+                productive[A >>> 6] |= 1L << A;
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int B = 0; B < g.getAxiomsCount(); ++B) {
+                if (!contains(productive, 0, B)) {
+                    continue;
+                }
+                for (int p = g.pairStart[B]; p < g.pairStart[B + 1]; ++p) {
+                    if (!contains(productive, 0, g.pairRight[p])) {
+                        continue;
+                    }
+                    for (int w = 0; w < g.words; ++w) {
+                        long added = g.pairParents[p * g.words + w] & ~productive[w];
+                        if (added != 0) {
+                            productive[w] |= added;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return productive;
+    }
+
+    /**
+     * Compute for each axiom X the axioms A such as
+     * A -> X C1 ... Cn with C1 ... Cn productive, by
+     * following the rules A -> BC from B to A
+     *
+     * @param g
+     *          the compiled grammar
+     * @param productive
+     *          the bitset of productive axioms
+     * @return
+     *          the bitsets of left corners, one per axiom
+     */
+    private static long[] computeLeftCorners(CompiledGrammar g, long[] productive) {
+        int n = g.getAxiomsCount();
+        int words = g.words;
+
+        long[] parents = new long[n * words];
+        for (int B = 0; B < n; ++B) {
+            for (int p = g.pairStart[B]; p < g.pairStart[B + 1]; ++p) {
+                if (contains(productive, 0, g.pairRight[p])) {
+                    for (int w = 0; w < words; ++w) {
+                        parents[B * words + w] |= g.pairParents[p * words + w];
+                    }
+                }
+            }
+        }
+
+        long[] leftCorners = new long[n * words];
+        int[] stack = new int[n];
+        for (int X = 0; X < n; ++X) {
+            int offset = X * words;
+            leftCorners[offset + (X >>> 6)] |= 1L << X;
+            int top = 0;
+            stack[top++] = X;
+            while (top > 0) {
+                int B = stack[--top];
+                for (int w = 0; w < words; ++w) {
+                    long added = parents[B * words + w] & ~leftCorners[offset + w];
+                    leftCorners[offset + w] |= added;
+                    while (added != 0) {
+                        stack[top++] = (w << 6) + Long.numberOfTrailingZeros(added);
+                        added &= added - 1;
+                    }
+                }
+            }
+        }
+
+        return leftCorners;
+    }
+}
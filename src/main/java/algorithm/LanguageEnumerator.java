@@ -0,0 +1,606 @@
+package algorithm;
+
+import exception.CYKException;
+import grammar.Grammar;
+import utils.SpecialChars;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class enumerates the words of the language of a grammar in CNF,
+ * in shortlex order : by length, then in lexicographic order, without duplicates
+ *
+ * The words of length n produced by an axiom A are the words of each rule A -> BC
+ * and of each split 0 < k < n, that is the words of length k of B followed by
+ * the words of length n - k of C. These words have the same prefix length,
+ * so they are sorted if the words of B and C are sorted, and the words of A
+ * are the merge of these sorted sequences, where the duplicates of an ambiguous
+ * grammar are adjacent.
+ *
+ * The sorted words of an axiom for a length are memoized while they fit
+ * in the memory budget (the short lengths), the longer ones are merged lazily
+ * each time they are needed : the memory does not grow with the number of words,
+ * but a small budget is slow on an ambiguous grammar, where the same words are merged again.
+ */
+public final class LanguageEnumerator {
+    /**
+     * The default memory budget, in characters
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 1 << 24;
+
+    /**
+     * The shortlex order of the words
+     */
+    public static final Comparator<String> SHORTLEX = Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    /**
+     * The compiled grammar
+     */
+    private final CompiledGrammar g;
+
+    /**
+     * For each axiom A, the sorted terminals of the rules A -> a are stored
+     * in terminals from terminalStart[A] to terminalStart[A + 1]
+     */
+    private final int[] terminalStart;
+
+    /**
+     * The terminals of the rules A -> a, grouped by axiom
+     */
+    private final char[] terminals;
+
+    /**
+     * The number of derivations of each axiom, by length,
+     * saturated at Long.MAX_VALUE (0 if the axiom has no word of this length)
+     */
+    private volatile long[][] derivations;
+
+    /**
+     * The memoized words, by (length, axiom)
+     */
+    private final ConcurrentHashMap<Long, String[]> memo = new ConcurrentHashMap<>();
+
+    /**
+     * The memory budget left for the memoized words, in characters
+     */
+    private final AtomicLong budget;
+
+    /**
+     * Default constructor
+     *
+     * @param g
+     *          the compiled grammar
+     */
+    public LanguageEnumerator(CompiledGrammar g) {
+        this(g, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param g
+     *          the compiled grammar
+     * @param memoryBudget
+     *          the maximum number of characters of the memoized words
+     */
+    public LanguageEnumerator(CompiledGrammar g, long memoryBudget) {
+        this.g = g;
+        this.budget = new AtomicLong(memoryBudget);
+
+        int n = g.getAxiomsCount();
+        terminalStart = new int[n + 1];
+        for (int t = 0; t < g.getTerminalsCount(); ++t) {
+            if (g.getTerminal(t) != SpecialChars.epsilon) {
+                for (int r = g.terminalRuleStart[t]; r < g.terminalRuleStart[t + 1]; ++r) {
+                    ++terminalStart[g.terminalRuleAxioms[r] + 1];
+                }
+            }
+        }
+        for (int A = 0; A < n; ++A) {
+            terminalStart[A + 1] += terminalStart[A];
+        }
+        // the terminals are sorted, so the terminals of each axiom are sorted
+        terminals = new char[terminalStart[n]];
+        int[] next = Arrays.copyOf(terminalStart, n);
+        for (int t = 0; t < g.getTerminalsCount(); ++t) {
+            if (g.getTerminal(t) != SpecialChars.epsilon) {
+                for (int r = g.terminalRuleStart[t]; r < g.terminalRuleStart[t + 1]; ++r) {
+                    terminals[next[g.terminalRuleAxioms[r]]++] = g.getTerminal(t);
+                }
+            }
+        }
+
+        long[] single = new long[n];
+        for (int A = 0; A < n; ++A) {
+            single[A] = terminalStart[A + 1] - terminalStart[A];
+        }
+        derivations = new long[][]{new long[n], single};
+    }
+
+    /**
+     * Create the enumerator of a grammar
+     *
+     * Condition : the grammar must be in CNF (Chomsky Normal Form)
+     *
+     * @param g
+     *          the grammar
+     * @return
+     *          the enumerator
+     * @throws CYKException
+     *          thrown if the grammar is not in CNF
+     */
+    public static LanguageEnumerator compile(Grammar g) throws CYKException {
+        return new LanguageEnumerator(CompiledGrammar.compile(g));
+    }
+
+    /**
+     * Get the words up to a length, in shortlex order
+     *
+     * @param maxLength
+     *          the maximum length of the words
+     * @return
+     *          the words
+     */
+    public Stream<String> words(int maxLength) {
+        return words(0, maxLength);
+    }
+
+    /**
+     * Get the words between two lengths, in shortlex order
+     * The stream can be parallel : it is split by length
+     *
+     * @param minLength
+     *          the minimum length of the words
+     * @param maxLength
+     *          the maximum length of the words
+     * @return
+     *          the words
+     */
+    public Stream<String> words(int minLength, int maxLength) {
+        return StreamSupport.stream(new Words(Math.max(0, minLength), maxLength), false);
+    }
+
+    /**
+     * The spliterator of the words, length by length
+     */
+    private final class Words implements Spliterator<String> {
+        /**
+         * The length of the words of the current iterator
+         */
+        private int length;
+
+        /**
+         * The maximum length
+         */
+        private final int maxLength;
+
+        /**
+         * The words of the current length, null if the length is not started
+         */
+        private WordIterator current;
+
+        Words(int minLength, int maxLength) {
+            this.length = minLength;
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            while (length <= maxLength) {
+                if (current == null) {
+                    current = iterator(length);
+                }
+                if (current.hasNext()) {
+                    action.accept(current.next());
+                    return true;
+                }
+                current = null;
+                ++length;
+            }
+            return false;
+        }
+
+        /**
+         * Keep the longest length, which has the most words,
+         * and give the shorter ones
+         */
+        @Override
+        public Spliterator<String> trySplit() {
+            if (current != null || length >= maxLength) {
+                return null;
+            }
+            Words prefix = new Words(length, maxLength - 1);
+            length = maxLength;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super String> getComparator() {
+            return SHORTLEX;
+        }
+    }
+
+    /**
+     * Get the sorted words of the starting axiom
+     *
+     * @param length
+     *          the length of the words
+     * @return
+     *          the words
+     */
+    private WordIterator iterator(int length) {
+        int S = g.getStartAxiom();
+        if (S < 0) {
+            return new ArrayWords(new String[0]);
+        } else if (length == 0) {
+            return new ArrayWords(g.acceptsEmptyWord() ? new String[]{""} : new String[0]);
+        }
+        return iterator(S, length);
+    }
+
+    /**
+     * Get the sorted words of an axiom, memoized if they fit in the budget
+     *
+     * @param A
+     *          the axiom
+     * @param length
+     *          the length of the words, strictly positive
+     * @return
+     *          the words
+     */
+    private WordIterator iterator(int A, int length) {
+        if (length == 1) {
+            return new TerminalWords(A);
+        }
+
+        Long key = key(A, length);
+        String[] words = memo.get(key);
+        if (words != null) {
+            return new ArrayWords(words);
+        }
+
+        long count = getWordsBound(A, length);
+        long size = saturatedMultiply(count, length);
+        if (count >= Integer.MAX_VALUE || !reserve(size)) {
+            return new MergedWords(A, length);
+        }
+
+        List<String> sorted = new ArrayList<>((int) count);
+        for (WordIterator it = new MergedWords(A, length); it.hasNext(); ) {
+            sorted.add(it.next());
+        }
+        // give back the characters of the duplicates
+        budget.addAndGet((count - sorted.size()) * length);
+        words = sorted.toArray(new String[0]);
+        if (memo.putIfAbsent(key, words) != null) {
+            budget.addAndGet((long) words.length * length);
+        }
+        return new ArrayWords(words);
+    }
+
+    /**
+     * Get an upper bound of the number of words of an axiom :
+     * the sum of the numbers of words of its rules and splits,
+     * with the exact numbers of the memoized words
+     * (the number of derivations is much larger for an ambiguous grammar)
+     *
+     * @param A
+     *          the axiom
+     * @param length
+     *          the length of the words, strictly positive
+     * @return
+     *          the bound, saturated at Long.MAX_VALUE
+     */
+    private long getWordsBound(int A, int length) {
+        long[][] counts = getDerivations(length);
+        long bound = 0;
+        for (int r = g.ruleStart[A]; r < g.ruleStart[A + 1]; ++r) {
+            int B = g.pairLeft[g.rulePairs[r]];
+            int C = g.pairRight[g.rulePairs[r]];
+            for (int k = 1; k < length; ++k) {
+                bound = saturatedAdd(bound, saturatedMultiply(getWordsCount(B, k, counts), getWordsCount(C, length - k, counts)));
+            }
+        }
+        return Math.min(bound, counts[length][A]);
+    }
+
+    /**
+     * Get the number of words of an axiom if they are memoized,
+     * its number of derivations otherwise
+     *
+     * @param A
+     *          the axiom
+     * @param length
+     *          the length of the words, strictly positive
+     * @param counts
+     *          the numbers of derivations
+     * @return
+     *          the number of words, or a bound
+     */
+    private long getWordsCount(int A, int length, long[][] counts) {
+        if (counts[length][A] == 0) {
+            return 0;
+        } else if (length == 1) {
+            return terminalStart[A + 1] - terminalStart[A];
+        }
+        String[] words = memo.get(key(A, length));
+        return words != null ? words.length : counts[length][A];
+    }
+
+    /**
+     * Get the key of the memoized words of an axiom
+     *
+     * @param A
+     *          the axiom
+     * @param length
+     *          the length of the words
+     * @return
+     *          the key
+     */
+    private long key(int A, int length) {
+        return (long) length * g.getAxiomsCount() + A;
+    }
+
+    /**
+     * Reserve a part of the memory budget
+     *
+     * @param size
+     *          the number of characters
+     * @return
+     *          true if the budget is large enough, false otherwise
+     */
+    private boolean reserve(long size) {
+        while (true) {
+            long left = budget.get();
+            if (size > left) {
+                return false;
+            }
+            if (budget.compareAndSet(left, left - size)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get the numbers of derivations up to a length, computing the missing lengths
+     *
+     * @param length
+     *          the length
+     * @return
+     *          the numbers of derivations, by length then by axiom
+     */
+    private long[][] getDerivations(int length) {
+        long[][] current = derivations;
+        if (current.length > length) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = derivations;
+            if (current.length > length) {
+                return current;
+            }
+
+            int n = g.getAxiomsCount();
+            long[][] counts = Arrays.copyOf(current, length + 1);
+            for (int l = current.length; l <= length; ++l) {
+                counts[l] = new long[n];
+                for (int A = 0; A < n; ++A) {
+                    long total = 0;
+                    for (int r = g.ruleStart[A]; r < g.ruleStart[A + 1]; ++r) {
+                        int pair = g.rulePairs[r];
+                        for (int k = 1; k < l; ++k) {
+                            total = saturatedAdd(total, saturatedMultiply(counts[k][g.pairLeft[pair]], counts[l - k][g.pairRight[pair]]));
+                        }
+                    }
+                    counts[l][A] = total;
+                }
+            }
+            derivations = counts;
+            return counts;
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+
+    /**
+     * An iterator of sorted words, which can be compared by their next word
+     */
+    private abstract static class WordIterator {
+        abstract boolean hasNext();
+
+        /**
+         * Get the next word without consuming it
+         *
+         * @return
+         *          the next word
+         */
+        abstract String peek();
+
+        String next() {
+            String word = peek();
+            advance();
+            return word;
+        }
+
+        abstract void advance();
+    }
+
+    /**
+     * The memoized words
+     */
+    private static final class ArrayWords extends WordIterator {
+        private final String[] words;
+        private int position;
+
+        ArrayWords(String[] words) {
+            this.words = words;
+        }
+
+        @Override
+        boolean hasNext() {
+            return position < words.length;
+        }
+
+        @Override
+        String peek() {
+            return words[position];
+        }
+
+        @Override
+        void advance() {
+            ++position;
+        }
+    }
+
+    /**
+     * The words of length 1 of an axiom : its terminals
+     */
+    private final class TerminalWords extends WordIterator {
+        private int position;
+        private final int end;
+
+        TerminalWords(int A) {
+            this.position = terminalStart[A];
+            this.end = terminalStart[A + 1];
+        }
+
+        @Override
+        boolean hasNext() {
+            return position < end;
+        }
+
+        @Override
+        String peek() {
+            return String.valueOf(terminals[position]);
+        }
+
+        @Override
+        void advance() {
+            ++position;
+        }
+    }
+
+    /**
+     * The words of a rule A -> BC for a split : the words of B of length k
+     * followed by the words of C of length n - k
+     * The words of C are iterated again for each word of B
+     */
+    private final class ConcatenatedWords extends WordIterator {
+        private final int C;
+        private final int rightLength;
+        private final WordIterator left;
+        private WordIterator right;
+
+        /**
+         * The next word, null if it is not built yet
+         */
+        private String head;
+
+        ConcatenatedWords(int B, int leftLength, int C, int rightLength) {
+            this.C = C;
+            this.rightLength = rightLength;
+            this.left = iterator(B, leftLength);
+            this.right = iterator(C, rightLength);
+        }
+
+        @Override
+        boolean hasNext() {
+            return left.hasNext() && right.hasNext();
+        }
+
+        @Override
+        String peek() {
+            if (head == null) {
+                head = left.peek() + right.peek();
+            }
+            return head;
+        }
+
+        @Override
+        void advance() {
+            head = null;
+            right.advance();
+            if (!right.hasNext()) {
+                left.advance();
+                if (left.hasNext()) {
+                    right = iterator(C, rightLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * The words of an axiom : the merge of the words of its rules
+     * and splits, without the duplicates
+     */
+    private final class MergedWords extends WordIterator {
+        private final PriorityQueue<WordIterator> queue;
+
+        MergedWords(int A, int length) {
+            long[][] counts = getDerivations(length);
+            queue = new PriorityQueue<>(Math.max(1, g.ruleStart[A + 1] - g.ruleStart[A]), Comparator.comparing(WordIterator::peek));
+            for (int r = g.ruleStart[A]; r < g.ruleStart[A + 1]; ++r) {
+                int B = g.pairLeft[g.rulePairs[r]];
+                int C = g.pairRight[g.rulePairs[r]];
+                for (int k = 1; k < length; ++k) {
+                    if (counts[k][B] != 0 && counts[length - k][C] != 0) {
+                        queue.add(new ConcatenatedWords(B, k, C, length - k));
+                    }
+                }
+            }
+        }
+
+        @Override
+        boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        String peek() {
+            return queue.peek().peek();
+        }
+
+        @Override
+        void advance() {
+            String word = peek();
+            while (!queue.isEmpty() && queue.peek().peek().equals(word)) {
+                WordIterator it = queue.poll();
+                it.advance();
+                if (it.hasNext()) {
+                    queue.add(it);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package algorithm;
+
+/**
+ * This class remembers the membership of the words
+ * already checked against one compiled grammar
+ *
+ * The cache has a maximal number of words : when it is full,
+ * the least recently checked word is forgotten.
+ * It can be shared between threads.
+ */
+public final class MembershipCache {
+    /**
+     * The compiled grammar
+     */
+    private final CompiledGrammar g;
+
+    /**
+     * The membership of the words
+     */
+    private final BoundedCache<String, Boolean> results;
+
+    /**
+     * Default constructor
+     *
+     * @param g
+     *          the compiled grammar
+     * @param maxWords
+     *          the maximal number of words remembered
+     */
+    public MembershipCache(CompiledGrammar g, int maxWords) {
+        this.g = g;
+        this.results = new BoundedCache<>(maxWords);
+    }
+
+    /**
+     * Check if the given word can be generated with the grammar
+     * The CYK algorithm is only run if the word is not in the cache
+     *
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     */
+    public boolean isMember(String word) {
+        Boolean result = results.get(word);
+        if (result == null) {
+            result = results.put(word, CYK.isMember(g, word));
+        }
+        return result;
+    }
+
+    /**
+     * get the compiled grammar
+     *
+     * @return
+     *          the compiled grammar
+     */
+    public CompiledGrammar getGrammar() {
+        return g;
+    }
+
+    /**
+     * get the number of words in the cache
+     *
+     * @return
+     *          the number of words
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * get the number of checks answered by the cache
+     *
+     * @return
+     *          the number of hits
+     */
+    public long getHits() {
+        return results.getHits();
+    }
+
+    /**
+     * get the number of checks where the CYK algorithm was run
+     *
+     * @return
+     *          the number of misses
+     */
+    public long getMisses() {
+        return results.getMisses();
+    }
+
+    /**
+     * get the number of words forgotten because the cache was full
+     *
+     * @return
+     *          the number of evictions
+     */
+    public long getEvictions() {
+        return results.getEvictions();
+    }
+
+    /**
+     * Forget all the words
+     */
+    public void clear() {
+        results.clear();
+    }
+}
@@ -0,0 +1,82 @@
+package algorithm;
+
+/**
+ * This class checks many words against one compiled grammar
+ * with the bitset CYK algorithm, reusing the same chart
+ *
+ * The chart only grows when a longer word is checked,
+ * so checking words of a known maximum length does not allocate.
+ * The words from CYK.PARALLEL_THRESHOLD characters are checked
+ * by CYK.isMember (see ParallelCYK and ValiantCYK) without the chart,
+ * so the chart never holds more than the cells of a shorter word.
+ * The chart can be reused for another grammar (see setGrammar).
+ * A checker is not thread safe : use one checker per thread.
+ */
+public final class MembershipChecker {
+    /**
+     * The compiled grammar
+     */
+    private CompiledGrammar g;
+
+    /**
+     * The reused chart
+     */
+    private final BitsetChart chart;
+
+    /**
+     * Default constructor
+     *
+     * @param g
+     *          the compiled grammar
+     */
+    public MembershipChecker(CompiledGrammar g) {
+        this.g = g;
+        this.chart = new BitsetChart(g);
+    }
+
+    /**
+     * Check if the given word can be generated
+     * with the grammar
+     *
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     */
+    public boolean isMember(CharSequence word) {
+        if (word.length() == 0) {
+            return g.acceptsEmptyWord();
+        }
+        if (word.length() >= CYK.PARALLEL_THRESHOLD) {
+            return CYK.isMember(g, word.toString());
+        }
+
+        if (!chart.init(word)) {
+            return false;
+        }
+        chart.fill();
+        return chart.isMember();
+    }
+
+    /**
+     * Check the next words against another grammar,
+     * reusing the chart
+     *
+     * @param g
+     *          the compiled grammar
+     */
+    public void setGrammar(CompiledGrammar g) {
+        this.g = g;
+        chart.setGrammar(g);
+    }
+
+    /**
+     * get the compiled grammar
+     *
+     * @return
+     *          the compiled grammar
+     */
+    public CompiledGrammar getGrammar() {
+        return g;
+    }
+}
@@ -0,0 +1,137 @@
+package algorithm;
+
+import metrics.Metrics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class performs the CYK algorithm on a bitset chart
+ * with several threads
+ *
+ * All the cells of a line of the chart only depend
+ * on the previous lines, so each line (a diagonal of the
+ * usual triangle) is filled in parallel, before the next one.
+ * The cells of a line are split in chunks big enough to not
+ * pay the cost of a task for a few splits : short lines
+ * are filled by the calling thread.
+ */
+public class ParallelCYK {
+
+    /**
+     * The minimum number of splits (k in the CYK algorithm)
+     * computed by a task
+     */
+    private static final int MIN_SPLITS_PER_TASK = 2048;
+
+    private ParallelCYK() {}
+
+    /**
+     * Check if the given word can be generated
+     * with a compiled grammar, using the common fork-join pool
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     * @throws IllegalArgumentException
+     *          if the chart of the word does not fit in memory
+     */
+    public static boolean isMember(CompiledGrammar g, String word) {
+        return isMember(g, word, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Check if the given word can be generated
+     * with a compiled grammar, using the given pool
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to check
+     * @param pool
+     *          the pool running the tasks
+     * @return
+     *          true if the word can be generated, false otherwise
+     */
+    public static boolean isMember(CompiledGrammar g, String word, ForkJoinPool pool) {
+        if (word.length() == 0) {
+            return g.acceptsEmptyWord();
+        }
+
+        BitsetChart chart = new BitsetChart(g);
+        if (!chart.init(word)) {
+            return false;
+        }
+
+        boolean instrumented = Metrics.isEnabled();
+        long start = instrumented ? System.nanoTime() : 0;
+
+        int wordLength = word.length();
+        long pairChecks = 0;
+        for (int i = 1; i < wordLength; ++i) {
+            LineTask task = new LineTask(chart, i, 0, wordLength - i);
+            if (task.isSmall()) {
+                task.compute();
+            } else {
+                pool.invoke(task);
+            }
+            pairChecks += task.pairChecks;
+        }
+
+        if (instrumented) {
+            chart.report(System.nanoTime() - start, pairChecks, true);
+        }
+        return chart.isMember();
+    }
+
+    /**
+     * This task fills the cells from to - 1
+     * of a line of the chart, and counts its pair checks
+     */
+    private static class LineTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BitsetChart chart;
+        private final int line;
+        private final int from;
+        private final int to;
+        private long pairChecks;
+
+        private LineTask(BitsetChart chart, int line, int from, int to) {
+            this.chart = chart;
+            this.line = line;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Check if the task is too small to be split
+         * Each cell of the line i is computed with i splits
+         *
+         * @return
+         *          true if the cells should be filled by the current thread
+         */
+        private boolean isSmall() {
+            return (long) (to - from) * line < 2 * MIN_SPLITS_PER_TASK;
+        }
+
+        @Override
+        protected void compute() {
+            if (isSmall() || to - from < 2) {
+                for (int j = from; j < to; ++j) {
+                    pairChecks += chart.fillCell(line, j);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            LineTask low = new LineTask(chart, line, from, middle);
+            LineTask high = new LineTask(chart, line, middle, to);
+            invokeAll(low, high);
+            pairChecks = low.pairChecks + high.pairChecks;
+        }
+    }
+}
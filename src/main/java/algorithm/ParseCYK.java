@@ -0,0 +1,117 @@
+package algorithm;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * This class gets the parse trees of a word
+ * with the bitset CYK algorithm
+ *
+ * The chart is filled as for the membership, then the trees are
+ * read back from the chart : a cell only contains axioms really
+ * producing its characters, so the back-pointers of an axiom
+ * are the splits where the two axioms of one of its rules are
+ * in the two sub-cells.
+ */
+public class ParseCYK {
+
+    private ParseCYK() {}
+
+    /**
+     * Get the forest of all the parse trees of a word
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to parse
+     * @return
+     *          the forest, null if the word can not be generated
+     *          or if it is the empty word
+     */
+    public static ParseForest parse(CompiledGrammar g, String word) {
+        BitsetChart chart = fill(g, word);
+        return chart == null ? null : new ParseForest(g, word, chart);
+    }
+
+    /**
+     * Get the first parse tree of a word
+     * No forest is built : the tree is read from the chart,
+     * which is the only memory used
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to parse
+     * @return
+     *          the first parse tree, null if the word can not be generated
+     *          or if it is the empty word
+     */
+    public static ParseTree parseFirst(CompiledGrammar g, String word) {
+        BitsetChart chart = fill(g, word);
+        return chart == null ? null : firstTree(g, word, chart, g.getStartAxiom(), 0, word.length() - 1);
+    }
+
+    /**
+     * Fill the chart of a word
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to parse
+     * @return
+     *          the chart, null if the word can not be generated
+     */
+    private static BitsetChart fill(CompiledGrammar g, String word) {
+        if (word.length() == 0) {
+            return null;
+        }
+
+        BitsetChart chart = new BitsetChart(g);
+        if (!chart.init(word)) {
+            return null;
+        }
+        chart.fill();
+        return chart.isMember() ? chart : null;
+    }
+
+    /**
+     * Get the first tree of an axiom producing
+     * the characters start to end of the word
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to parse
+     * @param chart
+     *          the chart of the word
+     * @param axiom
+     *          the axiom
+     * @param start
+     *          the first character
+     * @param end
+     *          the last character
+     * @return
+     *          the first tree
+     */
+    private static ParseTree firstTree(CompiledGrammar g, String word, BitsetChart chart, int axiom, int start, int end) {
+        if (start == end) {
+            return ParseTree.of(g, axiom,
+                    Collections.singletonList(new ParseTree(word.charAt(start))));
+        }
+
+        int line = end - start;
+        for (int r = g.ruleStart[axiom]; r < g.ruleStart[axiom + 1]; ++r) {
+            int pair = g.rulePairs[r];
+            for (int k = start; k < end; ++k) {
+                if (chart.contains(k - start, start, g.pairLeft[pair])
+                        && chart.contains(line - (k - start) - 1, k + 1, g.pairRight[pair])) {
+                    return ParseTree.of(g, axiom, Arrays.asList(
+                            firstTree(g, word, chart, g.pairLeft[pair], start, k),
+                            firstTree(g, word, chart, g.pairRight[pair], k + 1, end)));
+                }
+            }
+        }
+
+        throw new IllegalStateException("No rule of " + g.getSymbols().getName(g.getAxiomName(axiom)) + " produces the characters " + start + " to " + end);
+    }
+}
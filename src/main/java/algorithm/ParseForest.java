@@ -0,0 +1,292 @@
+package algorithm;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class represents all the parse trees of a word
+ * as a shared packed parse forest (SPPF)
+ *
+ * A node (A, i, j) is shared by all the trees where the axiom A
+ * produces the characters i to j, and it stores its alternatives
+ * packed : the pairs (rule A -> BC, split k) such as B produces
+ * the characters i to k and C the characters k + 1 to j.
+ * The forest has at most O(n^3) alternatives even if the number
+ * of trees is exponential, and the trees are built one by one
+ * when they are iterated.
+ */
+public final class ParseForest {
+    /**
+     * The compiled grammar
+     */
+    private final CompiledGrammar g;
+
+    /**
+     * The parsed word
+     */
+    private final String word;
+
+    /**
+     * The nodes, by key (see key)
+     */
+    private final Map<Long, Node> nodes = new HashMap<>();
+
+    /**
+     * The node of the starting axiom on the whole word
+     */
+    private final Node root;
+
+    /**
+     * Build the forest from a filled chart
+     * Only the nodes reachable from the root are created
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the parsed word, generated by the grammar
+     * @param chart
+     *          the chart of the word
+     */
+    ParseForest(CompiledGrammar g, String word, BitsetChart chart) {
+        this.g = g;
+        this.word = word;
+        this.root = node(g.getStartAxiom(), 0, word.length() - 1);
+
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        int[] alternatives = new int[16];
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.start == node.end) {
+                continue;
+            }
+
+            int count = 0;
+            int line = node.end - node.start;
+            for (int r = g.ruleStart[node.axiom]; r < g.ruleStart[node.axiom + 1]; ++r) {
+                int pair = g.rulePairs[r];
+                for (int k = node.start; k < node.end; ++k) {
+                    if (chart.contains(k - node.start, node.start, g.pairLeft[pair])
+                            && chart.contains(line - (k - node.start) - 1, k + 1, g.pairRight[pair])) {
+                        if (count + 2 > alternatives.length) {
+                            alternatives = Arrays.copyOf(alternatives, alternatives.length * 2);
+                        }
+                        alternatives[count++] = pair;
+                        alternatives[count++] = k;
+
+                        Node left = nodes.get(key(g.pairLeft[pair], node.start, k));
+                        if (left == null) {
+                            stack.push(node(g.pairLeft[pair], node.start, k));
+                        }
+                        Node right = nodes.get(key(g.pairRight[pair], k + 1, node.end));
+                        if (right == null) {
+                            stack.push(node(g.pairRight[pair], k + 1, node.end));
+                        }
+                    }
+                }
+            }
+            node.alternatives = Arrays.copyOf(alternatives, count);
+        }
+    }
+
+    /**
+     * get the number of nodes of the forest
+     *
+     * @return
+     *          the number of nodes
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Count the parse trees of the word,
+     * without building them
+     *
+     * @return
+     *          the number of parse trees
+     */
+    public BigInteger countTrees() {
+        Map<Node, BigInteger> counts = new HashMap<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.peek();
+            if (counts.containsKey(node)) {
+                stack.pop();
+                continue;
+            }
+
+            BigInteger count = BigInteger.ZERO;
+            boolean ready = true;
+            if (node.start == node.end) {
+                count = BigInteger.ONE;
+            }
+            for (int a = 0; a < node.alternatives.length; a += 2) {
+                Node left = left(node, a);
+                Node right = right(node, a);
+                BigInteger leftCount = counts.get(left);
+                BigInteger rightCount = counts.get(right);
+                if (leftCount == null) {
+                    stack.push(left);
+                    ready = false;
+                }
+                if (rightCount == null) {
+                    stack.push(right);
+                    ready = false;
+                }
+                if (ready) {
+                    count = count.add(leftCount.multiply(rightCount));
+                }
+            }
+
+            if (ready) {
+                counts.put(node, count);
+                stack.pop();
+            }
+        }
+
+        return counts.get(root);
+    }
+
+    /**
+     * Iterate over the parse trees of the word
+     * The trees are built when they are iterated
+     *
+     * @return
+     *          the iterable of the parse trees
+     */
+    public Iterable<ParseTree> trees() {
+        return () -> new TreeIterator(root);
+    }
+
+    /**
+     * Get a lazy stream of the parse trees of the word
+     *
+     * @return
+     *          the stream of the parse trees
+     */
+    public Stream<ParseTree> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new TreeIterator(root), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Get the node (A, i, j), it is created if needed
+     *
+     * @param axiom
+     *          the axiom A
+     * @param start
+     *          the first character i
+     * @param end
+     *          the last character j
+     * @return
+     *          the node
+     */
+    private Node node(int axiom, int start, int end) {
+        return nodes.computeIfAbsent(key(axiom, start, end), key -> new Node(axiom, start, end));
+    }
+
+    private Node left(Node node, int alternative) {
+        int pair = node.alternatives[alternative];
+        return nodes.get(key(g.pairLeft[pair], node.start, node.alternatives[alternative + 1]));
+    }
+
+    private Node right(Node node, int alternative) {
+        int pair = node.alternatives[alternative];
+        return nodes.get(key(g.pairRight[pair], node.alternatives[alternative + 1] + 1, node.end));
+    }
+
+    private long key(int axiom, int start, int end) {
+        long length = word.length();
+        return (axiom * length + start) * length + end;
+    }
+
+    /**
+     * This class represents a node (A, i, j) of the forest
+     */
+    private static final class Node {
+        private final int axiom;
+        private final int start;
+        private final int end;
+
+        /**
+         * The pairs (pair of the rule, split)
+         */
+        private int[] alternatives = new int[0];
+
+        private Node(int axiom, int start, int end) {
+            this.axiom = axiom;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * This class iterates over the trees of a node :
+     * for each alternative, each left tree is combined
+     * with each right tree
+     */
+    private final class TreeIterator implements Iterator<ParseTree> {
+        private final Node node;
+        private int alternative = -2;
+        private Iterator<ParseTree> leftTrees;
+        private Iterator<ParseTree> rightTrees;
+        private ParseTree leftTree;
+        private boolean leafDone;
+
+        private TreeIterator(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (node.start == node.end) {
+                return !leafDone;
+            }
+
+            while (true) {
+                if (rightTrees != null && rightTrees.hasNext()) {
+                    return true;
+                }
+                if (leftTrees != null && leftTrees.hasNext()) {
+                    leftTree = leftTrees.next();
+                    rightTrees = new TreeIterator(right(node, alternative));
+                    continue;
+                }
+
+                alternative += 2;
+                if (alternative >= node.alternatives.length) {
+                    return false;
+                }
+                leftTrees = new TreeIterator(left(node, alternative));
+                rightTrees = null;
+            }
+        }
+
+        @Override
+        public ParseTree next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (node.start == node.end) {
+                leafDone = true;
+                return ParseTree.of(g, node.axiom,
+                        Collections.singletonList(new ParseTree(word.charAt(node.start))));
+            }
+            return ParseTree.of(g, node.axiom,
+                    Arrays.asList(leftTree, rightTrees.next()));
+        }
+    }
+}
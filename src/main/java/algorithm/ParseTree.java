@@ -0,0 +1,188 @@
+package algorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a parse tree
+ *
+ * A leaf is a terminal, and an internal node is an axiom
+ * with the symbols of one of its rules as children.
+ */
+public final class ParseTree {
+    /**
+     * The symbol of the node
+     */
+    private final char symbol;
+
+    /**
+     * The name of the symbol (see Symbols.getName)
+     */
+    private final String name;
+
+    /**
+     * true if the axiom has been added by the normalization
+     */
+    private final boolean generated;
+
+    /**
+     * The children of the node, empty for a leaf
+     */
+    private final List<ParseTree> children;
+
+    /**
+     * Constructor of a leaf
+     *
+     * @param terminal
+     *          the terminal
+     */
+    public ParseTree(char terminal) {
+        this(terminal, String.valueOf(terminal), false, Collections.emptyList());
+    }
+
+    /**
+     * Constructor of a node
+     *
+     * @param axiom
+     *          the axiom
+     * @param name
+     *          the name of the axiom in its grammar
+     * @param generated
+     *          true if the axiom has been added by the normalization
+     * @param children
+     *          the children of the node
+     */
+    public ParseTree(char axiom, String name, boolean generated, List<ParseTree> children) {
+        this.symbol = axiom;
+        this.name = name;
+        this.generated = generated;
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Constructor of a node of a compiled grammar
+     *
+     * @param g
+     *          the compiled grammar
+     * @param axiom
+     *          the id of the axiom
+     * @param children
+     *          the children of the node
+     * @return
+     *          the node
+     */
+    static ParseTree of(CompiledGrammar g, int axiom, List<ParseTree> children) {
+        return new ParseTree(g.getAxiomName(axiom), g.getSymbols().getName(g.getAxiomName(axiom)), g.isGeneratedAxiom(axiom), children);
+    }
+
+    /**
+     * get the symbol of the node
+     *
+     * @return
+     *          the axiom, or the terminal for a leaf
+     */
+    public char getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * get the name of the symbol of the node
+     *
+     * @return
+     *          the name of the axiom, or the terminal for a leaf
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * get the children of the node
+     *
+     * @return
+     *          the children, empty for a leaf
+     */
+    public List<ParseTree> getChildren() {
+        return children;
+    }
+
+    /**
+     * Check if the node is a leaf
+     *
+     * @return
+     *          true if the node is a terminal, false otherwise
+     */
+    public boolean isLeaf() {
+        return children.isEmpty();
+    }
+
+    /**
+     * Check if the axiom of the node has been added by the normalization
+     *
+     * @return
+     *          true if the axiom is generated, false otherwise
+     */
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    /**
+     * Get the tree on the rules before the CNF, by replacing
+     * each generated axiom by its children
+     * Example : with the rule S -> aSb normalized in
+     *      S -> XY
+     *      X -> a
+     *      Y -> SZ
+     *      Z -> b
+     *   the tree S(X(a) Y(S(...) Z(b))) becomes S(a S(...) b)
+     *
+     * Only the axioms added by Chomsky.normalize can be removed :
+     * the rules modified by Clean.normalize are kept as they are
+     *
+     * @return
+     *          the tree without the generated axioms
+     */
+    public ParseTree withoutGeneratedAxioms() {
+        if (isLeaf()) {
+            return this;
+        }
+
+        List<ParseTree> newChildren = new ArrayList<>();
+        addWithoutGeneratedAxioms(newChildren);
+        return new ParseTree(symbol, name, generated, newChildren);
+    }
+
+    /**
+     * Add the children of the node to a list,
+     * replacing each generated axiom by its children
+     *
+     * @param list
+     *          the list to fill
+     */
+    private void addWithoutGeneratedAxioms(List<ParseTree> list) {
+        for (ParseTree child : children) {
+            if (child.isGenerated()) {
+                child.addWithoutGeneratedAxioms(list);
+            } else {
+                list.add(child.withoutGeneratedAxioms());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        ret.append(name);
+        if (!isLeaf()) {
+            ret.append('(');
+            for (int i = 0; i < children.size(); ++i) {
+                if (i > 0) {
+                    ret.append(' ');
+                }
+                ret.append(children.get(i));
+            }
+            ret.append(')');
+        }
+        return ret.toString();
+    }
+}
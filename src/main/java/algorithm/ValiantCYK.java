@@ -0,0 +1,321 @@
+package algorithm;
+
+import java.util.stream.IntStream;
+
+/**
+ * This class recognizes a word with Valiant's algorithm :
+ * the CYK chart is computed by products of boolean matrices
+ * instead of one split at a time.
+ *
+ * The chart is seen as the matrices T_A, where T_A[i][j] is true
+ * if the axiom A produces the characters i to j - 1 of the word,
+ * and the matrices P_BC, where P_BC[i][j] is true if there is a split k
+ * such as T_B[i][k] and T_C[k][j], for each pair (B, C) of a rule A -> BC.
+ * So P_BC is a sum of products T_B x T_C on blocks of the chart.
+ *
+ * The blocks are computed in the order of Okhotin's formulation
+ * of Valiant's algorithm ("Parsing by matrix multiplication generalized
+ * to Boolean grammars") : each procedure splits its block in four,
+ * which tiles the products for the cache.
+ * The rows of the matrices are packed in longs, and the rows of big
+ * products are computed in parallel on the common fork-join pool.
+ *
+ * The matrices take (axioms + pairs) * size^2 bits, where size is the
+ * smallest power of 2 greater than the length of the word : this algorithm
+ * is meant for long words on small grammars.
+ */
+public class ValiantCYK {
+
+    /**
+     * The number of rows from which a product
+     * is computed in parallel
+     */
+    private static final int PARALLEL_ROWS = 256;
+
+    /**
+     * The compiled grammar
+     */
+    private final CompiledGrammar g;
+
+    /**
+     * The size of the matrices (a power of 2)
+     */
+    private final int size;
+
+    /**
+     * The number of longs in a row of a matrix
+     */
+    private final int rowWords;
+
+    /**
+     * The matrix T_A of each axiom
+     */
+    private final long[][] t;
+
+    /**
+     * The matrix P_BC of each pair of the compiled grammar
+     */
+    private final long[][] p;
+
+    private ValiantCYK(CompiledGrammar g, int wordLength) {
+        this.g = g;
+        this.size = Integer.highestOneBit(wordLength) << 1;
+        this.rowWords = Math.max(1, size >>> 6);
+
+        t = new long[g.getAxiomsCount()][];
+        for (int A = 0; A < t.length; ++A) {
+            t[A] = new long[size * rowWords];
+        }
+
+        p = new long[g.pairRight.length][];
+        for (int pair = 0; pair < p.length; ++pair) {
+            p[pair] = new long[size * rowWords];
+        }
+    }
+
+    /**
+     * Check if the matrices for a word fit in a quarter
+     * of the maximum memory of the JVM
+     *
+     * @param g
+     *          the compiled grammar
+     * @param wordLength
+     *          the length of the word
+     * @return
+     *          true if the algorithm can be used for this length, false otherwise
+     */
+    public static boolean fitsInMemory(CompiledGrammar g, int wordLength) {
+        long size = Integer.highestOneBit(wordLength) << 1;
+        long bytes = (g.getAxiomsCount() + g.pairRight.length) * size * Math.max(1, size >>> 6) * 8;
+        return bytes <= Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Check if the given word can be generated
+     * with a compiled grammar
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word to check
+     * @return
+     *          true if the word can be generated, false otherwise
+     */
+    public static boolean isMember(CompiledGrammar g, String word) {
+        if (word.length() == 0) {
+            return g.acceptsEmptyWord();
+        }
+
+        int start = g.getStartAxiom();
+        if (start < 0) {
+            return false;
+        }
+
+        int wordLength = word.length();
+        ValiantCYK valiant = new ValiantCYK(g, wordLength);
+        if (!valiant.buildFirstLine(word)) {
+            return false;
+        }
+
+        valiant.compute(0, valiant.size);
+        return valiant.get(valiant.t[start], 0, wordLength);
+    }
+
+    /**
+     * Set T_A[i][i + 1] for each axiom A producing
+     * the character i of the word
+     *
+     * @param word
+     *          the word to check
+     * @return
+     *          false if a non producible character is found, true otherwise
+     */
+    private boolean buildFirstLine(String word) {
+        long[] parents = new long[g.words];
+        for (int i = 0; i < word.length(); ++i) {
+            if (!g.copyTerminalParents(word.charAt(i), parents, 0)) {
+                return false;
+            }
+            setAll(parents, 0, i, i + 1);
+        }
+
+        return true;
+    }
+
+    /**
+     * Compute T[i][j] for l <= i < j < m
+     *
+     * @param l
+     *          the first row
+     * @param m
+     *          the end of the block
+     */
+    private void compute(int l, int m) {
+        int middle = (l + m) >>> 1;
+        if (m - l >= 4) {
+            compute(l, middle);
+            compute(middle, m);
+        }
+        complete(l, middle, middle, m);
+    }
+
+    /**
+     * Compute T[i][j] for l <= i < m and l2 <= j < m2
+     *
+     * Conditions :
+     * - T[i][j] is known for l <= i < j < m and for l2 <= i < j < m2
+     * - P[i][j] already contains the splits k with m <= k < l2
+     *
+     * @param l
+     *          the first row
+     * @param m
+     *          the end of the rows
+     * @param l2
+     *          the first column
+     * @param m2
+     *          the end of the columns
+     */
+    private void complete(int l, int m, int l2, int m2) {
+        if (m - l == 1) {
+            if (m < l2) {
+                applyRules(l, l2);
+            }
+            return;
+        }
+
+        int middle = (l + m) >>> 1;
+        int middle2 = (l2 + m2) >>> 1;
+
+        complete(middle, m, l2, middle2);
+        multiply(l, middle, middle, m, l2, middle2);
+        complete(l, middle, l2, middle2);
+        multiply(middle, m, l2, middle2, middle2, m2);
+        complete(middle, m, middle2, m2);
+        multiply(l, middle, middle, m, middle2, m2);
+        multiply(l, middle, l2, middle2, middle2, m2);
+        complete(l, middle, middle2, m2);
+    }
+
+    /**
+     * Set T_A[i][j] for each rule A -> BC such as P_BC[i][j]
+     *
+     * @param i
+     *          the row
+     * @param j
+     *          the column
+     */
+    private void applyRules(int i, int j) {
+        for (int pair = 0; pair < p.length; ++pair) {
+            if (get(p[pair], i, j)) {
+                setAll(g.pairParents, pair * g.words, i, j);
+            }
+        }
+    }
+
+    /**
+     * Add to each P_BC the product T_B x T_C
+     * on the rows [r0, r1), the splits [k0, k1) and the columns [c0, c1)
+     * The bounds are aligned on their length, which is a power of 2
+     *
+     * @param r0
+     *          the first row
+     * @param r1
+     *          the end of the rows
+     * @param k0
+     *          the first split
+     * @param k1
+     *          the end of the splits
+     * @param c0
+     *          the first column
+     * @param c1
+     *          the end of the columns
+     */
+    private void multiply(int r0, int r1, int k0, int k1, int c0, int c1) {
+        if (r1 - r0 >= PARALLEL_ROWS) {
+            IntStream.range(r0, r1).parallel().forEach(i -> multiplyRow(i, k0, k1, c0, c1));
+        } else {
+            for (int i = r0; i < r1; ++i) {
+                multiplyRow(i, k0, k1, c0, c1);
+            }
+        }
+    }
+
+    /**
+     * Compute the row i of the products, see multiply
+     *
+     * @param i
+     *          the row
+     * @param k0
+     *          the first split
+     * @param k1
+     *          the end of the splits
+     * @param c0
+     *          the first column
+     * @param c1
+     *          the end of the columns
+     */
+    private void multiplyRow(int i, int k0, int k1, int c0, int c1) {
+        int row = i * rowWords;
+        int firstWord = c0 >>> 6;
+        int lastWord = (c1 - 1) >>> 6;
+        long mask = c1 - c0 >= 64 ? -1L : ((1L << (c1 - c0)) - 1) << c0;
+
+        for (int pair = 0; pair < p.length; ++pair) {
+            long[] B = t[g.pairLeft[pair]];
+            long[] C = t[g.pairRight[pair]];
+            long[] P = p[pair];
+
+            for (int kw = k0 >>> 6; kw <= (k1 - 1) >>> 6; ++kw) {
+                long splits = B[row + kw] & (k1 - k0 >= 64 ? -1L : ((1L << (k1 - k0)) - 1) << k0);
+                while (splits != 0) {
+                    int k = (kw << 6) + Long.numberOfTrailingZeros(splits);
+                    splits &= splits - 1;
+
+                    int rowK = k * rowWords;
+                    for (int w = firstWord; w <= lastWord; ++w) {
+                        P[row + w] |= C[rowK + w] & mask;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Set T_A[i][j] for each axiom A of a bitset
+     *
+     * @param axioms
+     *          the array containing the bitset
+     * @param offset
+     *          the position of the bitset
+     * @param i
+     *          the row
+     * @param j
+     *          the column
+     */
+    private void setAll(long[] axioms, int offset, int i, int j) {
+        for (int w = 0; w < g.words; ++w) {
+            long bits = axioms[offset + w];
+            while (bits != 0) {
+                int A = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                t[A][i * rowWords + (j >>> 6)] |= 1L << j;
+            }
+        }
+    }
+
+    /**
+     * Get a value of a matrix
+     *
+     * @param matrix
+     *          the matrix
+     * @param i
+     *          the row
+     * @param j
+     *          the column
+     * @return
+     *          the value matrix[i][j]
+     */
+    private boolean get(long[] matrix, int i, int j) {
+        return (matrix[i * rowWords + (j >>> 6)] & (1L << j)) != 0;
+    }
+}
@@ -0,0 +1,243 @@
+package algorithm;
+
+import java.util.Arrays;
+
+/**
+ * This class performs the CYK algorithm on a weighted grammar
+ * (see the weights of the rules in Grammar)
+ *
+ * The score of a derivation is the product of the weights of its rules.
+ * Two scores can be computed for a word :
+ * - VITERBI : the score of the best derivation
+ * - INSIDE : the sum of the scores of all derivations,
+ *   the probability of the word if the grammar is a PCFG
+ * Each mode uses its own weights of the rules of the normal form
+ * (see Rules.getWeight and Rules.getInsideWeight).
+ *
+ * The scores are stored as logarithms in a chart of doubles,
+ * each cell holding one score per axiom, by first character
+ * and by last character as in BitsetChart.
+ */
+public class WeightedCYK {
+
+    /**
+     * The score to compute
+     */
+    public enum Mode {
+        VITERBI,
+        INSIDE
+    }
+
+    private WeightedCYK() {}
+
+    /**
+     * Compute the logarithm of the score of the best derivation of a word
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word
+     * @return
+     *          the logarithm of the score, negative infinity if the word can not be generated
+     */
+    public static double viterbi(CompiledGrammar g, String word) {
+        return score(g, word, Mode.VITERBI);
+    }
+
+    /**
+     * Compute the logarithm of the sum of the scores
+     * of all the derivations of a word
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word
+     * @return
+     *          the logarithm of the score, negative infinity if the word can not be generated
+     */
+    public static double inside(CompiledGrammar g, String word) {
+        return score(g, word, Mode.INSIDE);
+    }
+
+    /**
+     * Compute the logarithm of the score of a word
+     *
+     * @param g
+     *          the compiled grammar
+     * @param word
+     *          the word
+     * @param mode
+     *          the score to compute
+     * @return
+     *          the logarithm of the score, negative infinity if the word can not be generated
+     */
+    public static double score(CompiledGrammar g, String word, Mode mode) {
+        int start = g.getStartAxiom();
+        if (word.length() == 0) {
+            return mode == Mode.VITERBI ? g.emptyWordLogWeight : g.emptyWordLogInsideWeight;
+        }
+        if (start < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        if (!fitsInMemory(g, word.length())) {
+            throw new IllegalArgumentException("The chart of a word of length " + word.length() + " does not fit in memory");
+        }
+
+        int wordLength = word.length();
+        int axioms = g.getAxiomsCount();
+        int size = (int) chartSize(g, wordLength);
+        double[] byStart = new double[size];
+        double[] byEnd = new double[size];
+        Arrays.fill(byStart, Double.NEGATIVE_INFINITY);
+        Arrays.fill(byEnd, Double.NEGATIVE_INFINITY);
+
+        double[] terminalRuleLogWeights = mode == Mode.VITERBI ? g.terminalRuleLogWeights : g.terminalRuleLogInsideWeights;
+        for (int i = 0; i < wordLength; ++i) {
+            int t = g.terminalIndex(word.charAt(i));
+            if (t < 0) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            for (int r = g.terminalRuleStart[t]; r < g.terminalRuleStart[t + 1]; ++r) {
+                byStart[startOffset(wordLength, axioms, i) + g.terminalRuleAxioms[r]] = terminalRuleLogWeights[r];
+                byEnd[endOffset(axioms, i) + g.terminalRuleAxioms[r]] = terminalRuleLogWeights[r];
+            }
+        }
+
+        for (int i = 1; i < wordLength; ++i) {
+            for (int j = 0; j < wordLength - i; ++j) {
+                fillCell(g, mode, wordLength, byStart, byEnd, i, j);
+            }
+        }
+
+        return byStart[startOffset(wordLength, axioms, 0) + (wordLength - 1) * axioms + start];
+    }
+
+    /**
+     * Check if the chart of a word can be indexed by an int
+     * and fits in a quarter of the maximum memory of the JVM
+     *
+     * @param g
+     *          the compiled grammar
+     * @param wordLength
+     *          the length of the word
+     * @return
+     *          true if the score of a word of this length can be computed, false otherwise
+     */
+    public static boolean fitsInMemory(CompiledGrammar g, int wordLength) {
+        long size = chartSize(g, wordLength);
+        return size <= Integer.MAX_VALUE - 8 && 2 * size * Double.BYTES <= Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * get the number of scores of a chart
+     *
+     * @param g
+     *          the compiled grammar
+     * @param wordLength
+     *          the length of the word
+     * @return
+     *          the number of scores, one per cell and axiom
+     */
+    private static long chartSize(CompiledGrammar g, int wordLength) {
+        return (long) wordLength * (wordLength + 1) / 2 * g.getAxiomsCount();
+    }
+
+    /**
+     * Fill the cell (i, j) of the chart from the cells
+     * of the previous lines
+     *
+     * @param g
+     *          the compiled grammar
+     * @param mode
+     *          the score to compute
+     * @param wordLength
+     *          the length of the word
+     * @param byStart
+     *          the cells, grouped by first character
+     * @param byEnd
+     *          the cells, grouped by last character
+     * @param i
+     *          the line of the cell
+     * @param j
+     *          the column of the cell
+     */
+    private static void fillCell(CompiledGrammar g, Mode mode, int wordLength, double[] byStart, double[] byEnd, int i, int j) {
+        int axioms = g.getAxiomsCount();
+        int left = startOffset(wordLength, axioms, j);
+        int right = endOffset(axioms, j + i) + (i - 1) * axioms;
+        int cell = left + i * axioms;
+        int mirror = right + axioms;
+        double[] ruleLogWeights = mode == Mode.VITERBI ? g.ruleLogWeights : g.ruleLogInsideWeights;
+
+        for (int A = 0; A < axioms; ++A) {
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+
+            for (int r = g.ruleStart[A]; r < g.ruleStart[A + 1]; ++r) {
+                int pair = g.rulePairs[r];
+                int B = g.pairLeft[pair];
+                int C = g.pairRight[pair];
+                double weight = ruleLogWeights[r];
+
+                for (int k = 0; k < i; ++k) {
+                    double leftScore = byStart[left + k * axioms + B];
+                    if (leftScore == Double.NEGATIVE_INFINITY) {
+                        continue;
+                    }
+                    double rightScore = byEnd[right - k * axioms + C];
+                    if (rightScore == Double.NEGATIVE_INFINITY) {
+                        continue;
+                    }
+
+                    double score = weight + leftScore + rightScore;
+                    if (mode == Mode.VITERBI) {
+                        max = Math.max(max, score);
+                    } else if (score > max) {
+                        // sum of exp(score - max), rescaled on the new maximum
+                        sum = sum * Math.exp(max - score) + 1;
+                        max = score;
+                    } else {
+                        sum += Math.exp(score - max);
+                    }
+                }
+            }
+
+            double score = mode == Mode.VITERBI || max == Double.NEGATIVE_INFINITY ? max : max + Math.log(sum);
+            byStart[cell + A] = score;
+            byEnd[mirror + A] = score;
+        }
+    }
+
+    /**
+     * Get the position of the first cell starting at a character
+     * (see BitsetChart)
+     *
+     * @param wordLength
+     *          the length of the word
+     * @param axioms
+     *          the number of axioms
+     * @param j
+     *          the position of the character
+     * @return
+     *          the position of the cell (0, j)
+     */
+    private static int startOffset(int wordLength, int axioms, int j) {
+        return (int) (((long) j * wordLength - (long) j * (j - 1) / 2) * axioms);
+    }
+
+    /**
+     * Get the position of the first cell ending at a character
+     * (see BitsetChart)
+     *
+     * @param axioms
+     *          the number of axioms
+     * @param e
+     *          the position of the character
+     * @return
+     *          the position of the cell (0, e)
+     */
+    private static int endOffset(int axioms, int e) {
+        return (int) ((long) e * (e + 1) / 2 * axioms);
+    }
+}
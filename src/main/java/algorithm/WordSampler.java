@@ -0,0 +1,379 @@
+package algorithm;
+
+import exception.CYKException;
+import grammar.Grammar;
+import utils.SpecialChars;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class draws random words of a given length from a grammar in CNF
+ *
+ * The number of derivations of each axiom for each length is computed once
+ * by dynamic programming, with big integers :
+ *      count(A, 1) = number of rules A -> a
+ *      count(A, n) = sum of count(B, k) * count(C, n - k) for each rule A -> BC and 0 < k < n
+ * A derivation of the starting axiom is then drawn top down : each rule and each
+ * split of the length is chosen with a probability proportional to its number
+ * of derivations, so there is no rejection. Every derivation of length n has
+ * the same probability, which means every word of length n has the same probability
+ * when the grammar is not ambiguous (an ambiguous word is drawn more often).
+ *
+ * The counts are computed on demand up to the longest length requested,
+ * then a sampler can be shared between threads, each with its own random generator.
+ */
+public final class WordSampler {
+    /**
+     * The compiled grammar
+     */
+    private final CompiledGrammar g;
+
+    /**
+     * For each axiom A, the terminals of the rules A -> a are stored
+     * in terminals from terminalStart[A] to terminalStart[A + 1]
+     */
+    private final int[] terminalStart;
+
+    /**
+     * The terminals of the rules A -> a, grouped by axiom
+     */
+    private final char[] terminals;
+
+    /**
+     * The counts, replaced by longer ones when a longer length is requested
+     */
+    private volatile Counts counts;
+
+    /**
+     * The numbers of derivations, by length then by axiom
+     */
+    private static final class Counts {
+        /**
+         * The number of derivations of each axiom, by length
+         */
+        final BigInteger[][] derivations;
+
+        /**
+         * For each length and each axiom A, the cumulated numbers of derivations
+         * of the binary rules of A (in the order of CompiledGrammar.rulePairs)
+         */
+        final BigInteger[][][] cumulated;
+
+        Counts(BigInteger[][] derivations, BigInteger[][][] cumulated) {
+            this.derivations = derivations;
+            this.cumulated = cumulated;
+        }
+    }
+
+    /**
+     * Default constructor
+     *
+     * @param g
+     *          the compiled grammar
+     */
+    public WordSampler(CompiledGrammar g) {
+        this.g = g;
+
+        int n = g.getAxiomsCount();
+        terminalStart = new int[n + 1];
+        for (int t = 0; t < g.getTerminalsCount(); ++t) {
+            if (g.getTerminal(t) != SpecialChars.epsilon) {
+                for (int r = g.terminalRuleStart[t]; r < g.terminalRuleStart[t + 1]; ++r) {
+                    ++terminalStart[g.terminalRuleAxioms[r] + 1];
+                }
+            }
+        }
+        for (int A = 0; A < n; ++A) {
+            terminalStart[A + 1] += terminalStart[A];
+        }
+        terminals = new char[terminalStart[n]];
+        int[] next = Arrays.copyOf(terminalStart, n);
+        for (int t = 0; t < g.getTerminalsCount(); ++t) {
+            if (g.getTerminal(t) != SpecialChars.epsilon) {
+                for (int r = g.terminalRuleStart[t]; r < g.terminalRuleStart[t + 1]; ++r) {
+                    terminals[next[g.terminalRuleAxioms[r]]++] = g.getTerminal(t);
+                }
+            }
+        }
+
+        BigInteger[] empty = new BigInteger[n];
+        Arrays.fill(empty, BigInteger.ZERO);
+        BigInteger[] single = new BigInteger[n];
+        for (int A = 0; A < n; ++A) {
+            single[A] = BigInteger.valueOf(terminalStart[A + 1] - terminalStart[A]);
+        }
+        counts = new Counts(new BigInteger[][]{empty, single}, new BigInteger[2][n][]);
+    }
+
+    /**
+     * Create the sampler of a grammar
+     *
+     * Condition : the grammar must be in CNF (Chomsky Normal Form)
+     *
+     * @param g
+     *          the grammar
+     * @return
+     *          the sampler
+     * @throws CYKException
+     *          thrown if the grammar is not in CNF
+     */
+    public static WordSampler compile(Grammar g) throws CYKException {
+        return new WordSampler(CompiledGrammar.compile(g));
+    }
+
+    /**
+     * Get the number of derivations of the words of a length
+     * (the number of words if the grammar is not ambiguous)
+     *
+     * @param length
+     *          the length of the words
+     * @return
+     *          the number of derivations of the starting axiom
+     */
+    public BigInteger count(int length) {
+        if (length < 0 || g.getStartAxiom() < 0) {
+            return BigInteger.ZERO;
+        } else if (length == 0) {
+            return g.acceptsEmptyWord() ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        return getCounts(length).derivations[length][g.getStartAxiom()];
+    }
+
+    /**
+     * Draw a word
+     *
+     * @param length
+     *          the length of the word
+     * @param random
+     *          the random generator
+     * @return
+     *          the word, null if there is no word of this length
+     */
+    public String sample(int length, SplittableRandom random) {
+        if (count(length).signum() == 0) {
+            return null;
+        } else if (length == 0) {
+            return "";
+        }
+
+        Counts counts = getCounts(length);
+        StringBuilder word = new StringBuilder(length);
+        // the derivations to draw, as (axiom, length), the leftmost on top
+        int[] stack = new int[2 * length];
+        int size = 0;
+        stack[size++] = g.getStartAxiom();
+        stack[size++] = length;
+        while (size > 0) {
+            int n = stack[--size];
+            int A = stack[--size];
+            if (n == 1) {
+                int choice = random.nextInt(terminalStart[A + 1] - terminalStart[A]);
+                word.append(terminals[terminalStart[A] + choice]);
+                continue;
+            }
+
+            // choose the rule
+            BigInteger[] cumulated = counts.cumulated[n][A];
+            BigInteger x = randomBelow(cumulated[cumulated.length - 1], random);
+            int r = upperBound(cumulated, x);
+            int pair = g.rulePairs[g.ruleStart[A] + r];
+            int B = g.pairLeft[pair];
+            int C = g.pairRight[pair];
+
+            // choose the length of the word of B
+            x = r == 0 ? x : x.subtract(cumulated[r - 1]);
+            int k = 1;
+            for (; k < n - 1; ++k) {
+                BigInteger left = counts.derivations[k][B];
+                BigInteger right = counts.derivations[n - k][C];
+                if (left.signum() == 0 || right.signum() == 0) {
+                    continue;
+                }
+                BigInteger derivations = left.multiply(right);
+                if (x.compareTo(derivations) < 0) {
+                    break;
+                }
+                x = x.subtract(derivations);
+            }
+
+            stack[size++] = C;
+            stack[size++] = n - k;
+            stack[size++] = B;
+            stack[size++] = k;
+        }
+        return word.toString();
+    }
+
+    /**
+     * Get an infinite stream of random words
+     * The stream can be parallel : each part of the stream
+     * has its own random generator, split from the first one
+     *
+     * @param length
+     *          the length of the words
+     * @param seed
+     *          the seed of the random generator
+     * @return
+     *          the words, an empty stream if there is no word of this length
+     */
+    public Stream<String> samples(int length, long seed) {
+        if (count(length).signum() == 0) {
+            return Stream.empty();
+        }
+        return StreamSupport.stream(new Samples(length, new SplittableRandom(seed), Long.MAX_VALUE), false);
+    }
+
+    /**
+     * The spliterator of the random words
+     */
+    private final class Samples extends Spliterators.AbstractSpliterator<String> {
+        private final int length;
+        private final SplittableRandom random;
+        private long remaining;
+
+        Samples(int length, SplittableRandom random, long remaining) {
+            super(remaining, Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED);
+            this.length = length;
+            this.random = random;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            if (remaining == 0) {
+                return false;
+            }
+            --remaining;
+            action.accept(sample(length, random));
+            return true;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            if (remaining < 2) {
+                return null;
+            }
+            long half = remaining / 2;
+            remaining -= half;
+            return new Samples(length, random.split(), half);
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+    }
+
+    /**
+     * Get the counts up to a length, computing the missing lengths
+     *
+     * @param length
+     *          the length
+     * @return
+     *          the counts
+     */
+    private Counts getCounts(int length) {
+        Counts current = counts;
+        if (current.derivations.length > length) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = counts;
+            if (current.derivations.length > length) {
+                return current;
+            }
+
+            int n = g.getAxiomsCount();
+            BigInteger[][] derivations = Arrays.copyOf(current.derivations, length + 1);
+            BigInteger[][][] cumulated = Arrays.copyOf(current.cumulated, length + 1);
+            for (int l = current.derivations.length; l <= length; ++l) {
+                derivations[l] = new BigInteger[n];
+                cumulated[l] = new BigInteger[n][];
+                for (int A = 0; A < n; ++A) {
+                    BigInteger[] rules = new BigInteger[g.ruleStart[A + 1] - g.ruleStart[A]];
+                    BigInteger total = BigInteger.ZERO;
+                    for (int r = 0; r < rules.length; ++r) {
+                        int pair = g.rulePairs[g.ruleStart[A] + r];
+                        int B = g.pairLeft[pair];
+                        int C = g.pairRight[pair];
+                        for (int k = 1; k < l; ++k) {
+                            if (derivations[k][B].signum() != 0 && derivations[l - k][C].signum() != 0) {
+                                total = total.add(derivations[k][B].multiply(derivations[l - k][C]));
+                            }
+                        }
+                        rules[r] = total;
+                    }
+                    derivations[l][A] = total;
+                    cumulated[l][A] = rules;
+                }
+            }
+            counts = new Counts(derivations, cumulated);
+            return counts;
+        }
+    }
+
+    /**
+     * Find the first cumulated number of derivations greater than a number
+     * (the rules without derivations have the same cumulated number as the previous rule)
+     *
+     * @param cumulated
+     *          the cumulated numbers, sorted
+     * @param x
+     *          the number, lower than the last cumulated number
+     * @return
+     *          the index of the rule
+     */
+    private static int upperBound(BigInteger[] cumulated, BigInteger x) {
+        int low = 0;
+        int high = cumulated.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulated[middle].compareTo(x) > 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Draw a uniform integer
+     *
+     * @param bound
+     *          the bound, strictly positive
+     * @param random
+     *          the random generator
+     * @return
+     *          an integer between 0 and bound - 1
+     */
+    private static BigInteger randomBelow(BigInteger bound, SplittableRandom random) {
+        if (bound.bitLength() < 63) {
+            return BigInteger.valueOf(random.nextLong(bound.longValue()));
+        }
+
+        // draw bitLength bits until the number is below the bound (at least one chance in two)
+        byte[] bytes = new byte[(bound.bitLength() + 7) / 8];
+        int unusedBits = 8 * bytes.length - bound.bitLength();
+        BigInteger x;
+        do {
+            for (int i = 0; i < bytes.length; i += 8) {
+                long bits = random.nextLong();
+                for (int j = i; j < Math.min(i + 8, bytes.length); ++j, bits >>>= 8) {
+                    bytes[j] = (byte) bits;
+                }
+            }
+            bytes[0] &= 0xFF >>> unusedBits;
+            x = new BigInteger(1, bytes);
+        } while (x.compareTo(bound) >= 0);
+        return x;
+    }
+}
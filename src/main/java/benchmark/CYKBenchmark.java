@@ -0,0 +1,96 @@
+package benchmark;
+
+import algorithm.CYK;
+import algorithm.CompiledGrammar;
+import algorithm.StringCYK;
+import exception.CYKException;
+import exception.GrammarException;
+import grammar.Grammar;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * This class compares the string chart CYK
+ * with the bitset chart CYK on the CYK grammars,
+ * with the grammar compiled on each call or once for all words
+ *
+ * Usage : CYKBenchmark [word length...]
+ */
+public class CYKBenchmark {
+
+    private static final String[] GRAMMARS = {"grammars/cyk1.txt", "grammars/cyk2.txt", "grammars/cyk3.txt"};
+
+    private static final int WORDS = 20;
+
+    private CYKBenchmark() {}
+
+    public static void main(String[] args) throws IOException, GrammarException, CYKException {
+        int[] lengths = {10, 50, 100, 200};
+        if (args.length > 0) {
+            lengths = new int[args.length];
+            for (int i = 0; i < args.length; ++i) {
+                lengths[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (String file : GRAMMARS) {
+            Grammar g = new Grammar(file);
+            CompiledGrammar compiled = CompiledGrammar.compile(g);
+            for (int length : lengths) {
+                String[] words = randomWords(new Random(length), length);
+
+                // warm up both engines and check they agree
+                for (String word : words) {
+                    if (StringCYK.isMember(g, word) != CYK.isMember(compiled, word)) {
+                        throw new CYKException("Engines disagree on " + word);
+                    }
+                }
+
+                long stringTime = System.nanoTime();
+                for (String word : words) {
+                    StringCYK.isMember(g, word);
+                }
+                stringTime = System.nanoTime() - stringTime;
+
+                long bitsetTime = System.nanoTime();
+                for (String word : words) {
+                    CYK.isMember(CompiledGrammar.compile(g), word);
+                }
+                bitsetTime = System.nanoTime() - bitsetTime;
+
+                long compiledTime = System.nanoTime();
+                for (String word : words) {
+                    CYK.isMember(compiled, word);
+                }
+                compiledTime = System.nanoTime() - compiledTime;
+
+                System.out.printf("%s length %4d : string %10.3f ms/word   bitset %8.3f ms/word   compiled %8.3f ms/word   x%.1f%n",
+                        file, length, stringTime / 1e6 / WORDS, bitsetTime / 1e6 / WORDS, compiledTime / 1e6 / WORDS,
+                        (double) stringTime / compiledTime);
+            }
+        }
+    }
+
+    /**
+     * Generate random words on the alphabet {a, b}
+     *
+     * @param random
+     *          the random generator
+     * @param length
+     *          the length of the words
+     * @return
+     *          the words
+     */
+    private static String[] randomWords(Random random, int length) {
+        String[] words = new String[WORDS];
+        for (int i = 0; i < WORDS; ++i) {
+            StringBuilder word = new StringBuilder(length);
+            for (int j = 0; j < length; ++j) {
+                word.append(random.nextBoolean() ? 'a' : 'b');
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+}
@@ -0,0 +1,100 @@
+package benchmark;
+
+import algorithm.CYK;
+import algorithm.CompiledGrammar;
+import algorithm.Earley;
+import exception.CYKException;
+import exception.ChomskyException;
+import exception.GrammarException;
+import grammar.Clean;
+import grammar.Grammar;
+import normalform.Chomsky;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * This class compares the Earley algorithm on the grammar as parsed
+ * with the CYK algorithm on the grammar in Chomsky Normal Form
+ * The normalization is done once and is not measured.
+ *
+ * grammars/earley1.txt is right recursive : the Earley algorithm
+ * is linear on it while the CYK algorithm stays cubic.
+ *
+ * Usage : EarleyBenchmark [word length...]
+ */
+public class EarleyBenchmark {
+
+    private static final String[] GRAMMARS = {"grammars/earley1.txt", "grammars/cyk1.txt", "grammars/cyk2.txt", "grammars/cyk3.txt"};
+
+    private static final int WORDS = 20;
+
+    private EarleyBenchmark() {}
+
+    public static void main(String[] args) throws IOException, GrammarException, ChomskyException, CYKException {
+        int[] lengths = {10, 50, 100, 200};
+        if (args.length > 0) {
+            lengths = new int[args.length];
+            for (int i = 0; i < args.length; ++i) {
+                lengths[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (String file : GRAMMARS) {
+            Earley earley = Earley.compile(new Grammar(file));
+            Grammar g = new Grammar(file);
+            Clean.normalize(g);
+            Chomsky.normalize(g);
+            CompiledGrammar compiled = CompiledGrammar.compile(g);
+
+            for (int length : lengths) {
+                String[] words = randomWords(new Random(length), length);
+
+                // warm up both engines and check they agree
+                for (String word : words) {
+                    if (earley.isMember(word) != CYK.isMember(compiled, word)) {
+                        throw new CYKException("Engines disagree on " + word);
+                    }
+                }
+
+                long earleyTime = System.nanoTime();
+                for (String word : words) {
+                    earley.isMember(word);
+                }
+                earleyTime = System.nanoTime() - earleyTime;
+
+                long cykTime = System.nanoTime();
+                for (String word : words) {
+                    CYK.isMember(compiled, word);
+                }
+                cykTime = System.nanoTime() - cykTime;
+
+                System.out.printf("%s length %4d : earley %8.3f ms/word   cyk %8.3f ms/word   %s%n",
+                        file, length, earleyTime / 1e6 / WORDS, cykTime / 1e6 / WORDS,
+                        earleyTime < cykTime ? "earley" : "cyk");
+            }
+        }
+    }
+
+    /**
+     * Generate random words on the alphabet {a, b}
+     *
+     * @param random
+     *          the random generator
+     * @param length
+     *          the length of the words
+     * @return
+     *          the words
+     */
+    private static String[] randomWords(Random random, int length) {
+        String[] words = new String[WORDS];
+        for (int i = 0; i < WORDS; ++i) {
+            StringBuilder word = new StringBuilder(length);
+            for (int j = 0; j < length; ++j) {
+                word.append(random.nextBoolean() ? 'a' : 'b');
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+}
@@ -0,0 +1,85 @@
+package benchmark;
+
+import algorithm.BitsetCYK;
+import algorithm.CompiledGrammar;
+import algorithm.ValiantCYK;
+import exception.CYKException;
+import exception.GrammarException;
+import grammar.Grammar;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * This class compares the bitset CYK with Valiant's algorithm
+ * on the CYK grammars, to find the length from which
+ * Valiant's algorithm is faster (see CYK.VALIANT_THRESHOLD)
+ *
+ * Usage : ValiantBenchmark [word length...]
+ */
+public class ValiantBenchmark {
+
+    private static final String[] GRAMMARS = {"grammars/cyk1.txt", "grammars/cyk2.txt", "grammars/cyk3.txt"};
+
+    private static final int REPETITIONS = 5;
+
+    private ValiantBenchmark() {}
+
+    public static void main(String[] args) throws IOException, GrammarException, CYKException {
+        int[] lengths = {16, 32, 64, 128, 256, 512, 1024};
+        if (args.length > 0) {
+            lengths = new int[args.length];
+            for (int i = 0; i < args.length; ++i) {
+                lengths[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (String file : GRAMMARS) {
+            CompiledGrammar g = CompiledGrammar.compile(new Grammar(file));
+            for (int length : lengths) {
+                String word = randomWord(new Random(length), length);
+
+                // warm up both engines and check they agree
+                for (int i = 0; i < REPETITIONS; ++i) {
+                    if (BitsetCYK.isMember(g, word) != ValiantCYK.isMember(g, word)) {
+                        throw new CYKException("Engines disagree on " + word);
+                    }
+                }
+
+                long bitsetTime = System.nanoTime();
+                for (int i = 0; i < REPETITIONS; ++i) {
+                    BitsetCYK.isMember(g, word);
+                }
+                bitsetTime = System.nanoTime() - bitsetTime;
+
+                long valiantTime = System.nanoTime();
+                for (int i = 0; i < REPETITIONS; ++i) {
+                    ValiantCYK.isMember(g, word);
+                }
+                valiantTime = System.nanoTime() - valiantTime;
+
+                System.out.printf("%s length %5d : bitset %10.3f ms   valiant %10.3f ms   %s%n",
+                        file, length, bitsetTime / 1e6 / REPETITIONS, valiantTime / 1e6 / REPETITIONS,
+                        valiantTime < bitsetTime ? "valiant" : "bitset");
+            }
+        }
+    }
+
+    /**
+     * Generate a random word on the alphabet {a, b}
+     *
+     * @param random
+     *          the random generator
+     * @param length
+     *          the length of the word
+     * @return
+     *          the word
+     */
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int j = 0; j < length; ++j) {
+            word.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,407 @@
+package cli;
+
+import algorithm.CompiledGrammar;
+import algorithm.MembershipChecker;
+import grammar.Clean;
+import grammar.Grammar;
+import normalform.Chomsky;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class checks a list of words against all the grammars of a directory
+ *
+ * The grammars are cleaned, put in CNF and compiled concurrently,
+ * a grammar which can not be compiled is reported and skipped.
+ * Then the words are read by batches, and each batch is checked against
+ * each grammar by a task of a bounded pool : each thread reuses one chart
+ * for all the grammars (see MembershipChecker), so the memory of the charts
+ * depends on the number of threads only. The pipeline read -> check -> write keeps a bounded
+ * number of tasks in flight : the reader waits when the checks or the writer
+ * are late, so the memory does not depend on the number of words.
+ *
+ * The results are written in the order of the words, one line per word and grammar :
+ *      grammar<TAB>word<TAB>true|false|error
+ * where error means that the word could not be checked against the grammar
+ * (for instance a word too long for the memory), the other words are still checked.
+ * The throughput and the errors of each grammar are printed on the error output at the end.
+ *
+ * Usage : BatchChecker grammarsDirectory [wordsFile]
+ * The words are read from the standard input when there is no file or when the file is "-"
+ */
+public final class BatchChecker {
+    /**
+     * The default number of words checked by a task
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * The number of tasks in flight per thread
+     */
+    private static final int PENDING_TASKS_PER_THREAD = 4;
+
+    /**
+     * The number of threads checking the words
+     */
+    private final int threads;
+
+    /**
+     * The number of words checked by a task
+     */
+    private final int batchSize;
+
+    /**
+     * The checker of each thread, moved from grammar to grammar
+     */
+    private final ThreadLocal<MembershipChecker> checkers = new ThreadLocal<>();
+
+    /**
+     * A grammar of the directory, with its statistics
+     */
+    private static final class Job {
+        final String name;
+        final CompiledGrammar grammar;
+        final long compileNanos;
+        final LongAdder words = new LongAdder();
+        final LongAdder members = new LongAdder();
+        final LongAdder checkNanos = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicReference<RuntimeException> firstError = new AtomicReference<>();
+
+        Job(String name, CompiledGrammar g, long compileNanos) {
+            this.name = name;
+            this.grammar = g;
+            this.compileNanos = compileNanos;
+        }
+    }
+
+    /**
+     * Default constructor
+     *
+     * @param threads
+     *          the number of threads checking the words
+     * @param batchSize
+     *          the number of words checked by a task
+     */
+    public BatchChecker(int threads, int batchSize) {
+        if (threads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("The number of threads and the size of a batch must be strictly positive : " + threads + ", " + batchSize);
+        }
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage : BatchChecker grammarsDirectory [wordsFile]");
+            System.exit(2);
+        }
+
+        BatchChecker checker = new BatchChecker(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+        try {
+            if (args.length == 1 || "-".equals(args[1])) {
+                checker.run(Paths.get(args[0]), System.in, System.out, System.err);
+            } else {
+                try (InputStream words = Files.newInputStream(Paths.get(args[1]))) {
+                    checker.run(Paths.get(args[0]), words, System.out, System.err);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(e);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Check the words against all the grammars of a directory
+     *
+     * @param directory
+     *          the directory of the grammars
+     * @param words
+     *          the words, one per line in UTF-8, the stream is not closed
+     * @param out
+     *          the stream of the results, in UTF-8
+     * @param err
+     *          the stream of the errors and of the statistics
+     * @throws IOException
+     *          if the directory, the words or the results can not be read or written
+     * @throws InterruptedException
+     */
+    public void run(Path directory, InputStream words, OutputStream out, PrintStream err) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "batch-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Job> jobs = compile(directory, pool, err);
+            if (jobs.isEmpty()) {
+                err.println("No grammar in " + directory);
+                return;
+            }
+
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            long count = check(jobs, words, writer, pool);
+            writer.flush();
+            printStatistics(jobs, count, System.nanoTime() - start, err);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Clean, put in CNF and compile the grammars of a directory concurrently
+     *
+     * @param directory
+     *          the directory of the grammars
+     * @param pool
+     *          the pool running the compilations
+     * @param err
+     *          the stream where the grammars which can not be compiled are reported
+     * @return
+     *          the compiled grammars, sorted by name
+     * @throws IOException
+     *          if the directory can not be read
+     * @throws InterruptedException
+     */
+    private static List<Job> compile(Path directory, ExecutorService pool, PrintStream err) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> entries = Files.list(directory)) {
+            files = entries.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        List<Future<Job>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(pool.submit(() -> {
+                long start = System.nanoTime();
+                Grammar g = new Grammar(file);
+                Clean.normalize(g);
+                Chomsky.normalize(g);
+                CompiledGrammar compiled = CompiledGrammar.compile(g);
+                return new Job(file.getFileName().toString(), compiled, System.nanoTime() - start);
+            }));
+        }
+
+        List<Job> jobs = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); ++i) {
+            try {
+                jobs.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                err.println(files.get(i).getFileName() + " : " + e.getCause().getMessage());
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Check the words against the grammars and write the results
+     * The words are read by another thread, which submits one task
+     * per batch and grammar and waits when too many tasks are in flight,
+     * and the results of the tasks are written in the order of submission
+     *
+     * @param jobs
+     *          the grammars
+     * @param words
+     *          the words, one per line
+     * @param writer
+     *          the writer of the results
+     * @param pool
+     *          the pool running the tasks
+     * @return
+     *          the number of words
+     * @throws IOException
+     *          if the words can not be read, or the results written
+     * @throws InterruptedException
+     */
+    private long check(List<Job> jobs, InputStream words, Writer writer, ExecutorService pool) throws IOException, InterruptedException {
+        // the results of the tasks in flight, a future of null after the last one
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(Math.max(threads * PENDING_TASKS_PER_THREAD, jobs.size()) + 1);
+        long[] count = new long[1];
+
+        Thread reader = new Thread(() -> {
+            // the future of null ending the results, or of the error which stopped the reader
+            CompletableFuture<String> end = new CompletableFuture<>();
+            try {
+                read(jobs, words, pending, pool, count);
+                end.complete(null);
+            } catch (InterruptedException e) {
+                // the writer has stopped
+                return;
+            } catch (Throwable t) {
+                end.completeExceptionally(t);
+            }
+            try {
+                pending.put(end);
+            } catch (InterruptedException e) {
+                // the writer has stopped
+            }
+        }, "batch-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            for (String results = pending.take().get(); results != null; results = pending.take().get()) {
+                writer.write(results);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            reader.interrupt();
+        }
+
+        reader.join();
+        return count[0];
+    }
+
+    /**
+     * Read the words by batches and submit the tasks checking
+     * each batch against each grammar
+     *
+     * @param jobs
+     *          the grammars
+     * @param words
+     *          the words, one per line
+     * @param pending
+     *          the results of the tasks in flight, waiting to be written
+     * @param pool
+     *          the pool running the tasks
+     * @param count
+     *          the number of words read, in its first cell
+     * @throws IOException
+     *          if the words can not be read
+     * @throws InterruptedException
+     *          if the writer has stopped
+     */
+    private void read(List<Job> jobs, InputStream words, BlockingQueue<Future<String>> pending,
+                      ExecutorService pool, long[] count) throws IOException, InterruptedException {
+        BufferedReader lines = new BufferedReader(new InputStreamReader(words, StandardCharsets.UTF_8), 1 << 16);
+        List<String> batch = new ArrayList<>(batchSize);
+        for (String line = lines.readLine(); ; line = lines.readLine()) {
+            if (line != null) {
+                batch.add(line);
+                ++count[0];
+            }
+            if (batch.size() == batchSize || (line == null && !batch.isEmpty())) {
+                String[] checked = batch.toArray(new String[batch.size()]);
+                for (Job job : jobs) {
+                    pending.put(pool.submit(() -> check(job, checked)));
+                }
+                batch.clear();
+            }
+            if (line == null) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Check a batch of words against a grammar,
+     * a word which can not be checked is reported as an error of the grammar
+     *
+     * @param job
+     *          the grammar
+     * @param words
+     *          the words
+     * @return
+     *          the lines of the results
+     */
+    private String check(Job job, String[] words) {
+        long start = System.nanoTime();
+        MembershipChecker checker = checkers.get();
+        if (checker == null) {
+            checker = new MembershipChecker(job.grammar);
+            checkers.set(checker);
+        } else if (checker.getGrammar() != job.grammar) {
+            checker.setGrammar(job.grammar);
+        }
+        StringBuilder results = new StringBuilder(words.length * 32);
+        int members = 0;
+        int errors = 0;
+        for (String word : words) {
+            results.append(job.name).append('\t').append(word).append('\t');
+            try {
+                boolean member = checker.isMember(word);
+                if (member) {
+                    ++members;
+                }
+                results.append(member);
+            } catch (RuntimeException e) {
+                ++errors;
+                job.firstError.compareAndSet(null, e);
+                results.append("error");
+            }
+            results.append('\n');
+        }
+
+        job.words.add(words.length);
+        job.members.add(members);
+        job.errors.add(errors);
+        job.checkNanos.add(System.nanoTime() - start);
+        return results.toString();
+    }
+
+    /**
+     * Print the throughput of each grammar, and the first error of the grammars
+     * which could not check some words
+     * (the time of the checks is the sum of the times of the threads)
+     *
+     * @param jobs
+     *          the grammars
+     * @param words
+     *          the number of words
+     * @param nanos
+     *          the total time
+     * @param err
+     *          the stream of the statistics
+     */
+    private static void printStatistics(List<Job> jobs, long words, long nanos, PrintStream err) {
+        err.printf("%-30s %12s %12s %12s %12s %12s %14s%n", "grammar", "words", "members", "errors", "compile ms", "check ms", "words/s");
+        for (Job job : jobs) {
+            long checkNanos = job.checkNanos.sum();
+            err.printf("%-30s %12d %12d %12d %12.3f %12.3f %14.0f%n", job.name, job.words.sum(), job.members.sum(), job.errors.sum(),
+                    job.compileNanos / 1e6, checkNanos / 1e6, checkNanos == 0 ? 0 : job.words.sum() * 1e9 / checkNanos);
+        }
+        for (Job job : jobs) {
+            RuntimeException error = job.firstError.get();
+            if (error != null) {
+                err.println(job.name + " : " + job.errors.sum() + " words not checked, the first one : " + error);
+            }
+        }
+        err.printf("%d words, %d grammars, %.3f ms%n", words, jobs.size(), nanos / 1e6);
+    }
+}
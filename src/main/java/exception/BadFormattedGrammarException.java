@@ -1,7 +1,31 @@
 package exception;
 
 public class BadFormattedGrammarException extends GrammarException {
+    /**
+     * The line of the error, from 1, 0 if unknown
+     */
+    private final int line;
+
+    /**
+     * The column of the error, from 1, 0 if unknown
+     */
+    private final int column;
+
     public BadFormattedGrammarException(String message) {
-        super("Error while parsing grammar : " + message);
+        this(message, 0, 0);
+    }
+
+    public BadFormattedGrammarException(String message, int line, int column) {
+        super("Error while parsing grammar : " + (line > 0 ? "line " + line + ", column " + column + " : " : "") + message);
+        this.line = line;
+        this.column = column;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
     }
 }
@@ -0,0 +1,9 @@
+package exception;
+
+public class GreibachException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public GreibachException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package exception;
+
+public class SnapshotException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public SnapshotException(String message) {
+        super(message);
+    }
+}
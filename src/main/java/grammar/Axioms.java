@@ -1,8 +1,281 @@
 package grammar;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * This class represents a Map containing all axioms
+ * This class represents a Map containing all axioms, in insertion order
+ *
+ * It also indexes the occurrences of each axiom in the rules,
+ * so the axioms calling an axiom are found without reading all the rules.
+ * The index is updated when the rules of an axiom are added, removed
+ * or replaced (see Rules), and when an axiom is put or removed :
+ * all the methods modifying the map (compute, merge, replace, the views
+ * and their iterators, Entry.setValue...) go through put and remove.
+ * The modifications of the map and of the rules are counted,
+ * so a value computed from the axioms knows when it is stale.
  */
-public class Axioms extends LinkedHashMap<Character, Rules> {}
+public class Axioms extends AbstractMap<Character, Rules> {
+    /**
+     * The rules of each axiom
+     */
+    private final Map<Character, Rules> axioms = new LinkedHashMap<>();
+
+    /**
+     * The view of the entries, modifying the map with put and remove
+     */
+    private final Set<Entry<Character, Rules>> entrySet = new EntrySet();
+
+    /**
+     * The occurrences of each axiom in the rules
+     */
+    private final Map<Character, Set<Occurrence>> occurrences = new HashMap<>();
+
+    /**
+     * For each axiom, the number of its occurrences in the rules of each calling axiom
+     */
+    private final Map<Character, Map<Character, Integer>> callers = new HashMap<>();
+
+    /**
+     * The number of modifications of the map and of the rules
+     */
+    private long modifications;
+
+    @Override
+    public int size() {
+        return axioms.size();
+    }
+
+    @Override
+    public boolean containsKey(Object axiomName) {
+        return axioms.containsKey(axiomName);
+    }
+
+    @Override
+    public Rules get(Object axiomName) {
+        return axioms.get(axiomName);
+    }
+
+    @Override
+    public Set<Entry<Character, Rules>> entrySet() {
+        return entrySet;
+    }
+
+    /**
+     * Put the rules of an axiom, replacing its previous rules
+     *
+     * @param axiomName
+     *          the axiom
+     * @param rules
+     *          the rules, which must not be in axioms yet
+     * @return
+     *          the previous rules of the axiom, null if there were none
+     * @throws IllegalStateException
+     *          if the rules are already the rules of another axiom, nothing is modified
+     */
+    @Override
+    public Rules put(Character axiomName, Rules rules) {
+        if (axiomName == null || rules == null) {
+            throw new NullPointerException("An axiom and its rules can not be null");
+        }
+        Rules previous = axioms.get(axiomName);
+        if (previous == rules) {
+            return previous;
+        }
+
+        // checked before any modification, so a failed put leaves the map and the index unchanged
+        rules.checkDetached();
+        axioms.put(axiomName, rules);
+        ++modifications;
+        if (previous != null) {
+            detach(axiomName, previous);
+        }
+        rules.attach(this, axiomName);
+        return previous;
+    }
+
+    @Override
+    public Rules remove(Object axiomName) {
+        Rules previous = axioms.remove(axiomName);
+        if (previous != null) {
+            ++modifications;
+            detach((Character) axiomName, previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        ++modifications;
+        axioms.forEach(this::detach);
+        axioms.clear();
+    }
+
+    /**
+     * Get all axioms names calling a certain axiom
+     *
+     * @param axiomName
+     *          the axiom that we want calling axioms
+     * @return
+     *          the list of calling axioms
+     */
+    public List<Character> getCallingAxioms(Character axiomName) {
+        return new ArrayList<>(callers.getOrDefault(axiomName, Collections.emptyMap()).keySet());
+    }
+
+    /**
+     * Get the occurrences of an axiom in the rules
+     *
+     * @param axiomName
+     *          the axiom
+     * @return
+     *          the occurrences, in a read only view
+     */
+    public Set<Occurrence> getOccurrences(Character axiomName) {
+        return Collections.unmodifiableSet(occurrences.getOrDefault(axiomName, Collections.emptySet()));
+    }
+
+    /**
+     * get the number of modifications of the axioms and of their rules (weights included)
+     *
+     * @return
+     *          the number of modifications, only increasing
+     */
+    long getModifications() {
+        return modifications;
+    }
+
+    /**
+     * Count the modification of the weights of a rule
+     *
+     * @param axiomName
+     *          the axiom owning the rule
+     * @param rule
+     *          the modified rule
+     */
+    void weightChanged(char axiomName, Rule rule) {
+        ++modifications;
+    }
+
+    /**
+     * Index the occurrences of a rule added to an axiom
+     *
+     * @param axiomName
+     *          the axiom owning the rule
+     * @param rule
+     *          the added rule
+     */
+    void ruleAdded(char axiomName, Rule rule) {
+        ++modifications;
+        for (int i = 0; i < rule.size(); ++i) {
+            char c = rule.get(i);
+            if (Grammar.isAxiom(c)) {
+                occurrences.computeIfAbsent(c, k -> new LinkedHashSet<>()).add(new Occurrence(axiomName, rule, i));
+                callers.computeIfAbsent(c, k -> new LinkedHashMap<>()).merge(axiomName, 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Remove the occurrences of a rule removed from an axiom
+     *
+     * @param axiomName
+     *          the axiom owning the rule
+     * @param rule
+     *          the removed rule
+     */
+    void ruleRemoved(char axiomName, Rule rule) {
+        ++modifications;
+        for (int i = 0; i < rule.size(); ++i) {
+            char c = rule.get(i);
+            if (Grammar.isAxiom(c)) {
+                Set<Occurrence> axiomOccurrences = occurrences.get(c);
+                axiomOccurrences.remove(new Occurrence(axiomName, rule, i));
+                if (axiomOccurrences.isEmpty()) {
+                    occurrences.remove(c);
+                }
+
+                Map<Character, Integer> axiomCallers = callers.get(c);
+                if (axiomCallers.merge(axiomName, -1, Integer::sum) == 0) {
+                    axiomCallers.remove(axiomName);
+                    if (axiomCallers.isEmpty()) {
+                        callers.remove(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The view of the entries : an entry is modified with put,
+     * and removed with remove
+     */
+    private final class EntrySet extends AbstractSet<Entry<Character, Rules>> {
+        @Override
+        public int size() {
+            return axioms.size();
+        }
+
+        @Override
+        public Iterator<Entry<Character, Rules>> iterator() {
+            Iterator<Entry<Character, Rules>> entries = axioms.entrySet().iterator();
+            return new Iterator<Entry<Character, Rules>>() {
+                private Entry<Character, Rules> last;
+
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Entry<Character, Rules> next() {
+                    Entry<Character, Rules> entry = entries.next();
+                    last = entry;
+                    return new SimpleEntry<Character, Rules>(entry) {
+                        @Override
+                        public Rules setValue(Rules rules) {
+                            Rules previous = put(entry.getKey(), rules);
+                            super.setValue(rules);
+                            return previous;
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    entries.remove();
+                    ++modifications;
+                    detach(last.getKey(), last.getValue());
+                    last = null;
+                }
+            };
+        }
+    }
+
+    /**
+     * Remove the occurrences of all the rules of an axiom
+     *
+     * @param axiomName
+     *          the removed axiom
+     * @param rules
+     *          the rules of the axiom
+     */
+    private void detach(Character axiomName, Rules rules) {
+        rules.detach(this);
+        for (Rule rule : rules) {
+            ruleRemoved(axiomName, rule);
+        }
+    }
+}
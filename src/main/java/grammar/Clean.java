@@ -1,154 +1,279 @@
 package grammar;
 
+import exception.GrammarException;
+import metrics.Metrics;
+import metrics.Stage;
+import metrics.StageEvent;
 import utils.SpecialChars;
 
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * This class cleans a grammar by :
- * - removing non accessible axioms
  * - removing non productive axioms
- * - refactoring axioms matching pattern : X -> X | &
+ * - removing non accessible axioms
  * - removing epsilon productions
  */
 public class Clean {
 
     private Clean() {}
 
+    /**
+     * The maximal number of occurrences of nullable axioms in a rule
+     * when the rules are not binarized : a rule with k occurrences
+     * has 2^k - 1 epsilon free variants
+     */
+    private static final int MAX_NULLABLE_OCCURRENCES = 16;
+
+    /**
+     * The maximal number of iterations computing the weights
+     * of the derivations of epsilon (see getEmptyWeights)
+     */
+    private static final int MAX_EMPTY_WEIGHT_ITERATIONS = 1000;
+
     /**
      * clean a grammar
      *
      * @param g
      *          the grammar to clean
+     * @throws GrammarException
+     *          if a rule contains too many nullable axioms,
+     *          or if there is no free axiom name for the copy of the starting axiom
      */
-    public static void normalize(Grammar g) {
-        List<Character> productiveAxioms = new ArrayList<>();
-        while (g.getAxioms().size() > 0 && productiveAxioms.size() != g.getAxioms().size()) {
-            int tmpSize;
-            do {
-                removeNonAccessible(g, productiveAxioms);
-                tmpSize = productiveAxioms.size();
-
-                g.getAxioms().keySet().stream()
-                        .filter(axiomName -> isAxiomProductive(g, axiomName, productiveAxioms) && !productiveAxioms.contains(axiomName))
-                        .forEach(productiveAxioms::add);
-
-            } while (tmpSize != productiveAxioms.size());
-
-            removeNonProductiveRules(g, productiveAxioms);
-            removeEmptyAxioms(g);
-        }
+    public static void normalize(Grammar g) throws GrammarException {
+        normalize(g, false);
+    }
+
+    /**
+     * clean a grammar
+     * The rules of more than two characters containing nullable axioms
+     * can be binarized before removing the epsilon productions :
+     * each rule has then at most 3 variants, so the size of the cleaned
+     * grammar stays linear in the size of the grammar
+     * Example : S -> ABCD with A, B, C and D nullable has 15 variants,
+     *   but S -> AX, X -> BY, Y -> CD have only 3 variants each
+     *
+     * @param g
+     *          the grammar to clean
+     * @param binarizeFirst
+     *          true to binarize the rules containing nullable axioms
+     * @throws GrammarException
+     *          if a rule contains too many nullable axioms without binarizing,
+     *          or if there are not enough free axiom names
+     */
+    public static void normalize(Grammar g, boolean binarizeFirst) throws GrammarException {
+        removeNonProductive(g);
+        removeNonAccessible(g);
 
-        refactorKeyKeyEpsilonAxiom(g);
-        removeEpsilon(g);
+        if (g.hasEpsilons()) {
+            removeEpsilon(g, binarizeFirst);
+
+            // the axioms producing only epsilon have no rule left
+            removeNonProductive(g);
+            removeNonAccessible(g);
+        }
 
         // removed because it breaks the Chomsky compatibility
         // refactorOneRuleAxiom(g);
     }
 
     /**
-     * Remove non accessible axioms
+     * Remove non productive axioms and the rules using them
+     * Once they are removed, all the remaining axioms are productive,
+     * so removing the non accessible axioms after does not need a fixpoint
      *
      * @param g
      *          the grammar
-     * @param productiveAxioms
-     *          list of all productive axioms
      */
-    private static void removeNonAccessible(Grammar g, List<Character> productiveAxioms) {
-        Axioms axioms = g.getAxiomsCopy();
-        List<Character> accessibleAxioms = new ArrayList<>();
+    private static void removeNonProductive(Grammar g) {
+        StageEvent event = Metrics.begin(Stage.REMOVE_NON_PRODUCTIVE, g);
+        BitSet productiveAxioms = getProductiveAxioms(g, event);
 
-        /**
-         * List all accessible axioms
-         */
-        accessibleAxioms.add(axioms.keySet().iterator().next());
-        for (Map.Entry<Character, Rules> axiom : axioms.entrySet()) {
-            for (Rule rule : axiom.getValue()) {
-                rule.stream()
-                        .filter(c -> c != axiom.getKey() && !Character.isLowerCase(c) && c != SpecialChars.epsilon && !accessibleAxioms.contains(c))
-                        .forEach(accessibleAxioms::add);
+        for (Rules rules : g.getAxioms().values()) {
+            for (Rule rule : rules) {
+                for (int i = 0; i < rule.size(); ++i) {
+                    if (Grammar.isAxiom(rule.get(i)) && !productiveAxioms.get(Symbols.getId(rule.get(i)))) {
+                        rules.remove(rule);
+                        break;
+                    }
+                }
             }
         }
 
-        /**
-         * Remove all non accessible axioms and also
-         * their presence in the list of productive axioms
-         */
-        axioms.keySet().stream().filter(axiomName -> !accessibleAxioms.contains(axiomName)).forEach(axiomName -> {
-            g.removeAxiom(axiomName);
-            if (productiveAxioms.contains(axiomName)) {
-                productiveAxioms.remove(axiomName);
-            }
-        });
+        removeEmptyAxioms(g);
+        Metrics.end(event, g);
     }
 
     /**
-     * Check if an axiom is productive
+     * Get the productive axioms
      *
      * @param g
      *          the grammar
-     * @param axiomName
-     *          the axiom to check
-     * @param productiveAxioms
-     *          the list of all productive axioms
+     * @param event
+     *          the event counting the iterations, null if the instrumentation is disabled
      * @return
-     *          true if the axiom is productive, false otherwise
+     *          the productive axioms, indexed by id
      */
-    private static boolean isAxiomProductive(Grammar g, Character axiomName, List<Character> productiveAxioms) {
-        Rules rules = g.getAxioms().get(axiomName);
-        for (Rule rule : rules) {
-            int nbCharProductive = 0;
-            for (Character c : rule) {
-                if (Character.isLowerCase(c) || c == SpecialChars.epsilon || productiveAxioms.contains(c)) {
-                    ++nbCharProductive;
+    private static BitSet getProductiveAxioms(Grammar g, StageEvent event) {
+        return getAxiomsDerivingFrom(g, c -> !Grammar.isAxiom(c), event);
+    }
+
+    /**
+     * Get the nullable axioms (producing epsilon)
+     *
+     * @param g
+     *          the grammar
+     * @param event
+     *          the event counting the iterations, null if the instrumentation is disabled
+     * @return
+     *          the nullable axioms, indexed by id
+     */
+    private static BitSet getNullableAxioms(Grammar g, StageEvent event) {
+        return getAxiomsDerivingFrom(g, c -> c == SpecialChars.epsilon, event);
+    }
+
+    /**
+     * Get the axioms having a rule made of accepted characters and of such axioms,
+     * with a worklist : each rule counts its characters not yet accepted,
+     * and a rule whose counter reaches 0 adds its axiom to the set.
+     * Each occurrence is decremented at most once, so the time
+     * is linear in the total length of the rules
+     *
+     * @param g
+     *          the grammar
+     * @param accepted
+     *          the characters accepted from the beginning
+     * @param event
+     *          the event counting the axioms taken from the worklist,
+     *          null if the instrumentation is disabled
+     * @return
+     *          the axioms, indexed by id
+     */
+    private static BitSet getAxiomsDerivingFrom(Grammar g, Predicate<Character> accepted, StageEvent event) {
+        Map<Character, Integer> ids = new HashMap<>();
+        int nbRules = 0;
+        for (Map.Entry<Character, Rules> axiom : g.getAxioms().entrySet()) {
+            ids.put(axiom.getKey(), ids.size());
+            nbRules += axiom.getValue().size();
+        }
+
+        // the occurrences of each axiom, as rule numbers, grouped by axiom
+        int[] occurrenceStart = new int[ids.size() + 1];
+        char[] ruleAxioms = new char[nbRules];
+        int[] remaining = new int[nbRules];
+        int r = 0;
+        for (Map.Entry<Character, Rules> axiom : g.getAxioms().entrySet()) {
+            for (Rule rule : axiom.getValue()) {
+                ruleAxioms[r] = axiom.getKey();
+                for (int i = 0; i < rule.size(); ++i) {
+                    if (!accepted.test(rule.get(i))) {
+                        ++remaining[r];
+                        Integer id = ids.get(rule.get(i));
+                        if (id != null) {
+                            ++occurrenceStart[id + 1];
+                        }
+                    }
+                }
+                ++r;
+            }
+        }
+        for (int id = 0; id < ids.size(); ++id) {
+            occurrenceStart[id + 1] += occurrenceStart[id];
+        }
+        int[] occurrences = new int[occurrenceStart[ids.size()]];
+        int[] filled = Arrays.copyOf(occurrenceStart, ids.size());
+        r = 0;
+        for (Rules rules : g.getAxioms().values()) {
+            for (Rule rule : rules) {
+                for (int i = 0; i < rule.size(); ++i) {
+                    Integer id = ids.get(rule.get(i));
+                    if (id != null && !accepted.test(rule.get(i))) {
+                        occurrences[filled[id]++] = r;
+                    }
                 }
+                ++r;
             }
+        }
 
-            if (nbCharProductive == rule.size()) {
-                return true;
+        BitSet axioms = new BitSet();
+        int[] worklist = new int[ids.size()];
+        int worklistSize = 0;
+        for (r = 0; r < nbRules; ++r) {
+            if (remaining[r] == 0 && !axioms.get(Symbols.getId(ruleAxioms[r]))) {
+                axioms.set(Symbols.getId(ruleAxioms[r]));
+                worklist[worklistSize++] = ids.get(ruleAxioms[r]);
+            }
+        }
+        int iterations = 0;
+        while (worklistSize > 0) {
+            int id = worklist[--worklistSize];
+            ++iterations;
+            for (int o = occurrenceStart[id]; o < occurrenceStart[id + 1]; ++o) {
+                int rule = occurrences[o];
+                if (--remaining[rule] == 0 && !axioms.get(Symbols.getId(ruleAxioms[rule]))) {
+                    axioms.set(Symbols.getId(ruleAxioms[rule]));
+                    worklist[worklistSize++] = ids.get(ruleAxioms[rule]);
+                }
             }
         }
 
-        return false;
+        if (event != null) {
+            event.addIterations(iterations);
+        }
+        return axioms;
     }
 
     /**
-     * Remove all non productive rules
+     * Remove non accessible axioms,
+     * found with a depth first search from the starting axiom
      *
      * @param g
      *          the grammar
-     * @param productiveAxioms
-     *          the list of all productive axioms
      */
-    private static void removeNonProductiveRules(Grammar g, List<Character> productiveAxioms) {
-        for (Map.Entry<Character, Rules> entry : g.getAxioms().entrySet()) {
-            for (Rule rule : g.getAxiomRulesCopy(entry.getKey())) {
-                for (Character c : rule) {
-                    if (!Character.isLowerCase(c) && c != SpecialChars.epsilon && !productiveAxioms.contains(c)) {
-                        entry.getValue().remove(rule);
-                        break;
+    private static void removeNonAccessible(Grammar g) {
+        StageEvent event = Metrics.begin(Stage.REMOVE_NON_ACCESSIBLE, g);
+        BitSet accessibleAxioms = new BitSet();
+        Deque<Character> stack = new ArrayDeque<>();
+        if (g.getAxioms().containsKey(g.getStartAxiom())) {
+            accessibleAxioms.set(Symbols.getId(g.getStartAxiom()));
+            stack.push(g.getStartAxiom());
+        }
+        int iterations = 0;
+        while (!stack.isEmpty()) {
+            ++iterations;
+            for (Rule rule : g.getAxioms().get(stack.pop())) {
+                for (int i = 0; i < rule.size(); ++i) {
+                    char c = rule.get(i);
+                    if (Grammar.isAxiom(c) && !accessibleAxioms.get(Symbols.getId(c)) && g.getAxioms().containsKey(c)) {
+                        accessibleAxioms.set(Symbols.getId(c));
+                        stack.push(c);
                     }
                 }
             }
         }
+
+        List<Character> axiomNames = new ArrayList<>(g.getAxioms().keySet());
+        axiomNames.stream().filter(axiomName -> !accessibleAxioms.get(Symbols.getId(axiomName))).forEach(g::removeAxiom);
+
+        if (event != null) {
+            event.addIterations(iterations);
+            Metrics.end(event, g);
+        }
     }
 
     /**
      * Remove axioms with no rules
-     * (this can happens when the removeNonProductiveRules function
+     * (this can happens when the removeNonProductive function
      * has removed all rules of the axioms)
      *
      * @param g
      *          the grammar
      */
     private static void removeEmptyAxioms(Grammar g) {
-        Axioms axioms = g.getAxiomsCopy();
-        axioms.entrySet().stream().filter(entry -> entry.getValue().size() == 0).forEach(entry -> {
-            g.removeAxiom(entry.getKey());
-            if (g.getAxiomsWithEpsilon().contains(entry.getKey())) {
-                g.getAxiomsWithEpsilon().remove(entry.getKey());
-            }
-        });
+        List<Character> axiomNames = new ArrayList<>(g.getAxioms().keySet());
+        axiomNames.stream().filter(axiomName -> g.getAxioms().get(axiomName).isEmpty()).forEach(g::removeAxiom);
     }
 
     /**
@@ -167,55 +292,22 @@ public class Clean {
     @Deprecated
     private static void refactorOneRuleAxiom(Grammar g) {
         Axioms axioms = g.getAxiomsCopy();
-        axioms.entrySet().stream().filter(axiom -> axiom.getValue().size() == 1 && axiom.getKey() != g.getStartAxiom()).forEach(axiom -> {
+        axioms.entrySet().stream().filter(axiom -> axiom.getValue().size() == 1 && !axiom.getKey().equals(g.getStartAxiom())).forEach(axiom -> {
             g.removeAxiom(axiom.getKey());
             Axioms axioms2 = g.getAxiomsCopy();
+            Rule keyRule = Rule.of(axiom.getKey());
             for (Map.Entry<Character, Rules> axiom2 : axioms2.entrySet()) {
-                for (int i = 0; i < axiom2.getValue().size(); ++i) {
-                    for (int j = 0; j < axiom2.getValue().get(i).size(); ++j) {
-                        if (axiom.getKey() == axiom2.getValue().get(i).get(j)) {
-                            g.getAxioms().get(axiom2.getKey()).get(i).remove(j);
-                            for (int k = 0; k < axiom.getValue().get(0).size(); ++k) {
-                                g.getAxioms().get(axiom2.getKey()).get(i).add(j + k, axiom.getValue().get(0).get(k));
-                            }
-                        }
+                for (Rule rule : axiom2.getValue()) {
+                    Rule refactored = rule;
+                    while (refactored.contains(axiom.getKey())) {
+                        refactored = refactored.replace(keyRule, axiom.getValue().get(0));
                     }
+                    g.getAxioms().get(axiom2.getKey()).replace(rule, refactored);
                 }
             }
         });
     }
 
-    /**
-     * Refactor rules like : X -> X | & which are useless
-     * Example :
-     *      S -> A
-     *      A -> A | &
-     *    become
-     *      S -> &
-     *
-     * @param g
-     *          the grammar
-     */
-    private static void refactorKeyKeyEpsilonAxiom(Grammar g) {
-        g.getAxiomsCopy().entrySet().stream()
-                .filter(axiom -> axiom.getValue().size() == 2)
-                .filter(axiom -> axiom.getValue().get(0).size() == 1)
-                .filter(axiom -> axiom.getValue().get(0).get(0) == axiom.getKey())
-                .filter(axiom -> axiom.getValue().get(1).size() == 1)
-                .filter(axiom -> axiom.getValue().get(1).get(0) == SpecialChars.epsilon)
-                .forEach(axiom -> g.getCallingAxioms(axiom.getKey()).stream()
-                                .filter(callingAxiom -> callingAxiom != axiom.getKey())
-                                .forEach(callingAxiom -> {
-                                    Rule keyRule = new Rule(Collections.singletonList(axiom.getKey()));
-                                    Rule epsilonRule = new Rule(Collections.singletonList(SpecialChars.epsilon));
-
-                                    g.getAxioms().get(callingAxiom).remove(keyRule);
-                                    g.getAxioms().get(callingAxiom).add(epsilonRule);
-                                    g.removeAxiom(axiom.getKey());
-                                })
-                );
-    }
-
     /**
      * Remove all epsilons productions
      * (except in the starting axiom)
@@ -227,85 +319,311 @@ public class Clean {
      *      S -> a | b | CdC | Cd | dC | d | C | &
      *      C -> cC | c
      *
+     * The nullable axioms are computed once, then each rule
+     * is replaced by all its variants without some nullable axioms.
+     * If the starting axiom is nullable and used in the rules,
+     * it is replaced in the rules by a copy without epsilon
+     *
+     * The weights are kept : a variant has the weight of its rule multiplied
+     * by the weights of the derivations of epsilon of the removed axioms,
+     * and identical variants are merged (see Rules.merge).
+     * For the inside weights, the rules of an axiom A are divided by 1 - w
+     * when the variants A -> A of inside weight w are removed.
+     * The best and the sum of the scores of the derivations of a word (see WeightedCYK)
+     * are then the same as in the grammar with epsilon
+     * (if the weights of the derivations of epsilon converge, see getEmptyWeights)
+     *
      * @param g
      *          the grammar
+     * @param binarizeFirst
+     *          true to binarize the rules containing nullable axioms
+     * @throws GrammarException
+     *          if a rule contains too many nullable axioms,
+     *          or if there are not enough free axiom names
      */
-    private static void removeEpsilon(Grammar g) {
-        Rule epsilonRule = new Rule(Collections.singletonList(SpecialChars.epsilon));
-
-        while (g.hasEpsilons() && !g.hasEpsilonsOnlyInStart()) {
-            g.getAxiomsWithEpsilonCopy().stream().filter(axiomWithEpsilon -> axiomWithEpsilon != g.getStartAxiom()).forEach(axiomWithEpsilon -> {
-                List<Character> callingAxioms = g.getCallingAxioms(axiomWithEpsilon);
-                callingAxioms.stream().forEach(callingAxiom -> {
-                    g.getAxiomsCopy().get(callingAxiom).stream().filter(rule -> rule.contains(axiomWithEpsilon)).forEach(rule -> {
-                        if (rule.size() == 1) {
-                            if (!g.getAxiomsWithEpsilon().contains(callingAxiom)) {
-                                g.getAxioms().get(callingAxiom).add(epsilonRule);
-                                g.getAxiomsWithEpsilon().add(callingAxiom);
-                            }
-                        } else {
-                            int occurrences = Collections.frequency(rule, axiomWithEpsilon);
-                            int combinations = (int) Math.pow(2, occurrences);
-
-                            /**
-                             * The algorithm is quite simple
-                             * Imagine you have the following grammar :
-                             *      S -> a | b | CdC
-                             *      C -> aC | c | &
-                             * and you want to remove the epsilon production in C
-                             * The grammar become :
-                             *      S -> a | b | CdC | Cd | dC | d
-                             *      C -> cC | c
-                             *
-                             * The difficulty is to generate
-                             * CdC ; Cd ; dC ; d
-                             *
-                             * as you can see, there are 2^2 = 4 possibilities
-                             * We iterate from 0 to 4 - 1 (since CdC is already present)
-                             * and we convert i (which is the counter) to binary.
-                             * we get : 00 ; 01 ; 10 ; 11
-                             *
-                             * After, we iterate from the initial rule (which is CdC) and :
-                             * - if there is a 0, we remove the C
-                             * - else, we keep the C
-                             *
-                             * for 1 : we have 01, so we obtain dC (the first C is removed, and the second is kept)
-                             */
-                            for (int i = 0; i < combinations - 1; ++i) {
-                                String binaryCombination = String.format("%" + occurrences + "s", Integer.toBinaryString(i)).replace(' ', '0');
-                                final int[] binaryPosition = {0};
-
-                                Rule newRule = new Rule();
-                                rule.stream().filter(c -> c != axiomWithEpsilon || binaryCombination.charAt(binaryPosition[0]++) == '1').forEach(newRule::add);
-                                if (newRule.size() == 0) {
-                                    newRule.add(SpecialChars.epsilon);
-                                    if (!g.getAxiomsWithEpsilon().contains(callingAxiom)) {
-                                        g.getAxiomsWithEpsilon().add(callingAxiom);
-                                    }
-                                }
-                                g.getAxioms().get(callingAxiom).add(newRule);
-                            }
-                        }
-                    });
-                });
-
-                /**
-                 * The axiom is now epsilon free
-                 * so we can remove it from the list of
-                 * axioms containing epsilon
-                 */
-                g.getAxioms().get(axiomWithEpsilon).remove(epsilonRule);
-                g.getAxiomsWithEpsilon().remove(axiomWithEpsilon);
-            });
+    private static void removeEpsilon(Grammar g, boolean binarizeFirst) throws GrammarException {
+        StageEvent event = Metrics.begin(Stage.REMOVE_EPSILON, g);
+        BitSet nullableAxioms = getNullableAxioms(g, event);
+        if (binarizeFirst) {
+            binarizeNullableRules(g, nullableAxioms);
+            nullableAxioms = getNullableAxioms(g, event);
+        }
+
+        double[] emptyWeights = getEmptyWeights(g, nullableAxioms, false);
+        double[] emptyInsideWeights = getEmptyWeights(g, nullableAxioms, true);
+
+        Rule epsilonRule = Rule.of(SpecialChars.epsilon);
+        for (Map.Entry<Character, Rules> axiom : g.getAxioms().entrySet()) {
+            Rules rules = axiom.getValue();
+            List<Rule> initialRules = rules.stream().collect(Collectors.toList());
+            double[] initialWeights = initialRules.stream().mapToDouble(rules::getWeight).toArray();
+            double[] initialInsideWeights = initialRules.stream().mapToDouble(rules::getInsideWeight).toArray();
+            double loopWeight = 0;
+            for (int r = 0; r < initialRules.size(); ++r) {
+                loopWeight += addEpsilonFreeVariants(g, axiom.getKey(), initialRules.get(r), initialWeights[r], initialInsideWeights[r],
+                        nullableAxioms, emptyWeights, emptyInsideWeights);
+            }
+            rules.remove(epsilonRule);
+
+            // a loop never improves the best derivation, it only adds derivations to the sum
+            if (loopWeight > 0 && loopWeight < 1) {
+                for (Rule rule : rules) {
+                    rules.setWeight(rule, rules.getWeight(rule), rules.getInsideWeight(rule) / (1 - loopWeight));
+                }
+            }
         }
+        g.getAxiomsWithEpsilon().clear();
 
         /**
          * Replace epsilon from the starting axiom
          * at the end (more beautiful)
          */
-        if (g.hasEpsilonsOnlyInStart()) {
-            g.getAxioms().get(g.getStartAxiom()).remove(epsilonRule);
-            g.getAxioms().get(g.getStartAxiom()).add(epsilonRule);
+        if (g.getAxioms().containsKey(g.getStartAxiom()) && nullableAxioms.get(Symbols.getId(g.getStartAxiom()))) {
+            if (!g.getCallingAxioms(g.getStartAxiom()).isEmpty()) {
+                separateStartAxiom(g);
+            }
+            int start = Symbols.getId(g.getStartAxiom());
+            g.getAxioms().get(g.getStartAxiom()).add(epsilonRule, emptyWeights[start], emptyInsideWeights[start]);
+            g.getAxiomsWithEpsilon().add(g.getStartAxiom());
+        }
+        Metrics.end(event, g);
+    }
+
+    /**
+     * Get the weight of the derivations of epsilon of each nullable axiom A :
+     * the least solution of empty(A) = sum (or max) of w * empty(X1) * ... * empty(Xk)
+     * for the rules A -> X1...Xk of weight w made of nullable axioms (empty(&) = 1),
+     * found by iterating from 0 until the weights are stable
+     * If they do not converge (for example with the default weights,
+     * where A -> AA | & has infinitely many derivations of weight 1),
+     * the weights of the derivations of epsilon are all 1
+     *
+     * @param g
+     *          the grammar
+     * @param nullableAxioms
+     *          the nullable axioms
+     * @param inside
+     *          true for the sum of the inside weights of the derivations,
+     *          false for the weight of the best derivation
+     * @return
+     *          the weights, indexed by id (0 for the axioms which are not nullable)
+     */
+    private static double[] getEmptyWeights(Grammar g, BitSet nullableAxioms, boolean inside) {
+        // the rules made of nullable axioms, as the ids of their symbols (none for epsilon)
+        List<int[]> symbols = new ArrayList<>();
+        List<Integer> axioms = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (Map.Entry<Character, Rules> axiom : g.getAxioms().entrySet()) {
+            if (!nullableAxioms.get(Symbols.getId(axiom.getKey()))) {
+                continue;
+            }
+            for (Rule rule : axiom.getValue()) {
+                int[] ids = new int[rule.size()];
+                int length = 0;
+                for (int i = 0; i < rule.size() && ids != null; ++i) {
+                    if (Grammar.isAxiom(rule.get(i)) && nullableAxioms.get(Symbols.getId(rule.get(i)))) {
+                        ids[length++] = Symbols.getId(rule.get(i));
+                    } else if (rule.get(i) != SpecialChars.epsilon) {
+                        ids = null;
+                    }
+                }
+                if (ids != null) {
+                    symbols.add(Arrays.copyOf(ids, length));
+                    axioms.add(Symbols.getId(axiom.getKey()));
+                    weights.add(inside ? axiom.getValue().getInsideWeight(rule) : axiom.getValue().getWeight(rule));
+                }
+            }
+        }
+
+        double[] empty = new double[nullableAxioms.length()];
+        for (int iteration = 0; iteration < MAX_EMPTY_WEIGHT_ITERATIONS; ++iteration) {
+            double[] next = new double[empty.length];
+            for (int r = 0; r < symbols.size(); ++r) {
+                double weight = weights.get(r);
+                for (int id : symbols.get(r)) {
+                    weight *= empty[id];
+                }
+                int id = axioms.get(r);
+                next[id] = inside ? next[id] + weight : Math.max(next[id], weight);
+            }
+
+            boolean stable = true;
+            for (int id = 0; id < empty.length; ++id) {
+                if (Double.isInfinite(next[id])) {
+                    iteration = MAX_EMPTY_WEIGHT_ITERATIONS;
+                    stable = false;
+                    break;
+                }
+                stable &= Math.abs(next[id] - empty[id]) <= 1e-12 * next[id];
+            }
+            empty = next;
+            if (stable) {
+                return empty;
+            }
+        }
+
+        for (int id = nullableAxioms.nextSetBit(0); id >= 0; id = nullableAxioms.nextSetBit(id + 1)) {
+            empty[id] = 1;
+        }
+        return empty;
+    }
+
+    /**
+     * Replace the starting axiom in the rules by a copy of its rules,
+     * so the starting axiom can produce epsilon without being nullable in the rules
+     * Example :
+     *      S -> aSb | ab
+     *    becomes
+     *      S -> aXb | ab
+     *      X -> aXb | ab
+     *
+     * @param g
+     *          the grammar, without epsilon
+     * @throws GrammarException
+     *          if there is no free axiom name for the copy
+     */
+    private static void separateStartAxiom(Grammar g) throws GrammarException {
+        char start = g.getStartAxiom();
+        char copy = g.getFirstFreeAxiomName();
+        g.addGeneratedAxiom(copy, g.getAxiomRulesCopy(start));
+
+        for (Character callingAxiom : g.getCallingAxioms(start)) {
+            Rules rules = g.getAxioms().get(callingAxiom);
+            List<Rule> initialRules = rules.stream().filter(rule -> rule.contains(start)).collect(Collectors.toList());
+            for (Rule rule : initialRules) {
+                char[] symbols = rule.toCharArray();
+                for (int i = 0; i < symbols.length; ++i) {
+                    if (symbols[i] == start) {
+                        symbols[i] = copy;
+                    }
+                }
+                rules.replace(rule, Rule.of(symbols));
+            }
         }
     }
+
+    /**
+     * Add the variants of a rule without some of its nullable axioms
+     *
+     * The variants are the subsets of the occurrences of nullable axioms :
+     * with k occurrences, the bit k - 1 - j of a mask from 2^k - 2 to 0
+     * tells if the occurrence j is kept (the mask 2^k - 1 is the rule itself).
+     * Example : for CdC, the masks 10, 01 and 00 give Cd, dC and d
+     *
+     * The empty variant and the variant A -> A are not added.
+     * The weights of a variant are the weights of the rule multiplied by
+     * the weights of the derivations of epsilon of the removed axioms,
+     * and it is merged with an identical rule (see Rules.merge)
+     *
+     * @param g
+     *          the grammar
+     * @param axiomName
+     *          the axiom of the rule
+     * @param rule
+     *          the rule
+     * @param weight
+     *          the weight of the rule, before adding the variants of the other rules
+     * @param insideWeight
+     *          the inside weight of the rule, before adding the variants of the other rules
+     * @param nullableAxioms
+     *          the nullable axioms
+     * @param emptyWeights
+     *          the weights of the best derivations of epsilon, indexed by id
+     * @param emptyInsideWeights
+     *          the sums of the weights of the derivations of epsilon, indexed by id
+     * @return
+     *          the inside weight of the variant A -> A, 0 if there is none
+     * @throws GrammarException
+     *          if the rule contains too many nullable axioms
+     */
+    private static double addEpsilonFreeVariants(Grammar g, char axiomName, Rule rule, double weight, double insideWeight,
+                                                 BitSet nullableAxioms, double[] emptyWeights,
+                                                 double[] emptyInsideWeights) throws GrammarException {
+        Rules rules = g.getAxioms().get(axiomName);
+        int[] positions = new int[rule.size()];
+        int occurrences = 0;
+        for (int i = 0; i < rule.size(); ++i) {
+            if (Grammar.isAxiom(rule.get(i)) && nullableAxioms.get(Symbols.getId(rule.get(i)))) {
+                positions[occurrences++] = i;
+            }
+        }
+        if (occurrences == 0) {
+            return 0;
+        }
+        if (occurrences > MAX_NULLABLE_OCCURRENCES) {
+            throw new GrammarException("Too many nullable axioms in " + g.getSymbols().format(axiomName) + " -> " + rule.toString(g.getSymbols()) + ", the rules must be binarized first");
+        }
+
+        double loopWeight = 0;
+        char[] variant = new char[rule.size()];
+        for (int mask = (1 << occurrences) - 2; mask >= 0; --mask) {
+            int length = 0;
+            int occurrence = 0;
+            double variantWeight = weight;
+            double variantInsideWeight = insideWeight;
+            for (int i = 0; i < rule.size(); ++i) {
+                if (occurrence < occurrences && positions[occurrence] == i
+                        && (mask >>> (occurrences - 1 - occurrence++) & 1) == 0) {
+                    variantWeight *= emptyWeights[Symbols.getId(rule.get(i))];
+                    variantInsideWeight *= emptyInsideWeights[Symbols.getId(rule.get(i))];
+                    continue;
+                }
+                variant[length++] = rule.get(i);
+            }
+
+            if (length == 1 && variant[0] == axiomName) {
+                loopWeight += variantInsideWeight;
+            } else if (length > 0) {
+                rules.merge(Rule.of(Arrays.copyOf(variant, length)), variantWeight, variantInsideWeight);
+            }
+        }
+        return loopWeight;
+    }
+
+    /**
+     * Binarize the rules of more than two characters containing nullable axioms
+     * (see Grammar.binarize)
+     * Example : S -> aBCD becomes S -> aX, X -> BY, Y -> CD
+     *
+     * @param g
+     *          the grammar
+     * @param nullableAxioms
+     *          the nullable axioms
+     * @throws GrammarException
+     *          if there are not enough free axiom names
+     */
+    private static void binarizeNullableRules(Grammar g, BitSet nullableAxioms) throws GrammarException {
+        Map<Rule, Character> helpers = new HashMap<>();
+        List<Character> axiomNames = new ArrayList<>(g.getAxioms().keySet());
+        for (Character axiomName : axiomNames) {
+            Rules rules = g.getAxioms().get(axiomName);
+            List<Rule> initialRules = rules.stream().collect(Collectors.toList());
+            for (Rule rule : initialRules) {
+                if (rule.size() <= 2 || !containsNullableAxiom(rule, nullableAxioms)) {
+                    continue;
+                }
+
+                rules.replace(rule, g.binarize(rule, helpers));
+            }
+        }
+    }
+
+    /**
+     * Check if a rule contains a nullable axiom
+     *
+     * @param rule
+     *          the rule
+     * @param nullableAxioms
+     *          the nullable axioms
+     * @return
+     *          true if one of the characters is a nullable axiom, false otherwise
+     */
+    private static boolean containsNullableAxiom(Rule rule, BitSet nullableAxioms) {
+        for (int i = 0; i < rule.size(); ++i) {
+            if (Grammar.isAxiom(rule.get(i)) && nullableAxioms.get(Symbols.getId(rule.get(i)))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -2,17 +2,30 @@ package grammar;
 
 import exception.BadFormattedGrammarException;
 import exception.GrammarException;
-import utils.SpecialChars;
+import metrics.Metrics;
+import metrics.Stage;
+import metrics.StageEvent;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
- * This class parses a Grammar in a file.
+ * This class parses a Grammar in a file (see GrammarParser).
  *
+ * Each line contains an axiom and its rules : A : BC | a
+ * A rule can be followed by its weight : A : BC [0.3] | a [0.7]
+ * An axiom is an uppercase letter or a name between chevrons in the rules :
+ * Expr : <Expr>+<Term> | <Term>, the characters between quotes are terminals : A : 'B'a
  */
 public class Grammar {
     /**
@@ -20,6 +33,11 @@ public class Grammar {
      */
     private Axioms axioms = new Axioms();
 
+    /**
+     * The names of the axioms
+     */
+    private Symbols symbols = new Symbols();
+
     /**
      * The starting axiom
      */
@@ -31,7 +49,35 @@ public class Grammar {
     private List<Character> axiomsWithEpsilon = new ArrayList<>();
 
     /**
-     * Default constructor
+     * Axioms added by the normalization
+     */
+    private Set<Character> generatedAxioms = new HashSet<>();
+
+    /**
+     * The smallest id which may be free (see getFirstFreeAxiomName)
+     */
+    private int firstFreeAxiomId;
+
+    /**
+     * The last fingerprint computed (see getFingerprint)
+     */
+    private Fingerprint fingerprint;
+
+    /**
+     * A fingerprint, with the modifications of the axioms when it was computed
+     */
+    private static final class Fingerprint {
+        final String value;
+        final long modifications;
+
+        Fingerprint(String value, long modifications) {
+            this.value = value;
+            this.modifications = modifications;
+        }
+    }
+
+    /**
+     * Default constructor, the file is read in UTF-8
      *
      * @param file
      *              the filename to parse
@@ -39,64 +85,103 @@ public class Grammar {
      * @throws BadFormattedGrammarException
      */
     public Grammar(String file) throws IOException, BadFormattedGrammarException {
-        parse(new BufferedReader(new FileReader(file)));
+        this(Paths.get(file));
     }
 
     /**
-     * parse the file
+     * Parse a file, in UTF-8
      *
-     * @param br
-     *              the file buffer
+     * @param file
+     *              the file to parse
      * @throws IOException
      * @throws BadFormattedGrammarException
+     *              with the line and the column of the error
      */
-    private void parse(BufferedReader br) throws IOException, BadFormattedGrammarException {
-        for (String line = br.readLine(); line != null; line = br.readLine()) {
-            line = line.replace(" ", "");
-            String[] axiom = line.split(":");
-            if (axiom.length != 2) {
-                throw new BadFormattedGrammarException("Bad axiom : " + line);
-            }
-
-            if (axiom[0].length() != 1) {
-                throw new BadFormattedGrammarException("Axiom name must be 1 character length");
-            }
-
-            char axiomName = axiom[0].charAt(0);
-            if ((axiomName < 'A' || axiom[0].charAt(0) > 'Z') && axiomName != SpecialChars.epsilon) {
-                throw new BadFormattedGrammarException("Axiom name must be uppercase or epsilon (&)");
-            }
+    public Grammar(Path file) throws IOException, BadFormattedGrammarException {
+        StageEvent event = Metrics.begin(Stage.PARSE, this);
+        GrammarParser.parse(file, this);
+        Metrics.end(event, this);
+    }
 
-            String[] elements = axiom[1].split("\\|");
-            Rules rules = new Rules();
-            for (String element : elements) {
-                Rule r = new Rule();
-                for (Character c : element.toCharArray()) {
-                    if (!Character.isLetter(c) && c != SpecialChars.epsilon) {
-                        throw new BadFormattedGrammarException(c + " is not a character");
-                    }
+    /**
+     * Parse a stream, in UTF-8
+     * The stream is read until its end, but it is not closed
+     *
+     * @param in
+     *              the stream to parse
+     * @throws IOException
+     * @throws BadFormattedGrammarException
+     *              with the line and the column of the error
+     */
+    public Grammar(InputStream in) throws IOException, BadFormattedGrammarException {
+        StageEvent event = Metrics.begin(Stage.PARSE, this);
+        GrammarParser.parse(in, this);
+        Metrics.end(event, this);
+    }
 
-                    if (c == SpecialChars.epsilon) {
-                        if (axiomsWithEpsilon.contains(axiomName)) {
-                            throw new BadFormattedGrammarException("Epsilon must appears at most once in an axiom");
-                        }
-                        axiomsWithEpsilon.add(axiomName);
-                    }
-                    r.add(c);
-                }
+    /**
+     * Parse the characters of a reader
+     * The reader is read until its end, but it is not closed
+     *
+     * @param reader
+     *              the reader to parse
+     * @throws IOException
+     * @throws BadFormattedGrammarException
+     *              with the line and the column of the error
+     */
+    public Grammar(Reader reader) throws IOException, BadFormattedGrammarException {
+        StageEvent event = Metrics.begin(Stage.PARSE, this);
+        GrammarParser.parse(reader, this);
+        Metrics.end(event, this);
+    }
 
-                if (axiomsWithEpsilon.contains(axiomName) && r.size() > 1) {
-                    throw new BadFormattedGrammarException("Epsilon must be the only character in a rule");
-                }
-                rules.add(r);
-            }
+    /**
+     * Copy constructor
+     * The rules are copied, so the copy can be normalized
+     * without modifying the original grammar
+     *
+     * @param g
+     *              the grammar to copy
+     */
+    public Grammar(Grammar g) {
+        axioms = g.getAxiomsCopy();
+        symbols = new Symbols(g.symbols);
+        startAxiom = g.startAxiom;
+        axiomsWithEpsilon = g.getAxiomsWithEpsilonCopy();
+        generatedAxioms = new HashSet<>(g.generatedAxioms);
+        firstFreeAxiomId = g.firstFreeAxiomId;
+    }
 
-            if (axioms.size() == 0) {
+    /**
+     * get the rules of an axiom read in a file, the rules of an axiom
+     * can be given in several lines
+     * The first axiom read is the starting axiom
+     *
+     * @param axiomName
+     *          the axiom
+     * @return
+     *          the rules of the axiom, to complete
+     */
+    Rules getParsedAxiomRules(char axiomName) {
+        Rules rules = axioms.get(axiomName);
+        if (rules == null) {
+            if (axioms.isEmpty()) {
                 startAxiom = axiomName;
             }
-
+            rules = new Rules();
             axioms.put(axiomName, rules);
         }
+        return rules;
+    }
+
+    /**
+     * get the table of the axiom names
+     *
+     * @return
+     *          the names of the axioms of this grammar
+     */
+    public Symbols getSymbols() {
+        return symbols;
     }
 
     /**
@@ -118,14 +203,43 @@ public class Grammar {
     public boolean removeAxiom(Character axiomName) {
         if (axioms.containsKey(axiomName)) {
             axioms.remove(axiomName);
+            firstFreeAxiomId = Math.min(firstFreeAxiomId, Symbols.getId(axiomName));
             if (axiomsWithEpsilon.contains(axiomName)) {
                 axiomsWithEpsilon.remove(axiomName);
             }
+            generatedAxioms.remove(axiomName);
             return true;
         }
         return false;
     }
 
+    /**
+     * Add an axiom created by a normalization
+     * to replace a part of the existing rules
+     *
+     * @param axiomName
+     *          the name of the new axiom
+     * @param rules
+     *          the rules of the new axiom
+     */
+    public void addGeneratedAxiom(Character axiomName, Rules rules) {
+        axioms.put(axiomName, rules);
+        generatedAxioms.add(axiomName);
+    }
+
+    /**
+     * Check if an axiom has been created by a normalization
+     * (a helper axiom of the CNF for example)
+     *
+     * @param axiomName
+     *          the axiom to check
+     * @return
+     *          true if the axiom is generated, false otherwise
+     */
+    public boolean isGeneratedAxiom(Character axiomName) {
+        return generatedAxioms.contains(axiomName);
+    }
+
     /**
      * get a copy of all axioms
      *
@@ -150,12 +264,7 @@ public class Grammar {
      *          a copy of rules
      */
     public Rules getAxiomRulesCopy(Character axiomName) {
-        Rules rules = new Rules();
-        for (Rule rule : axioms.get(axiomName)) {
-            Rule copy = rule.stream().collect(Collectors.toCollection(Rule::new));
-            rules.add(copy);
-        }
-        return rules;
+        return new Rules(axioms.get(axiomName));
     }
 
     /**
@@ -197,14 +306,31 @@ public class Grammar {
      *          the list of calling axioms
      */
     public List<Character> getCallingAxioms(Character axiomName) {
-        List<Character> axiomNames =  new ArrayList<>();
-        for (Map.Entry<Character, Rules> axiom : axioms.entrySet()) {
-            for (Rule rule : axiom.getValue()) {
-                rule.stream().filter(c -> c == axiomName && !axiomNames.contains(axiom.getKey())).forEach(c -> axiomNames.add(axiom.getKey()));
-            }
-        }
+        return axioms.getCallingAxioms(axiomName);
+    }
 
-        return axiomNames;
+    /**
+     * Get the occurrences of an axiom in the rules of all axioms
+     *
+     * @param axiomName
+     *          the axiom that we want occurrences
+     * @return
+     *          the occurrences, in a read only view
+     */
+    public Set<Occurrence> getOccurrences(Character axiomName) {
+        return axioms.getOccurrences(axiomName);
+    }
+
+    /**
+     * Check if a character of a rule is an axiom (see Symbols)
+     *
+     * @param c
+     *          the character
+     * @return
+     *          true if the character is neither a terminal nor epsilon
+     */
+    public static boolean isAxiom(char c) {
+        return Symbols.isAxiom(c);
     }
 
     /**
@@ -228,8 +354,40 @@ public class Grammar {
         return axiomsWithEpsilon.size() == 1 && axiomsWithEpsilon.get(0) == startAxiom;
     }
 
+    /**
+     * Get the number of rules of the grammar
+     *
+     * @return
+     *          the number of rules
+     */
+    public int getRulesCount() {
+        int count = 0;
+        for (Rules rules : axioms.values()) {
+            count += rules.size();
+        }
+        return count;
+    }
+
+    /**
+     * Get the size of the grammar : the number of symbols of the rules,
+     * plus one for the axiom of each rule
+     *
+     * @return
+     *          the size of the grammar
+     */
+    public int getSize() {
+        int size = 0;
+        for (Rules rules : axioms.values()) {
+            for (Rule rule : rules) {
+                size += rule.size() + 1;
+            }
+        }
+        return size;
+    }
+
     /**
      * Get the first free available axiom name
+     * The letters are used first, then the axioms with a generated name
      *
      * @return
      *          the first free axiom name
@@ -237,8 +395,10 @@ public class Grammar {
      *          if all axiom names are in use
      */
     public Character getFirstFreeAxiomName() throws GrammarException {
-        for (char c = 'A'; c <= 'Z'; ++c) {
+        for (int id = firstFreeAxiomId; id < Symbols.MAX_AXIOMS; ++id) {
+            char c = symbols.getAxiom(id);
             if (axioms.get(c) == null) {
+                firstFreeAxiomId = id;
                 return c;
             }
         }
@@ -246,12 +406,125 @@ public class Grammar {
         throw new GrammarException("No free axiom name");
     }
 
+    /**
+     * Split a rule of more than two characters with helper axioms :
+     * X1 X2 ... Xn becomes X1 H1, with H1 -> X2 H2, ..., Hn-2 -> Xn-1 Xn
+     * A helper axiom is created once for each pair of characters,
+     * so the rules ending with the same characters share their helpers
+     *
+     * @param rule
+     *          the rule to split
+     * @param helpers
+     *          the helper axiom of each pair, completed with the new helpers
+     * @return
+     *          the rule of two characters replacing the rule
+     * @throws GrammarException
+     *          if there are not enough free axiom names
+     */
+    public Rule binarize(Rule rule, Map<Rule, Character> helpers) throws GrammarException {
+        Rule suffix = Rule.of(rule.get(rule.size() - 2), rule.get(rule.size() - 1));
+        for (int i = rule.size() - 3; i >= 0; --i) {
+            Character helper = helpers.get(suffix);
+            if (helper == null) {
+                helper = getFirstFreeAxiomName();
+                helpers.put(suffix, helper);
+                addGeneratedAxiom(helper, new Rules(Collections.singletonList(suffix)));
+            }
+            suffix = Rule.of(rule.get(i), helper);
+        }
+        return suffix;
+    }
+
+    /**
+     * Get a fingerprint of the grammar : the SHA-256 of its canonical form
+     * The canonical form does not depend on the order of the axioms
+     * nor on the order of the rules of an axiom, so two files
+     * describing the same grammar have the same fingerprint.
+     * Unlike hashCode, it can be used as a key of a cache
+     * It is computed again only if the axioms or their rules
+     * have been modified since the last call
+     *
+     * @return
+     *          the fingerprint, in hexadecimal
+     */
+    public String getFingerprint() {
+        Fingerprint last = fingerprint;
+        long modifications = axioms.getModifications();
+        if (last != null && last.modifications == modifications) {
+            return last.value;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available on every Java platform
+            throw new IllegalStateException(e);
+        }
+
+        // each field has a fixed size or is prefixed by its size,
+        // so two different grammars can not have the same canonical form
+        // only the digest is kept, the bytes are discarded
+        OutputStream discarded = new OutputStream() {
+            @Override
+            public void write(int b) {}
+
+            @Override
+            public void write(byte[] b, int off, int len) {}
+        };
+        DataOutputStream out = new DataOutputStream(new DigestOutputStream(discarded, digest));
+        try {
+            // the axioms depend on the order in which the names were interned,
+            // so the names are written instead
+            out.writeUTF(symbols.getName(startAxiom));
+            out.writeInt(axioms.size());
+
+            List<Character> axiomNames = new ArrayList<>(axioms.keySet());
+            axiomNames.sort(Comparator.comparing(symbols::getName));
+            for (Character axiomName : axiomNames) {
+                Rules axiomRules = axioms.get(axiomName);
+                List<Rule> rules = axiomRules.stream().collect(Collectors.toList());
+                rules.sort(Comparator.comparing(rule -> rule.toString(symbols)));
+
+                out.writeUTF(symbols.getName(axiomName));
+                out.writeBoolean(generatedAxioms.contains(axiomName));
+                out.writeInt(rules.size());
+                for (Rule rule : rules) {
+                    // the inside weight differs only after a normalization (see Rules)
+                    double weight = axiomRules.getWeight(rule);
+                    double insideWeight = axiomRules.getInsideWeight(rule);
+                    out.writeDouble(weight);
+                    out.writeBoolean(insideWeight != weight);
+                    if (insideWeight != weight) {
+                        out.writeDouble(insideWeight);
+                    }
+                    out.writeInt(rule.size());
+                    for (Character c : rule) {
+                        out.writeBoolean(Symbols.isAxiom(c));
+                        out.writeUTF(symbols.getName(c));
+                    }
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // the bytes are discarded
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder ret = new StringBuilder();
+        for (byte b : digest.digest()) {
+            ret.append(String.format("%02x", b));
+        }
+        fingerprint = new Fingerprint(ret.toString(), modifications);
+        return ret.toString();
+    }
+
     @Override
     public String toString() {
         final String[] ret = {""};
         axioms.entrySet().stream().forEach(entry -> {
-            ret[0] += entry.getKey() + " -> ";
-            entry.getValue().stream().forEach(rule -> ret[0] += rule + " | ");
+            ret[0] += symbols.format(entry.getKey()) + " -> ";
+            entry.getValue().stream().forEach(rule -> ret[0] += rule.toString(symbols) + (entry.getValue().getWeight(rule) != 1 ? " [" + entry.getValue().getWeight(rule) + "]" : "") + " | ");
             ret[0] = ret[0].substring(0, ret[0].length() - 3);
             ret[0] += "\n";
         });
@@ -0,0 +1,441 @@
+package grammar;
+
+import exception.BadFormattedGrammarException;
+import exception.GrammarException;
+import utils.SpecialChars;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class reads the grammar files, in UTF-8
+ *
+ * The text is decoded at once into an array of characters, the bytes
+ * being decoded by blocks (a file is read in an array of its size),
+ * then scanned in a single pass, character by character :
+ * the rules are built in a buffer and interned directly,
+ * and an error gives its line and its column.
+ *
+ * A rule can be continued on the next lines :
+ *      S : aSb
+ *        | ab
+ *      A : a |
+ *          b
+ */
+final class GrammarParser {
+    /**
+     * The initial size of the text read from a stream
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The text
+     */
+    private final char[] text;
+
+    /**
+     * The end of the text
+     */
+    private final int end;
+
+    /**
+     * The grammar to fill
+     */
+    private final Grammar g;
+
+    /**
+     * The position of the next character
+     */
+    private int position;
+
+    /**
+     * The line of the next character, from 1
+     */
+    private int line = 1;
+
+    /**
+     * The position of the first character of the line
+     */
+    private int lineStart;
+
+    /**
+     * The characters of the rule being read
+     */
+    private char[] rule = new char[16];
+
+    private GrammarParser(char[] text, int start, int end, Grammar g) {
+        this.text = text;
+        this.position = start;
+        this.lineStart = start;
+        this.end = end;
+        this.g = g;
+    }
+
+    /**
+     * Parse a file
+     *
+     * @param file
+     *          the file
+     * @param g
+     *          the grammar to fill
+     * @throws IOException
+     *          if the file can not be read, or if it is not valid UTF-8
+     * @throws BadFormattedGrammarException
+     */
+    static void parse(Path file, Grammar g) throws IOException, BadFormattedGrammarException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // a character takes at least one byte in UTF-8
+            long size = channel.size();
+            if (size >= Integer.MAX_VALUE) {
+                throw new IOException("The file is too large : " + file);
+            }
+            parse(Channels.newReader(channel, newDecoder(), -1), (int) size + 1, g);
+        }
+    }
+
+    /**
+     * Parse a stream, which is not closed
+     *
+     * @param in
+     *          the stream
+     * @param g
+     *          the grammar to fill
+     * @throws IOException
+     *          if the stream can not be read, or if it is not valid UTF-8
+     * @throws BadFormattedGrammarException
+     */
+    static void parse(InputStream in, Grammar g) throws IOException, BadFormattedGrammarException {
+        parse(new InputStreamReader(in, newDecoder()), BUFFER_SIZE, g);
+    }
+
+    /**
+     * Parse the characters of a reader, which is not closed
+     *
+     * @param reader
+     *          the reader
+     * @param g
+     *          the grammar to fill
+     * @throws IOException
+     * @throws BadFormattedGrammarException
+     */
+    static void parse(Reader reader, Grammar g) throws IOException, BadFormattedGrammarException {
+        parse(reader, BUFFER_SIZE, g);
+    }
+
+    /**
+     * Read all the characters of a reader, then parse them
+     *
+     * @param reader
+     *          the reader
+     * @param capacity
+     *          the initial size of the text, doubled when it is full
+     * @param g
+     *          the grammar to fill
+     * @throws IOException
+     * @throws BadFormattedGrammarException
+     */
+    private static void parse(Reader reader, int capacity, Grammar g) throws IOException, BadFormattedGrammarException {
+        char[] text = new char[Math.max(1, capacity)];
+        int length = 0;
+        for (int read = reader.read(text, length, text.length - length); read >= 0; read = reader.read(text, length, text.length - length)) {
+            length += read;
+            if (length == text.length) {
+                text = Arrays.copyOf(text, text.length * 2);
+            }
+        }
+        new GrammarParser(text, 0, length, g).parse();
+    }
+
+    /**
+     * get a UTF-8 decoder rejecting the invalid bytes
+     *
+     * @return
+     *          the decoder
+     */
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /**
+     * Parse all the axioms
+     *
+     * @throws BadFormattedGrammarException
+     */
+    private void parse() throws BadFormattedGrammarException {
+        // skip the byte order mark
+        if (position < end && text[position] == '\uFEFF') {
+            ++position;
+        }
+
+        char axiomName = 0;
+        Rules rules = null;
+        while (skipWhitespaces(true)) {
+            if (text[position] == SpecialChars.ruleSeparator) {
+                if (rules == null) {
+                    throw error("Rule without axiom");
+                }
+                ++position;
+            } else {
+                axiomName = parseAxiomName();
+                skipWhitespaces(false);
+                if (position == end || text[position] != SpecialChars.axiomSeparator) {
+                    throw error("Bad axiom, " + SpecialChars.axiomSeparator + " expected");
+                }
+                ++position;
+                rules = g.getParsedAxiomRules(axiomName);
+            }
+            parseRules(axiomName, rules);
+        }
+    }
+
+    /**
+     * Parse the rules of an axiom until the end of the line
+     * (or of the next line if the last rule is empty)
+     *
+     * @param axiomName
+     *          the axiom
+     * @param rules
+     *          the rules of the axiom, completed with the rules
+     * @throws BadFormattedGrammarException
+     */
+    private void parseRules(char axiomName, Rules rules) throws BadFormattedGrammarException {
+        while (true) {
+            if (!skipWhitespaces(true)) {
+                throw error("Empty rule");
+            }
+            parseRule(axiomName, rules);
+            if (position == end || text[position] != SpecialChars.ruleSeparator) {
+                return;
+            }
+            ++position;
+        }
+    }
+
+    /**
+     * Parse a rule and its weight, until a rule separator or the end of the line
+     * The uppercase letters and the names between chevrons are axioms,
+     * the other characters are terminals, and the characters between quotes
+     * are always terminals : A : B<Expr>c+'D', except epsilon
+     *
+     * @param axiomName
+     *          the axiom
+     * @param rules
+     *          the rules of the axiom, completed with the rule
+     * @throws BadFormattedGrammarException
+     */
+    private void parseRule(char axiomName, Rules rules) throws BadFormattedGrammarException {
+        int ruleLine = line;
+        int ruleColumn = position - lineStart + 1;
+        int length = 0;
+        int epsilonColumn = 0;
+        double weight = 1;
+        while (position < end && !isEndOfLine(text[position]) && text[position] != SpecialChars.ruleSeparator) {
+            char c = text[position];
+            if (Character.isWhitespace(c)) {
+                ++position;
+                continue;
+            }
+
+            if (length == rule.length) {
+                rule = Arrays.copyOf(rule, rule.length * 2);
+            }
+            if (c == SpecialChars.weightStart) {
+                weight = parseWeight();
+            } else if (c == SpecialChars.nameStart) {
+                rule[length++] = parseAxiomName();
+            } else if (c == SpecialChars.quote) {
+                int start = position++;
+                while (position < end && text[position] != SpecialChars.quote && !isEndOfLine(text[position])) {
+                    if (Symbols.isAxiom(text[position])) {
+                        throw error(text[position] + " is not a character");
+                    }
+                    if (text[position] == SpecialChars.epsilon) {
+                        // epsilon is not a terminal, it can not be quoted
+                        throw error("Epsilon can not be quoted");
+                    }
+                    if (length == rule.length) {
+                        rule = Arrays.copyOf(rule, rule.length * 2);
+                    }
+                    rule[length++] = text[position++];
+                }
+                if (position == end || text[position] != SpecialChars.quote || position == start + 1) {
+                    position = start;
+                    throw error("Bad quoted terminals");
+                }
+                ++position;
+            } else if (c >= 'A' && c <= 'Z') {
+                rule[length++] = axiom(c - 'A');
+                ++position;
+            } else if (c == SpecialChars.epsilon) {
+                if (g.getAxiomsWithEpsilon().contains(axiomName)) {
+                    throw error("Epsilon must appears at most once in an axiom");
+                }
+                g.getAxiomsWithEpsilon().add(axiomName);
+                epsilonColumn = position - lineStart + 1;
+                rule[length++] = c;
+                ++position;
+            } else if (Symbols.isReserved(c)) {
+                throw error(c + " is not a character");
+            } else {
+                rule[length++] = c;
+                ++position;
+            }
+        }
+
+        if (length == 0) {
+            throw new BadFormattedGrammarException("Empty rule", ruleLine, ruleColumn);
+        }
+        if (length > 1 && epsilonColumn > 0) {
+            throw new BadFormattedGrammarException("Epsilon must be the only character in a rule", ruleLine, epsilonColumn);
+        }
+        rules.add(Rule.of(rule, length), weight);
+    }
+
+    /**
+     * Parse the name of an axiom : a name between chevrons in a rule,
+     * and also an uppercase letter or a name before the axiom separator
+     *
+     * @return
+     *          the axiom
+     * @throws BadFormattedGrammarException
+     */
+    private char parseAxiomName() throws BadFormattedGrammarException {
+        int start = position;
+        boolean chevrons = text[position] == SpecialChars.nameStart;
+        if (chevrons) {
+            ++position;
+        }
+
+        int nameStart = position;
+        while (position < end && !Symbols.isReserved(text[position])) {
+            ++position;
+        }
+        int nameEnd = position;
+        if (chevrons) {
+            if (position == end || text[position] != SpecialChars.nameEnd) {
+                throw error("Bad axiom name, " + SpecialChars.nameEnd + " expected");
+            }
+            ++position;
+        }
+        if (nameStart == nameEnd) {
+            position = start;
+            throw error("Axiom name must not be empty");
+        }
+
+        if (nameEnd == nameStart + 1 && text[nameStart] >= 'A' && text[nameStart] <= 'Z') {
+            return axiom(text[nameStart] - 'A');
+        }
+        try {
+            return g.getSymbols().getAxiom(new String(text, nameStart, nameEnd - nameStart));
+        } catch (GrammarException e) {
+            position = start;
+            throw error(e.getMessage());
+        }
+    }
+
+    /**
+     * Parse the weight of a rule, between brackets
+     *
+     * @return
+     *          the weight
+     * @throws BadFormattedGrammarException
+     */
+    private double parseWeight() throws BadFormattedGrammarException {
+        int start = position;
+        while (position < end && text[position] != SpecialChars.weightEnd && !isEndOfLine(text[position])) {
+            ++position;
+        }
+        String weight = new String(text, start, position - start + (position < end ? 1 : 0));
+        if (position == end || text[position] != SpecialChars.weightEnd) {
+            position = start;
+            throw error("Bad weight : " + weight);
+        }
+        ++position;
+
+        double value;
+        try {
+            value = Double.parseDouble(weight.substring(1, weight.length() - 1));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Bad weight : " + weight);
+        }
+
+        if (!(value > 0) || Double.isInfinite(value)) {
+            position = start;
+            throw error("Weight must be strictly positive : " + weight);
+        }
+        return value;
+    }
+
+    /**
+     * Skip the whitespaces
+     *
+     * @param newLines
+     *          true to skip the ends of lines too
+     * @return
+     *          true if there is a character after the whitespaces, false at the end of the text
+     */
+    private boolean skipWhitespaces(boolean newLines) {
+        while (position < end && Character.isWhitespace(text[position])) {
+            if (isEndOfLine(text[position])) {
+                if (!newLines) {
+                    return true;
+                }
+                if (text[position] == '\n' || position + 1 == end || text[position + 1] != '\n') {
+                    ++line;
+                    lineStart = position + 1;
+                }
+            }
+            ++position;
+        }
+        return position < end;
+    }
+
+    /**
+     * Check if a character ends a line
+     *
+     * @param c
+     *          the character
+     * @return
+     *          true for \n and \r
+     */
+    private static boolean isEndOfLine(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * Get the axiom of an uppercase letter
+     *
+     * @param id
+     *          the position of the letter in the alphabet
+     * @return
+     *          the axiom
+     */
+    private static char axiom(int id) {
+        return (char) (Symbols.FIRST_AXIOM + id);
+    }
+
+    /**
+     * Create an error at the current position
+     *
+     * @param message
+     *          the message
+     * @return
+     *          the exception
+     */
+    private BadFormattedGrammarException error(String message) {
+        return new BadFormattedGrammarException(message, line, position - lineStart + 1);
+    }
+}
@@ -0,0 +1,92 @@
+package grammar;
+
+/**
+ * This class represents an occurrence of an axiom
+ * in a rule of another axiom (or of itself)
+ * Example : in S -> aAbA, A occurs in the rule aAbA of S
+ * at the positions 1 and 3
+ */
+public final class Occurrence {
+    /**
+     * The axiom owning the rule
+     */
+    private final char axiom;
+
+    /**
+     * The rule containing the occurrence
+     */
+    private final Rule rule;
+
+    /**
+     * The position of the occurrence in the rule
+     */
+    private final int position;
+
+    /**
+     * Default constructor
+     *
+     * @param axiom
+     *          the axiom owning the rule
+     * @param rule
+     *          the rule containing the occurrence
+     * @param position
+     *          the position of the occurrence in the rule
+     */
+    public Occurrence(char axiom, Rule rule, int position) {
+        this.axiom = axiom;
+        this.rule = rule;
+        this.position = position;
+    }
+
+    /**
+     * get the axiom owning the rule
+     *
+     * @return
+     *          the axiom
+     */
+    public char getAxiom() {
+        return axiom;
+    }
+
+    /**
+     * get the rule containing the occurrence
+     *
+     * @return
+     *          the rule
+     */
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * get the position of the occurrence in the rule
+     *
+     * @return
+     *          the position
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public int hashCode() {
+        return (axiom * 31 + rule.hashCode()) * 31 + position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof Occurrence)) {
+            return false;
+        }
+
+        Occurrence cmp = (Occurrence) o;
+        return axiom == cmp.axiom && position == cmp.position && rule.equals(cmp.rule);
+    }
+
+    @Override
+    public String toString() {
+        return axiom + " -> " + rule + " [" + position + "]";
+    }
+}
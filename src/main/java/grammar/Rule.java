@@ -1,29 +1,232 @@
 package grammar;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * This class stores a list of Character
+ * This class stores an array of characters
  * which represent a rule
+ *
+ * A rule is immutable and interned : two equal rules are the same object,
+ * so the rules shared by several axioms or grammars are stored once.
+ * The pool of the interned rules is a concurrent map of weak references,
+ * so the grammars parsed or normalized by several threads do not wait for each other.
+ * The methods modifying a rule return a new rule.
  */
-public class Rule extends ArrayList<Character> {
+public final class Rule implements Iterable<Character> {
+    /**
+     * The interned rules, a rule is removed
+     * when it is not used anymore (see expunge)
+     */
+    private static final ConcurrentHashMap<InternedRule, InternedRule> pool = new ConcurrentHashMap<>();
+
+    /**
+     * The references of the rules not used anymore
+     */
+    private static final ReferenceQueue<Rule> collected = new ReferenceQueue<>();
+
+    /**
+     * The characters of the rule
+     */
+    private final char[] symbols;
+
+    /**
+     * The hash of the characters and their positions
+     */
+    private final int hash;
+
+    private Rule(char[] symbols) {
+        this.symbols = symbols;
+        this.hash = Arrays.hashCode(symbols);
+    }
+
+    /**
+     * Get the rule of some characters
+     *
+     * @param symbols
+     *          the characters of the rule
+     * @return
+     *          the interned rule
+     */
+    public static Rule of(char... symbols) {
+        return intern(symbols.clone());
+    }
+
+    /**
+     * Get the rule of some characters
+     *
+     * @param symbols
+     *          the characters of the rule
+     * @return
+     *          the interned rule
+     */
+    public static Rule of(CharSequence symbols) {
+        return intern(symbols.toString().toCharArray());
+    }
+
+    /**
+     * Get the rule of the first characters of an array
+     *
+     * @param symbols
+     *          the characters
+     * @param length
+     *          the number of characters of the rule
+     * @return
+     *          the interned rule
+     */
+    static Rule of(char[] symbols, int length) {
+        return intern(Arrays.copyOf(symbols, length));
+    }
+
+    /**
+     * Get the interned rule of an array
+     * The array must not be modified after
+     *
+     * @param symbols
+     *          the characters of the rule
+     * @return
+     *          the interned rule
+     */
+    private static Rule intern(char[] symbols) {
+        expunge();
+        Rule rule = new Rule(symbols);
+        InternedRule reference = new InternedRule(rule);
+        while (true) {
+            InternedRule present = pool.putIfAbsent(reference, reference);
+            if (present == null) {
+                return rule;
+            }
+            Rule interned = present.get();
+            if (interned != null) {
+                return interned;
+            }
+            // the rule has been collected since it was found, it is removed by expunge
+            expunge();
+        }
+    }
 
     /**
-     * Default constructor
+     * Remove from the pool the rules not used anymore
      */
-    public Rule() {
-        super();
+    private static void expunge() {
+        for (Reference<? extends Rule> reference = collected.poll(); reference != null; reference = collected.poll()) {
+            pool.remove(reference);
+        }
     }
 
     /**
-     * Default constructor with parameter
+     * A weak reference to a rule, equal to the references of an equal rule
+     * A collected reference is only equal to itself, so it can still be removed
+     */
+    private static final class InternedRule extends WeakReference<Rule> {
+        private final int hash;
+
+        InternedRule(Rule rule) {
+            super(rule, collected);
+            this.hash = rule.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof InternedRule)) {
+                return false;
+            }
+
+            Rule rule = get();
+            return rule != null && rule.equals(((InternedRule) o).get());
+        }
+    }
+
+    /**
+     * get the number of characters of the rule
+     *
+     * @return
+     *          the size of the rule
+     */
+    public int size() {
+        return symbols.length;
+    }
+
+    /**
+     * get a character of the rule
+     *
+     * @param i
+     *          the position of the character
+     * @return
+     *          the character
+     */
+    public char get(int i) {
+        return symbols[i];
+    }
+
+    /**
+     * get a copy of the characters of the rule
+     *
+     * @return
+     *          the characters
+     */
+    public char[] toCharArray() {
+        return symbols.clone();
+    }
+
+    /**
+     * Check if a rule contains a character
      *
      * @param c
-     *          list of all characters to add
+     *          the character to search
+     * @return
+     *          true if the character is in the rule, false otherwise
      */
-    public Rule(Collection<Character> c) {
-        super(c);
+    public boolean contains(char c) {
+        return indexOf(c) >= 0;
+    }
+
+    /**
+     * Get the position of a character in a rule
+     *
+     * @param c
+     *          the character to search
+     * @return
+     *          the position of the first occurence, -1 otherwise
+     */
+    public int indexOf(char c) {
+        for (int i = 0; i < symbols.length; ++i) {
+            if (symbols[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Count the occurences of a character in a rule
+     *
+     * @param c
+     *          the character to count
+     * @return
+     *          the number of occurences
+     */
+    public int count(char c) {
+        int count = 0;
+        for (char symbol : symbols) {
+            if (symbol == c) {
+                ++count;
+            }
+        }
+        return count;
     }
 
     /**
@@ -38,18 +241,7 @@ public class Rule extends ArrayList<Character> {
      *          true if the subrule is contained in rule, false otherwise
      */
     public boolean containSubRule(Rule subRule) {
-        int position = 0;
-        for (Character c : this) {
-            if (c == subRule.get(position)) {
-                if (++position == subRule.size()) {
-                    return true;
-                }
-            } else {
-                position = 0;
-            }
-        }
-
-        return false;
+        return indexOfSubRule(subRule) >= 0;
     }
 
     /**
@@ -61,40 +253,81 @@ public class Rule extends ArrayList<Character> {
      *          the position of the first occurence, -1 otherwise
      */
     public int indexOfSubRule(Rule subRule) {
-        int position = 0;
-        for (int i = 0; i < size(); ++i) {
-            if (get(i) == subRule.get(position)) {
-                if (++position == subRule.size()) {
-                    return i - position + 1;
-                }
-            } else {
-                position = 0;
+        for (int i = 0; i + subRule.size() <= size(); ++i) {
+            int position = 0;
+            while (position < subRule.size() && symbols[i + position] == subRule.symbols[position]) {
+                ++position;
+            }
+            if (position == subRule.size()) {
+                return i;
             }
         }
         return -1;
     }
 
     /**
-     * Replace a subrule in a rule
+     * Replace the first occurence of a subrule in a rule
      * Example : replace AA by BB in BDAA -> BDBB
      *
      * @param subRule
      *          the pattern to replace
      * @param replacement
      *          the replacement
+     * @return
+     *          the new rule, the same rule if the subrule is not present
      */
-    public void replace(Rule subRule, Rule replacement) {
+    public Rule replace(Rule subRule, Rule replacement) {
         int index = indexOfSubRule(subRule);
-        this.removeRange(index, index + subRule.size());
-        this.addAll(index, replacement);
+        if (index < 0) {
+            return this;
+        }
+
+        char[] replaced = new char[size() - subRule.size() + replacement.size()];
+        System.arraycopy(symbols, 0, replaced, 0, index);
+        System.arraycopy(replacement.symbols, 0, replaced, index, replacement.size());
+        System.arraycopy(symbols, index + subRule.size(), replaced, index + replacement.size(), size() - index - subRule.size());
+        return intern(replaced);
+    }
+
+    /**
+     * Replace the character at a position
+     *
+     * @param i
+     *          the position of the character
+     * @param c
+     *          the new character
+     * @return
+     *          the new rule
+     */
+    public Rule set(int i, char c) {
+        char[] replaced = symbols.clone();
+        replaced[i] = c;
+        return intern(replaced);
     }
 
     @Override
-    public int hashCode() {
-        final int[] res = {0};
-        this.stream().forEach(c -> res[0] += (c * 4) + 11);
+    public Iterator<Character> iterator() {
+        return new Iterator<Character>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < symbols.length;
+            }
+
+            @Override
+            public Character next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return symbols[position++];
+            }
+        };
+    }
 
-        return res[0];
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
     @Override
@@ -106,23 +339,32 @@ public class Rule extends ArrayList<Character> {
         }
 
         Rule cmp = (Rule) o;
-        if (this.size() != cmp.size()) {
-            return false;
-        }
+        return hash == cmp.hash && Arrays.equals(symbols, cmp.symbols);
+    }
 
-        for (int i = 0; i < this.size(); ++i) {
-            if (this.get(i) != cmp.get(i)) {
-                return false;
-            }
+    /**
+     * Get the rule as it is written in a grammar,
+     * with the names of the axioms of a grammar
+     *
+     * @param names
+     *          the table of the axiom names of the grammar (see Grammar.getSymbols)
+     * @return
+     *          the rule, for example a<Expr>B
+     */
+    public String toString(Symbols names) {
+        StringBuilder ret = new StringBuilder();
+        for (char c : symbols) {
+            ret.append(names.format(c));
         }
-
-        return true;
+        return ret.toString();
     }
 
+    /**
+     * The rules are shared by the grammars, so only the letters
+     * are known : the other axioms are written with their ids (see Symbols.getName)
+     */
     @Override
     public String toString() {
-        final String[] ret = {""};
-        stream().forEach(c -> ret[0] += c);
-        return ret[0];
+        return toString(Symbols.LETTERS);
     }
 }
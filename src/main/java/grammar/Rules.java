@@ -1,12 +1,76 @@
 package grammar;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * This class stores a list of Rules
+ * This class stores the rules of an axiom, without duplicates
+ * and in their insertion order, with the weight of each rule
+ * (1 by default, used by the weighted CYK algorithm)
+ *
+ * A rule has two weights, equal in a grammar as parsed :
+ * - the weight, of the best derivation that the rule stands for (Viterbi)
+ * - the inside weight, the sum of the weights of these derivations (inside)
+ * They differ when the normalization merges several derivations in one rule
+ * (see merge), and the weight is the one written in the grammar.
+ *
+ * The rules are stored in an array indexed by a hash map,
+ * so adding, removing or searching a rule is done in constant time.
+ * A removed rule leaves a hole in the array, which is compacted
+ * when there are too many holes or when a rule is read by position.
+ * Rules can be added or removed while the rules are iterated,
+ * but an iterator fails if the array is compacted.
  */
-public class Rules extends ArrayList<Rule> {
+public class Rules implements Iterable<Rule> {
+    /**
+     * The rules in insertion order, null for a removed rule
+     */
+    private Rule[] rules = new Rule[4];
+
+    /**
+     * The weight of each rule
+     */
+    private double[] weights = new double[4];
+
+    /**
+     * The inside weight of each rule
+     */
+    private double[] insideWeights = new double[4];
+
+    /**
+     * The number of used positions in rules
+     */
+    private int end;
+
+    /**
+     * The number of compactions, the iterators fail if it changes
+     */
+    private int compactions;
+
+    /**
+     * The position of each rule
+     */
+    private final Map<Rule, Integer> index = new HashMap<>();
+
+    /**
+     * The axioms containing these rules, notified when a rule
+     * is added or removed, null if the rules are not in axioms
+     */
+    private Axioms owner;
+
+    /**
+     * The name of the axiom of these rules in owner
+     */
+    private char axiomName;
 
     /**
      * Default constructor
@@ -17,12 +81,35 @@ public class Rules extends ArrayList<Rule> {
 
     /**
      * Default constructor with parameter
+     * The rules have a weight of 1
      *
      * @param c
      *          list of all rules to add
      */
     public Rules(Collection<Rule> c) {
-        super(c);
+        c.forEach(this::add);
+    }
+
+    /**
+     * Copy constructor, the weights are copied
+     *
+     * @param rules
+     *          the rules to copy
+     */
+    public Rules(Rules rules) {
+        addAll(rules);
+    }
+
+    /**
+     * add a rule to the list with a weight of 1
+     *
+     * @param r
+     *          the rule to add
+     * @return
+     *          true if the rule was not already present and it was inserted, false otherwise
+     */
+    public boolean add(Rule r) {
+        return add(r, 1);
     }
 
     /**
@@ -30,20 +117,378 @@ public class Rules extends ArrayList<Rule> {
      *
      * @param r
      *          the rule to add
+     * @param weight
+     *          the weight of the rule, strictly positive
+     * @return
+     *          true if the rule was not already present and it was inserted, false otherwise
+     */
+    public boolean add(Rule r, double weight) {
+        return add(r, weight, weight);
+    }
+
+    /**
+     * add a rule to the list with its two weights
+     *
+     * @param r
+     *          the rule to add
+     * @param weight
+     *          the weight of the best derivation of the rule, strictly positive
+     * @param insideWeight
+     *          the sum of the weights of the derivations of the rule, strictly positive
+     * @return
+     *          true if the rule was not already present and it was inserted, false otherwise
+     */
+    public boolean add(Rule r, double weight, double insideWeight) {
+        if (index.containsKey(r)) {
+            return false;
+        }
+
+        if (end == rules.length) {
+            if (index.size() < end / 2) {
+                compact();
+            } else {
+                rules = Arrays.copyOf(rules, end * 2);
+                weights = Arrays.copyOf(weights, end * 2);
+                insideWeights = Arrays.copyOf(insideWeights, end * 2);
+            }
+        }
+        index.put(r, end);
+        weights[end] = weight;
+        insideWeights[end] = insideWeight;
+        rules[end++] = r;
+        if (owner != null) {
+            owner.ruleAdded(axiomName, r);
+        }
+        return true;
+    }
+
+    /**
+     * add a rule to the list, or merge it with the rule if it is already present :
+     * two identical rules are the same rule, which stands for the derivations of both,
+     * so the weight is the greatest one and the inside weights are summed
+     *
+     * @param r
+     *          the rule to add
+     * @param weight
+     *          the weight of the best derivation of the rule, strictly positive
+     * @param insideWeight
+     *          the sum of the weights of the derivations of the rule, strictly positive
      * @return
      *          true if the rule was not already present and it was inserted, false otherwise
      */
+    public boolean merge(Rule r, double weight, double insideWeight) {
+        Integer position = index.get(r);
+        if (position == null) {
+            return add(r, weight, insideWeight);
+        }
+
+        weights[position] = Math.max(weights[position], weight);
+        insideWeights[position] += insideWeight;
+        if (owner != null) {
+            owner.weightChanged(axiomName, r);
+        }
+        return false;
+    }
+
+    /**
+     * add all the rules of a list with their weights
+     *
+     * @param rules
+     *          the rules to add
+     * @return
+     *          true if at least one rule was inserted, false otherwise
+     */
+    public boolean addAll(Rules rules) {
+        boolean added = false;
+        for (int i = 0; i < rules.end; ++i) {
+            if (rules.rules[i] != null) {
+                added |= add(rules.rules[i], rules.weights[i], rules.insideWeights[i]);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * remove a rule from the list
+     *
+     * @param r
+     *          the rule to remove
+     * @return
+     *          true if the rule was present, false otherwise
+     */
+    public boolean remove(Rule r) {
+        Integer position = index.remove(r);
+        if (position == null) {
+            return false;
+        }
+
+        rules[position] = null;
+        if (position == end - 1) {
+            --end;
+        }
+        if (owner != null) {
+            owner.ruleRemoved(axiomName, r);
+        }
+        return true;
+    }
+
+    /**
+     * Replace a rule by another one at the same position, with the same weights
+     * If the new rule is already present, the old rule is removed
+     * and merged with the new rule (see merge)
+     *
+     * @param r
+     *          the rule to replace
+     * @param replacement
+     *          the new rule
+     * @return
+     *          true if the rule was present, false otherwise
+     */
+    public boolean replace(Rule r, Rule replacement) {
+        if (r.equals(replacement)) {
+            return index.containsKey(r);
+        }
+
+        Integer position = index.get(r);
+        if (position == null) {
+            return false;
+        }
+        Integer existing = index.get(replacement);
+        if (existing != null) {
+            weights[existing] = Math.max(weights[existing], weights[position]);
+            insideWeights[existing] += insideWeights[position];
+            return remove(r);
+        }
+
+        index.remove(r);
+        index.put(replacement, position);
+        rules[position] = replacement;
+        if (owner != null) {
+            owner.ruleRemoved(axiomName, r);
+            owner.ruleAdded(axiomName, replacement);
+        }
+        return true;
+    }
+
+    /**
+     * Check if a rule is in the list
+     *
+     * @param r
+     *          the rule to search
+     * @return
+     *          true if the rule is present, false otherwise
+     */
+    public boolean contains(Rule r) {
+        return index.containsKey(r);
+    }
+
+    /**
+     * get the weight of a rule
+     *
+     * @param r
+     *          the rule
+     * @return
+     *          the weight, 0 if the rule is not present
+     */
+    public double getWeight(Rule r) {
+        Integer position = index.get(r);
+        return position == null ? 0 : weights[position];
+    }
+
+    /**
+     * get the inside weight of a rule
+     *
+     * @param r
+     *          the rule
+     * @return
+     *          the sum of the weights of the derivations of the rule, 0 if the rule is not present
+     */
+    public double getInsideWeight(Rule r) {
+        Integer position = index.get(r);
+        return position == null ? 0 : insideWeights[position];
+    }
+
+    /**
+     * set the weights of a rule
+     *
+     * @param r
+     *          the rule
+     * @param weight
+     *          the weight, strictly positive
+     */
+    public void setWeight(Rule r, double weight) {
+        setWeight(r, weight, weight);
+    }
+
+    /**
+     * set the two weights of a rule
+     *
+     * @param r
+     *          the rule
+     * @param weight
+     *          the weight of the best derivation of the rule, strictly positive
+     * @param insideWeight
+     *          the sum of the weights of the derivations of the rule, strictly positive
+     */
+    public void setWeight(Rule r, double weight, double insideWeight) {
+        Integer position = index.get(r);
+        if (position != null) {
+            weights[position] = weight;
+            insideWeights[position] = insideWeight;
+            if (owner != null) {
+                owner.weightChanged(axiomName, r);
+            }
+        }
+    }
+
+    /**
+     * get a rule by its position
+     *
+     * @param i
+     *          the position of the rule
+     * @return
+     *          the rule
+     */
+    public Rule get(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+        }
+        if (index.size() != end) {
+            compact();
+        }
+        return rules[i];
+    }
+
+    /**
+     * get the number of rules
+     *
+     * @return
+     *          the number of rules
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Check if there is no rule
+     *
+     * @return
+     *          true if the list is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * get a stream of the rules
+     *
+     * @return
+     *          the rules in insertion order
+     */
+    public Stream<Rule> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Put the rules in axioms, which are then notified
+     * when a rule is added or removed
+     * The rules can only be in one axiom at a time
+     *
+     * @param owner
+     *          the axioms
+     * @param axiomName
+     *          the axiom of these rules
+     */
+    void attach(Axioms owner, char axiomName) {
+        checkDetached();
+        this.owner = owner;
+        this.axiomName = axiomName;
+        for (Rule rule : this) {
+            owner.ruleAdded(axiomName, rule);
+        }
+    }
+
+    /**
+     * Check that the rules can be put in axioms
+     *
+     * @throws IllegalStateException
+     *          if the rules are already in axioms
+     */
+    void checkDetached() {
+        if (owner != null) {
+            throw new IllegalStateException("The rules of " + axiomName + " are already in axioms");
+        }
+    }
+
+    /**
+     * Remove the rules from their axioms
+     *
+     * @param owner
+     *          the axioms
+     */
+    void detach(Axioms owner) {
+        if (this.owner == owner) {
+            this.owner = null;
+        }
+    }
+
+    /**
+     * Remove the holes left by the removed rules
+     */
+    private void compact() {
+        int size = 0;
+        for (int i = 0; i < end; ++i) {
+            if (rules[i] != null) {
+                index.put(rules[i], size);
+                weights[size] = weights[i];
+                insideWeights[size] = insideWeights[i];
+                rules[size++] = rules[i];
+            }
+        }
+        Arrays.fill(rules, size, end, null);
+        end = size;
+        ++compactions;
+    }
+
+    /**
+     * The rules are iterated in insertion order,
+     * the rules added or removed during the iteration are taken into account
+     * unless the array is compacted
+     */
     @Override
-    public boolean add(Rule r) {
-        return !contains(r) && super.add(r);
+    public Iterator<Rule> iterator() {
+        return new Iterator<Rule>() {
+            private final int expectedCompactions = compactions;
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                if (compactions != expectedCompactions) {
+                    throw new ConcurrentModificationException();
+                }
+                while (position < end && rules[position] == null) {
+                    ++position;
+                }
+                return position < end;
+            }
+
+            @Override
+            public Rule next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return rules[position++];
+            }
+        };
     }
 
     @Override
     public int hashCode() {
-        final int[] res = {0};
-        this.stream().forEach(rule -> res[0] += (rule.hashCode() * 2) + 7);
-
-        return res[0];
+        int res = 1;
+        for (Rule rule : this) {
+            res = 31 * res + rule.hashCode();
+        }
+        return res;
     }
 
     @Override
@@ -59,8 +504,11 @@ public class Rules extends ArrayList<Rule> {
             return false;
         }
 
-        for (int i = 0; i < this.size(); ++i) {
-            if (this.get(i) != cmp.get(i)) {
+        Iterator<Rule> others = cmp.iterator();
+        for (Rule rule : this) {
+            Rule other = others.next();
+            if (!rule.equals(other) || getWeight(rule) != cmp.getWeight(other)
+                    || getInsideWeight(rule) != cmp.getInsideWeight(other)) {
                 return false;
             }
         }
@@ -70,8 +518,10 @@ public class Rules extends ArrayList<Rule> {
 
     @Override
     public String toString() {
-        final String[] ret = {""};
-        stream().forEach(rule -> ret[0] += rule + " | ");
-        return ret[0].substring(0, ret[0].length() - 3);
+        StringBuilder ret = new StringBuilder();
+        for (Rule rule : this) {
+            ret.append(rule).append(" | ");
+        }
+        return ret.length() == 0 ? "" : ret.substring(0, ret.length() - 3);
     }
 }
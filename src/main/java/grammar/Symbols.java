@@ -0,0 +1,213 @@
+package grammar;
+
+import exception.GrammarException;
+import utils.SpecialChars;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the table of the axiom names of a grammar
+ *
+ * Each name is interned to a character of the Unicode private use area
+ * (U+E000 to U+F8FF), which is the axiom in the rules : the cleaning,
+ * the normal forms and the parsing algorithms work on these characters,
+ * and the names are only used to parse and print a grammar.
+ * The other characters are terminals, so a word is still a string
+ * of terminals and the terminals are not limited to lowercase letters.
+ *
+ * The axioms are dense : the id of an axiom is its index in the table,
+ * and the single uppercase letters have the first ids in alphabetical order.
+ * Each grammar has its own table (see Grammar.getSymbols), so the same
+ * character can be different axioms in two grammars, and the names
+ * are freed with the grammar. A table is not thread safe.
+ */
+public final class Symbols {
+    /**
+     * The axiom of id 0
+     */
+    public static final char FIRST_AXIOM = '\uE000';
+
+    /**
+     * The maximum number of axioms of a grammar
+     */
+    public static final int MAX_AXIOMS = '\uF8FF' - FIRST_AXIOM + 1;
+
+    /**
+     * The table of the letters only, to print the rules without grammar (see Rule.toString)
+     */
+    static final Symbols LETTERS = new Symbols();
+
+    /**
+     * The axiom of each name
+     */
+    private final Map<String, Character> axioms;
+
+    /**
+     * The name of each axiom, by id
+     */
+    private final List<String> names;
+
+    /**
+     * Default constructor, the table contains the single uppercase letters
+     */
+    public Symbols() {
+        axioms = new HashMap<>();
+        names = new ArrayList<>();
+        for (char c = 'A'; c <= 'Z'; ++c) {
+            intern(String.valueOf(c));
+        }
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param symbols
+     *          the table to copy
+     */
+    public Symbols(Symbols symbols) {
+        axioms = new HashMap<>(symbols.axioms);
+        names = new ArrayList<>(symbols.names);
+    }
+
+    /**
+     * Get the axiom of a name, a new axiom is created
+     * the first time a name is used
+     *
+     * @param name
+     *          the name of the axiom
+     * @return
+     *          the axiom
+     * @throws GrammarException
+     *          if there are too many axioms
+     */
+    public char getAxiom(String name) throws GrammarException {
+        Character axiom = axioms.get(name);
+        if (axiom != null) {
+            return axiom;
+        }
+        if (names.size() == MAX_AXIOMS) {
+            throw new GrammarException("No free axiom name for " + name + ", there are already " + MAX_AXIOMS + " axioms");
+        }
+        return intern(name);
+    }
+
+    /**
+     * Get the axiom of an id
+     * If the id is not used yet, a new axiom is created with a generated name
+     *
+     * @param id
+     *          the id
+     * @return
+     *          the axiom
+     * @throws GrammarException
+     *          if the id is greater than the maximum number of axioms
+     */
+    public char getAxiom(int id) throws GrammarException {
+        if (id >= MAX_AXIOMS) {
+            throw new GrammarException("No free axiom name");
+        }
+
+        int suffix = names.size();
+        while (names.size() <= id) {
+            while (axioms.containsKey("N" + suffix)) {
+                ++suffix;
+            }
+            intern("N" + suffix);
+        }
+        return (char) (FIRST_AXIOM + id);
+    }
+
+    /**
+     * Intern a new name
+     *
+     * @param name
+     *          the name
+     * @return
+     *          the new axiom
+     */
+    private char intern(String name) {
+        char axiom = (char) (FIRST_AXIOM + names.size());
+        names.add(name);
+        axioms.put(name, axiom);
+        return axiom;
+    }
+
+    /**
+     * Get the id of an axiom
+     *
+     * @param axiom
+     *          the axiom
+     * @return
+     *          the id, from 0
+     */
+    public static int getId(char axiom) {
+        return axiom - FIRST_AXIOM;
+    }
+
+    /**
+     * Check if a character of a rule is an axiom
+     *
+     * @param c
+     *          the character
+     * @return
+     *          true if the character is an axiom, false for a terminal or epsilon
+     */
+    public static boolean isAxiom(char c) {
+        return c >= FIRST_AXIOM && c < FIRST_AXIOM + MAX_AXIOMS;
+    }
+
+    /**
+     * Get the name of a symbol
+     *
+     * @param c
+     *          the axiom or the terminal
+     * @return
+     *          the name of the axiom (#id if it is not in the table), the terminal itself otherwise
+     */
+    public String getName(char c) {
+        if (isAxiom(c)) {
+            return getId(c) < names.size() ? names.get(getId(c)) : "#" + getId(c);
+        }
+        return String.valueOf(c);
+    }
+
+    /**
+     * Get a symbol as it is written in a rule :
+     * an uppercase letter or a name between chevrons for an axiom,
+     * a terminal between quotes if it could be read as something else
+     * Examples : A, <Expr>, a, +, 'B'
+     *
+     * @param c
+     *          the axiom or the terminal
+     * @return
+     *          the symbol in a rule
+     */
+    public String format(char c) {
+        String name = getName(c);
+        if (isAxiom(c)) {
+            return name.length() == 1 && name.charAt(0) >= 'A' && name.charAt(0) <= 'Z' ? name : "<" + name + ">";
+        } else if (c != SpecialChars.epsilon && (isReserved(c) || (c >= 'A' && c <= 'Z'))) {
+            return "'" + c + "'";
+        }
+        return name;
+    }
+
+    /**
+     * Check if a character has a meaning in a grammar file
+     *
+     * @param c
+     *          the character
+     * @return
+     *          true if the character is not read as a terminal
+     */
+    public static boolean isReserved(char c) {
+        return Character.isWhitespace(c) || isAxiom(c)
+                || c == SpecialChars.epsilon || c == SpecialChars.axiomSeparator
+                || c == SpecialChars.ruleSeparator || c == SpecialChars.weightStart
+                || c == SpecialChars.weightEnd || c == SpecialChars.nameStart
+                || c == SpecialChars.nameEnd || c == SpecialChars.quote;
+    }
+}
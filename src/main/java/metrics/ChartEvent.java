@@ -0,0 +1,107 @@
+package metrics;
+
+/**
+ * This class describes a chart filled by the bitset CYK algorithm
+ * (see BitsetCYK and ParallelCYK) : its wall time, its number of cells,
+ * the number of cells containing at least one axiom
+ * and the number of pairs (B, C) checked against the rules
+ */
+public final class ChartEvent {
+    private final int wordLength;
+    private final long nanos;
+    private final long cells;
+    private final long nonEmptyCells;
+    private final long pairChecks;
+    private final boolean parallel;
+
+    /**
+     * Default constructor
+     *
+     * @param wordLength
+     *          the length of the word
+     * @param nanos
+     *          the time to fill the chart, in nanoseconds
+     * @param cells
+     *          the number of cells
+     * @param nonEmptyCells
+     *          the number of cells containing at least one axiom
+     * @param pairChecks
+     *          the number of pairs (B, C) checked
+     * @param parallel
+     *          true if the chart has been filled by several threads
+     */
+    public ChartEvent(int wordLength, long nanos, long cells, long nonEmptyCells, long pairChecks, boolean parallel) {
+        this.wordLength = wordLength;
+        this.nanos = nanos;
+        this.cells = cells;
+        this.nonEmptyCells = nonEmptyCells;
+        this.pairChecks = pairChecks;
+        this.parallel = parallel;
+    }
+
+    /**
+     * get the length of the word
+     *
+     * @return
+     *          the length of the word
+     */
+    public int getWordLength() {
+        return wordLength;
+    }
+
+    /**
+     * get the time to fill the chart
+     *
+     * @return
+     *          the time, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * get the number of cells of the chart
+     *
+     * @return
+     *          the number of cells
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    /**
+     * get the number of cells containing at least one axiom
+     *
+     * @return
+     *          the number of cells
+     */
+    public long getNonEmptyCells() {
+        return nonEmptyCells;
+    }
+
+    /**
+     * get the number of pairs (B, C) checked against the rules
+     *
+     * @return
+     *          the number of pairs
+     */
+    public long getPairChecks() {
+        return pairChecks;
+    }
+
+    /**
+     * Check if the chart has been filled by several threads
+     *
+     * @return
+     *          true if the chart has been filled by ParallelCYK, false otherwise
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    @Override
+    public String toString() {
+        return "CYK" + (parallel ? " (parallel)" : "") + " : length " + wordLength + ", " + nanos / 1000 + " us, "
+                + nonEmptyCells + "/" + cells + " cells filled, " + pairChecks + " pair checks";
+    }
+}
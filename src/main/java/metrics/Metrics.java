@@ -0,0 +1,108 @@
+package metrics;
+
+import grammar.Grammar;
+
+/**
+ * This class sends the events of the pipeline to the registered listener :
+ * the stages of the parsing, of Clean, of Chomsky and of the compilation,
+ * and the charts filled by the bitset CYK algorithm
+ *
+ * Without listener, a stage only reads a volatile field at its beginning
+ * and at its end, and a chart only counts its pair checks in a local variable :
+ * the events are not created and the grammars are not measured.
+ *
+ * Example :
+ *      MetricsRegistry registry = new MetricsRegistry();
+ *      Metrics.setListener(registry);
+ *      Chomsky.normalize(g);
+ *      Metrics.setListener(null);
+ *      System.out.println(registry);
+ */
+public final class Metrics {
+    /**
+     * The registered listener, null if the pipeline is not instrumented
+     */
+    private static volatile PipelineListener listener;
+
+    private Metrics() {}
+
+    /**
+     * Register the listener of the pipeline, replacing the previous one
+     *
+     * @param listener
+     *          the listener, null to disable the instrumentation
+     */
+    public static void setListener(PipelineListener listener) {
+        Metrics.listener = listener;
+    }
+
+    /**
+     * get the registered listener
+     *
+     * @return
+     *          the listener, null if the instrumentation is disabled
+     */
+    public static PipelineListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Check if a listener is registered
+     *
+     * @return
+     *          true if the pipeline is instrumented, false otherwise
+     */
+    public static boolean isEnabled() {
+        return listener != null;
+    }
+
+    /**
+     * Begin a stage on a grammar
+     *
+     * @param stage
+     *          the stage
+     * @param g
+     *          the grammar, measured before the stage
+     * @return
+     *          the event of the stage, null if the instrumentation is disabled
+     */
+    public static StageEvent begin(Stage stage, Grammar g) {
+        if (listener == null) {
+            return null;
+        }
+        return new StageEvent(stage, g.getAxioms().size(), g.getRulesCount());
+    }
+
+    /**
+     * End a stage on a grammar and send its event to the listener
+     *
+     * @param event
+     *          the event returned by begin, nothing is done if it is null
+     * @param g
+     *          the grammar, measured after the stage
+     */
+    public static void end(StageEvent event, Grammar g) {
+        if (event == null) {
+            return;
+        }
+        event.end(g.getAxioms().size(), g.getRulesCount());
+
+        PipelineListener current = listener;
+        if (current != null) {
+            current.stageFinished(event);
+        }
+    }
+
+    /**
+     * Send the event of a chart to the listener
+     *
+     * @param event
+     *          the event of the chart
+     */
+    public static void chartFilled(ChartEvent event) {
+        PipelineListener current = listener;
+        if (current != null) {
+            current.chartFilled(event);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This listener sums the events of the pipeline, by stage :
+ * the number of runs, the wall time, the iterations
+ * and the numbers of axioms and rules before and after,
+ * and the statistics of all the charts of the CYK algorithm
+ *
+ * It can be shared between threads.
+ */
+public final class MetricsRegistry implements PipelineListener {
+    /**
+     * The sums of the events of a stage
+     */
+    private static final class StageTotals {
+        long runs;
+        long nanos;
+        long iterations;
+        long axiomsBefore;
+        long axiomsAfter;
+        long rulesBefore;
+        long rulesAfter;
+    }
+
+    private final Map<Stage, StageTotals> stages = new EnumMap<>(Stage.class);
+
+    private long charts;
+    private long chartNanos;
+    private long cells;
+    private long nonEmptyCells;
+    private long pairChecks;
+
+    @Override
+    public synchronized void stageFinished(StageEvent event) {
+        StageTotals totals = stages.computeIfAbsent(event.getStage(), stage -> new StageTotals());
+        ++totals.runs;
+        totals.nanos += event.getNanos();
+        totals.iterations += event.getIterations();
+        totals.axiomsBefore += event.getAxiomsBefore();
+        totals.axiomsAfter += event.getAxiomsAfter();
+        totals.rulesBefore += event.getRulesBefore();
+        totals.rulesAfter += event.getRulesAfter();
+    }
+
+    @Override
+    public synchronized void chartFilled(ChartEvent event) {
+        ++charts;
+        chartNanos += event.getNanos();
+        cells += event.getCells();
+        nonEmptyCells += event.getNonEmptyCells();
+        pairChecks += event.getPairChecks();
+    }
+
+    /**
+     * get the total wall time of a stage
+     *
+     * @param stage
+     *          the stage
+     * @return
+     *          the time, in nanoseconds
+     */
+    public synchronized long getNanos(Stage stage) {
+        StageTotals totals = stages.get(stage);
+        return totals == null ? 0 : totals.nanos;
+    }
+
+    /**
+     * get the number of runs of a stage
+     *
+     * @param stage
+     *          the stage
+     * @return
+     *          the number of runs
+     */
+    public synchronized long getRuns(Stage stage) {
+        StageTotals totals = stages.get(stage);
+        return totals == null ? 0 : totals.runs;
+    }
+
+    /**
+     * get the total number of pairs checked by the CYK algorithm
+     *
+     * @return
+     *          the number of pair checks
+     */
+    public synchronized long getPairChecks() {
+        return pairChecks;
+    }
+
+    /**
+     * Forget all the events
+     */
+    public synchronized void clear() {
+        stages.clear();
+        charts = 0;
+        chartNanos = 0;
+        cells = 0;
+        nonEmptyCells = 0;
+        pairChecks = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder ret = new StringBuilder();
+        for (Map.Entry<Stage, StageTotals> stage : stages.entrySet()) {
+            StageTotals totals = stage.getValue();
+            ret.append(String.format("%-22s %6d runs %12.3f ms %10d iterations %8d -> %-8d axioms %8d -> %-8d rules%n",
+                    stage.getKey(), totals.runs, totals.nanos / 1e6, totals.iterations,
+                    totals.axiomsBefore, totals.axiomsAfter, totals.rulesBefore, totals.rulesAfter));
+        }
+        if (charts > 0) {
+            ret.append(String.format("%-22s %6d runs %12.3f ms %10d pair checks %d/%d cells filled%n",
+                    "CYK", charts, chartNanos / 1e6, pairChecks, nonEmptyCells, cells));
+        }
+        return ret.toString();
+    }
+}
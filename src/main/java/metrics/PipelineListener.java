@@ -0,0 +1,25 @@
+package metrics;
+
+/**
+ * This interface receives the events of the pipeline (see Metrics)
+ *
+ * The events are sent by the thread running the stage,
+ * so a listener shared between threads must be thread safe.
+ */
+public interface PipelineListener {
+    /**
+     * Called at the end of a stage run on a grammar
+     *
+     * @param event
+     *          the event of the stage
+     */
+    default void stageFinished(StageEvent event) {}
+
+    /**
+     * Called when a chart of the CYK algorithm has been filled
+     *
+     * @param event
+     *          the event of the chart
+     */
+    default void chartFilled(ChartEvent event) {}
+}
@@ -0,0 +1,50 @@
+package metrics;
+
+/**
+ * The stages of the pipeline reported to the listener (see Metrics)
+ */
+public enum Stage {
+    /**
+     * The parsing of a grammar (see Grammar)
+     */
+    PARSE,
+
+    /**
+     * The removal of the non productive axioms (see Clean),
+     * the iterations are the axioms taken from the worklist
+     */
+    REMOVE_NON_PRODUCTIVE,
+
+    /**
+     * The removal of the non accessible axioms (see Clean),
+     * the iterations are the axioms visited by the search
+     */
+    REMOVE_NON_ACCESSIBLE,
+
+    /**
+     * The removal of the epsilon productions (see Clean),
+     * the iterations are the axioms taken from the worklist of the nullable axioms
+     */
+    REMOVE_EPSILON,
+
+    /**
+     * The removal of the unit rules (see Chomsky),
+     * the iterations are the rows merged by the transitive closure
+     */
+    REMOVE_UNIT_RULES,
+
+    /**
+     * The replacement of the terminals in the long rules (see Chomsky)
+     */
+    REFACTOR_TERMINALS,
+
+    /**
+     * The split of the long rules (see Chomsky)
+     */
+    BINARIZE,
+
+    /**
+     * The compilation of a grammar in CNF (see CompiledGrammar)
+     */
+    COMPILE
+}
@@ -0,0 +1,128 @@
+package metrics;
+
+/**
+ * This class describes a stage run on a grammar :
+ * its wall time, the number of axioms and rules
+ * before and after, and its number of iterations
+ *
+ * An event is created by Metrics.begin and completed by Metrics.end,
+ * it is only created when a listener is registered.
+ */
+public final class StageEvent {
+    private final Stage stage;
+    private final long start;
+    private final int axiomsBefore;
+    private final int rulesBefore;
+
+    private long nanos;
+    private int axiomsAfter;
+    private int rulesAfter;
+    private long iterations;
+
+    StageEvent(Stage stage, int axiomsBefore, int rulesBefore) {
+        this.stage = stage;
+        this.axiomsBefore = axiomsBefore;
+        this.rulesBefore = rulesBefore;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Complete the event at the end of the stage
+     *
+     * @param axiomsAfter
+     *          the number of axioms after the stage
+     * @param rulesAfter
+     *          the number of rules after the stage
+     */
+    void end(int axiomsAfter, int rulesAfter) {
+        this.nanos = System.nanoTime() - start;
+        this.axiomsAfter = axiomsAfter;
+        this.rulesAfter = rulesAfter;
+    }
+
+    /**
+     * Add iterations to the stage
+     *
+     * @param count
+     *          the number of iterations
+     */
+    public void addIterations(long count) {
+        iterations += count;
+    }
+
+    /**
+     * get the stage
+     *
+     * @return
+     *          the stage
+     */
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * get the wall time of the stage
+     *
+     * @return
+     *          the time, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * get the number of axioms before the stage
+     *
+     * @return
+     *          the number of axioms
+     */
+    public int getAxiomsBefore() {
+        return axiomsBefore;
+    }
+
+    /**
+     * get the number of rules before the stage
+     *
+     * @return
+     *          the number of rules
+     */
+    public int getRulesBefore() {
+        return rulesBefore;
+    }
+
+    /**
+     * get the number of axioms after the stage
+     *
+     * @return
+     *          the number of axioms
+     */
+    public int getAxiomsAfter() {
+        return axiomsAfter;
+    }
+
+    /**
+     * get the number of rules after the stage
+     *
+     * @return
+     *          the number of rules
+     */
+    public int getRulesAfter() {
+        return rulesAfter;
+    }
+
+    /**
+     * get the number of iterations of the fixpoints of the stage
+     *
+     * @return
+     *          the number of iterations, 0 if the stage has no fixpoint
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String toString() {
+        return stage + " : " + nanos / 1000 + " us, " + axiomsBefore + " -> " + axiomsAfter + " axioms, "
+                + rulesBefore + " -> " + rulesAfter + " rules, " + iterations + " iterations";
+    }
+}
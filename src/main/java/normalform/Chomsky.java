@@ -3,14 +3,14 @@ package normalform;
 import exception.ChomskyException;
 import exception.GrammarException;
 import grammar.*;
+import metrics.Metrics;
+import metrics.Stage;
+import metrics.StageEvent;
+import utils.SpecialChars;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static java.lang.System.exit;
-
 public class Chomsky {
 
     private Chomsky() {}
@@ -20,71 +20,229 @@ public class Chomsky {
             throw new ChomskyException("Grammar is not epsilon free");
         }
 
-        refactorOneProductionRule(g);
+        removeUnitRules(g);
         Clean.normalize(g);
 
         refactorTerminalsInNonNormalizedRules(g);
+        binarizeRules(g);
 
-        while (!isNormalized(g)) {
-            Rule smallestRule = getSmallestNonNormalizedRule(g);
-            Rule newNormalizedRule = new Rule(Arrays.asList(smallestRule.get(0), smallestRule.get(1)));
-            Character newNormalizedAxiomName = g.getFirstFreeAxiomName();
-
-            g.getAxioms().values().stream().forEach(rules -> rules.stream()
-                    .filter(rule -> !Chomsky.isRuleNormalized(rule))
-                    .filter(rule -> rule.containSubRule(newNormalizedRule))
-                    .forEach(rule -> rule.replace(newNormalizedRule, new Rule(Collections.singletonList(newNormalizedAxiomName)))));
-            g.getAxioms().put(newNormalizedAxiomName, new Rules(Collections.singletonList(newNormalizedRule)));
+        if (!isNormalized(g)) {
+            throw new ChomskyException("Grammar could not be put in CNF");
         }
     }
 
-    private static void refactorOneProductionRule(Grammar g) {
-        g.getAxiomsCopy().entrySet().stream().forEach(axiom ->
-                        axiom.getValue().stream().filter(rule -> rule.size() == 1 && Character.isUpperCase(rule.get(0))).forEach(rule -> {
-                            g.getAxioms().get(axiom.getKey()).remove(rule);
-                            g.getAxioms().get(axiom.getKey()).addAll(g.getAxiomRulesCopy(rule.get(0)));
-                        })
-        );
+    /**
+     * Split the rules of more than two axioms in one pass (see Grammar.binarize),
+     * the helper axioms being shared by all the rules
+     */
+    private static void binarizeRules(Grammar g) throws GrammarException {
+        StageEvent event = Metrics.begin(Stage.BINARIZE, g);
+        Map<Rule, Character> helpers = new HashMap<>();
+        List<Character> axiomNames = new ArrayList<>(g.getAxioms().keySet());
+        for (Character axiomName : axiomNames) {
+            Rules rules = g.getAxioms().get(axiomName);
+            List<Rule> initialRules = rules.stream().collect(Collectors.toList());
+            for (Rule rule : initialRules) {
+                if (rule.size() <= 2) {
+                    continue;
+                }
+
+                rules.replace(rule, g.binarize(rule, helpers));
+            }
+        }
+        Metrics.end(event, g);
     }
 
-    private static void refactorTerminalsInNonNormalizedRules(Grammar g) throws GrammarException {
-        Map<Character, Character> modified = new HashMap<>();
-        for (Map.Entry<Character, Rules> axiom : g.getAxiomsCopy().entrySet()) {
-            for (int i = 0; i < axiom.getValue().size(); ++i) {
-                if (isRuleNormalized(axiom.getValue().get(i))) {
+    /**
+     * Remove the unit rules A -> B : the unit pairs (A, B) such that A derives B
+     * with unit rules are computed once as the transitive closure of a bit matrix
+     * (one row of words per axiom, Warshall algorithm), then the non unit rules
+     * of B are copied in A, weighted by the weight of the best chain of unit rules
+     * from A to B, and by the sum of the inside weights of these chains for the
+     * inside weights (Lehmann algorithm, a cycle of weight w counting for 1 / (1 - w)),
+     * identical rules being merged (see Rules.merge)
+     * A cycle of weight at least 1 has no finite sum, it counts for 1 :
+     * the inside weights are then only those of the best chains
+     * The weights of the chains are only stored for the unit pairs, and not at all
+     * when the unit rules have the default weight 1 : the copied rules keep their weights
+     * The epsilon rule of the starting axiom is not copied : only the starting axiom
+     * may produce epsilon, the axioms deriving it with unit rules do not
+     */
+    private static void removeUnitRules(Grammar g) {
+        StageEvent event = Metrics.begin(Stage.REMOVE_UNIT_RULES, g);
+        List<Character> axiomNames = new ArrayList<>(g.getAxioms().keySet());
+        Map<Character, Integer> ids = new HashMap<>();
+        for (int i = 0; i < axiomNames.size(); ++i) {
+            ids.put(axiomNames.get(i), i);
+        }
+
+        int n = axiomNames.size();
+        long[][] pairs = new long[n][(n + 63) >>> 6];
+        boolean hasUnitRules = false;
+        boolean weighted = false;
+        for (int a = 0; a < n; ++a) {
+            Rules rules = g.getAxioms().get(axiomNames.get(a));
+            for (Rule rule : rules) {
+                Integer b = isUnitRule(rule) ? ids.get(rule.get(0)) : null;
+                if (b != null) {
+                    pairs[a][b >>> 6] |= 1L << b;
+                    hasUnitRules = true;
+                    weighted |= rules.getWeight(rule) != 1 || rules.getInsideWeight(rule) != 1;
+                }
+            }
+        }
+        if (!hasUnitRules) {
+            Metrics.end(event, g);
+            return;
+        }
+
+        // the inside weight and the best weight of the chains from A to B, by A then B
+        List<Map<Integer, double[]>> weights = null;
+        if (weighted) {
+            weights = new ArrayList<>(n);
+            for (int a = 0; a < n; ++a) {
+                Map<Integer, double[]> row = new HashMap<>();
+                Rules rules = g.getAxioms().get(axiomNames.get(a));
+                for (Rule rule : rules) {
+                    Integer b = isUnitRule(rule) ? ids.get(rule.get(0)) : null;
+                    if (b != null) {
+                        row.put(b, new double[] {rules.getInsideWeight(rule), rules.getWeight(rule)});
+                    }
+                }
+                weights.add(row);
+            }
+        }
+
+        long iterations = 0;
+        for (int k = 0; k < n; ++k) {
+            long[] row = pairs[k].clone();
+            Map<Integer, double[]> rowWeights = null;
+            double loop = 0;
+            double bestLoop = 0;
+            if (weighted) {
+                rowWeights = new HashMap<>();
+                for (Map.Entry<Integer, double[]> weight : weights.get(k).entrySet()) {
+                    rowWeights.put(weight.getKey(), weight.getValue().clone());
+                }
+                double[] loopWeights = rowWeights.get(k);
+                if (loopWeights != null) {
+                    loop = loopWeights[0];
+                    bestLoop = loopWeights[1];
+                }
+            }
+            double star = loop < 1 ? 1 / (1 - loop) : 1;
+            for (int a = 0; a < n; ++a) {
+                if ((pairs[a][k >>> 6] & 1L << k) == 0) {
+                    continue;
+                }
+                ++iterations;
+
+                long[] closure = pairs[a];
+                for (int w = 0; w < row.length; ++w) {
+                    closure[w] |= row[w];
+                }
+                if (!weighted) {
                     continue;
                 }
 
-                for (int j = 0; j < axiom.getValue().get(i).size(); ++j) {
-                    if (!Character.isLowerCase(axiom.getValue().get(i).get(j))) {
+                // the best chains do not go around a cycle
+                Map<Integer, double[]> closureWeights = weights.get(a);
+                double factor = (a == k ? loop : closureWeights.get(k)[0]) * star;
+                double bestFactor = a == k ? bestLoop : closureWeights.get(k)[1];
+                for (Map.Entry<Integer, double[]> weight : rowWeights.entrySet()) {
+                    double[] pairWeights = closureWeights.computeIfAbsent(weight.getKey(), b -> new double[2]);
+                    pairWeights[0] += factor * weight.getValue()[0];
+                    pairWeights[1] = Math.max(pairWeights[1], bestFactor * weight.getValue()[1]);
+                }
+            }
+        }
+
+        // get the non unit rules before modifying the axioms, without epsilon
+        List<Rules> nonUnitRules = new ArrayList<>(n);
+        for (Character axiomName : axiomNames) {
+            Rules rules = new Rules();
+            Rules axiomRules = g.getAxioms().get(axiomName);
+            for (Rule rule : axiomRules) {
+                if (rule.size() == 1 && rule.get(0) == SpecialChars.epsilon) {
+                    continue;
+                }
+                if (!isUnitRule(rule) || !ids.containsKey(rule.get(0))) {
+                    rules.add(rule, axiomRules.getWeight(rule), axiomRules.getInsideWeight(rule));
+                }
+            }
+            nonUnitRules.add(rules);
+        }
+
+        for (int a = 0; a < n; ++a) {
+            Rules rules = g.getAxioms().get(axiomNames.get(a));
+            for (int w = 0; w < pairs[a].length; ++w) {
+                for (long bits = pairs[a][w]; bits != 0; bits &= bits - 1) {
+                    rules.remove(Rule.of(axiomNames.get((w << 6) + Long.numberOfTrailingZeros(bits))));
+                }
+            }
+
+            // the chains from A to A derive the rules of A again
+            if (weighted && (pairs[a][a >>> 6] & 1L << a) != 0) {
+                double[] loopWeights = weights.get(a).get(a);
+                for (Rule rule : nonUnitRules.get(a)) {
+                    rules.setWeight(rule, rules.getWeight(rule) * Math.max(1, loopWeights[1]),
+                            rules.getInsideWeight(rule) * (1 + loopWeights[0]));
+                }
+            }
+
+            for (int w = 0; w < pairs[a].length; ++w) {
+                for (long bits = pairs[a][w]; bits != 0; bits &= bits - 1) {
+                    int b = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    if (b == a) {
                         continue;
                     }
 
-                    if (!modified.containsKey(axiom.getValue().get(i).get(j))) {
-                        Character newAxiomName = g.getFirstFreeAxiomName();
-                        modified.put(axiom.getValue().get(i).get(j), newAxiomName);
-                        g.getAxioms().put(newAxiomName, new Rules(Collections.singletonList(new Rule(Collections.singletonList(axiom.getValue().get(i).get(j))))));
+                    Rules inlinedRules = nonUnitRules.get(b);
+                    double[] pairWeights = weighted ? weights.get(a).get(b) : new double[] {1, 1};
+                    for (Rule rule : inlinedRules) {
+                        rules.merge(rule, inlinedRules.getWeight(rule) * pairWeights[1],
+                                inlinedRules.getInsideWeight(rule) * pairWeights[0]);
                     }
-                    g.getAxioms().get(axiom.getKey()).get(i).set(j, modified.get(axiom.getValue().get(i).get(j)));
                 }
             }
         }
+
+        if (event != null) {
+            event.addIterations(iterations);
+            Metrics.end(event, g);
+        }
     }
 
-    private static Rule getSmallestNonNormalizedRule(Grammar g) {
-        Rule smallestRule = null;
-        for (Rules rules : g.getAxiomsCopy().values()) {
-            for (Rule rule : rules) {
-                if (!isRuleNormalized(rule) && (smallestRule == null || smallestRule.size() > rule.size())) {
-                    smallestRule = rule;
-                    if (rule.size() == 3) {
-                        return smallestRule;
+    private static boolean isUnitRule(Rule rule) {
+        return rule.size() == 1 && Grammar.isAxiom(rule.get(0));
+    }
+
+    private static void refactorTerminalsInNonNormalizedRules(Grammar g) throws GrammarException {
+        StageEvent event = Metrics.begin(Stage.REFACTOR_TERMINALS, g);
+        Map<Character, Character> modified = new HashMap<>();
+        for (Map.Entry<Character, Rules> axiom : g.getAxiomsCopy().entrySet()) {
+            for (Rule rule : axiom.getValue()) {
+                if (isRuleNormalized(rule)) {
+                    continue;
+                }
+
+                Rule refactored = rule;
+                for (int j = 0; j < rule.size(); ++j) {
+                    if (Grammar.isAxiom(rule.get(j))) {
+                        continue;
                     }
+
+                    if (!modified.containsKey(rule.get(j))) {
+                        Character newAxiomName = g.getFirstFreeAxiomName();
+                        modified.put(rule.get(j), newAxiomName);
+                        g.addGeneratedAxiom(newAxiomName, new Rules(Collections.singletonList(Rule.of(rule.get(j)))));
+                    }
+                    refactored = refactored.set(j, modified.get(rule.get(j)));
                 }
+                g.getAxioms().get(axiom.getKey()).replace(rule, refactored);
             }
         }
-
-        return smallestRule;
+        Metrics.end(event, g);
     }
 
     public static boolean isNormalized(Grammar g) {
@@ -103,6 +261,6 @@ public class Chomsky {
     }
 
     private static boolean isRuleNormalized(Rule rule) {
-        return rule.size() == 1 || (rule.size() == 2 && Character.isUpperCase(rule.get(0)) && Character.isUpperCase(rule.get(1)));
+        return (rule.size() == 1 && !Grammar.isAxiom(rule.get(0))) || (rule.size() == 2 && Grammar.isAxiom(rule.get(0)) && Grammar.isAxiom(rule.get(1)));
     }
 }
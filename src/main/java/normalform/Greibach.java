@@ -1,16 +1,555 @@
 package normalform;
 
-import grammar.Grammar;
+import exception.GrammarException;
+import exception.GreibachException;
+import grammar.*;
+import utils.SpecialChars;
+
+import java.util.*;
 
 /**
+ * Put a grammar in CNF in GNF (Greibach Normal Form) : each rule is
+ * a terminal followed by axioms, and only the starting axiom can produce epsilon
  *
- * TODO greibach normalizer
+ * The axioms are ordered by the strongly connected components of the left corner
+ * graph (A -> B if there is a rule A -> BC), found by the Tarjan algorithm :
+ * the components are normalized from the bottom, so the left corners of an axiom
+ * are already in GNF, except in its own component.
+ * - An axiom which is not left recursive is normalized by replacing its left corner
+ *   by its rules : A -> BC gives A -> a x C for each rule B -> a x
+ * - The left recursion of a component is removed with the left corner transformation
+ *   (Rosenkrantz) rather than with the substitutions of the textbook algorithm,
+ *   which can make the grammar exponentially larger. A[B] is the rest of a word of A
+ *   when the beginning of the word has been derived from B, for A and B in the component :
+ *      A -> a x A[C]           for each rule C -> a x, C in the component, with a x in GNF
+ *                              (C -> a, or C -> ED with E below the component, replaced by its rules)
+ *      A[B] -> D A[C]          for each rule C -> BD, C in the component
+ *      A[A] -> epsilon
+ *   The epsilon of A[A] is removed and D is replaced by its rules, in GNF at the end.
+ *   Only the retained axioms of the component are transformed (the starting axiom,
+ *   the right children and the left corners of the other components), the others
+ *   being only left corners inside the component, and a pair A[B] is created when
+ *   a rule uses it, so A[B] exists only if a word of A can begin with a derivation of B.
+ * The weights are multiplied along the substitutions, and identical rules are merged :
+ * the greatest weight is kept and the inside weights are summed (see Rules.merge).
  */
 public class Greibach {
+    /**
+     * The maximum size of a grammar in GNF (see Grammar.getSize) :
+     * the GNF of a long chain of left corners is much larger than the CNF
+     */
+    public static final int MAX_SIZE = 1 << 22;
+
+    /**
+     * The grammar to normalize
+     */
+    private final Grammar g;
+
+    /**
+     * The axioms, by id
+     */
+    private final List<Character> axiomNames;
+
+    /**
+     * The number of axioms
+     */
+    private final int n;
+
+    /**
+     * For each axiom A, the rules A -> BD : left children B, right children D,
+     * weights and inside weights
+     */
+    private final int[][] leftChildren;
+    private final int[][] rightChildren;
+    private final double[][] binaryWeights;
+    private final double[][] binaryInsideWeights;
+
+    /**
+     * For each axiom, the rules A -> a : terminals, weights and inside weights
+     */
+    private final char[][] terminals;
+    private final double[][] terminalWeights;
+    private final double[][] terminalInsideWeights;
+
+    /**
+     * The component of each axiom
+     */
+    private final int[] components;
+
+    /**
+     * The axioms whose rules are used outside the left corners of their component :
+     * the starting axiom, the right children and the left corners of the other components
+     */
+    private final boolean[] retained;
+
+    /**
+     * The rules in GNF of each axiom
+     */
+    private final Rules[] normalized;
+
+    /**
+     * The name of each axiom in the rules : a copy of the starting axiom
+     * without epsilon is used if the starting axiom appears in the rules
+     */
+    private final char[] rightNames;
+
+    /**
+     * The size of the rules in GNF
+     */
+    private long size;
+
+    /**
+     * The rules A[B] -> D A[C] of the components,
+     * D being replaced by its rules when all the axioms are in GNF
+     */
+    private final List<PairRule> pairRules = new ArrayList<>();
+
+    /**
+     * A rule A[B] -> D A[C], the epsilon of A[A] being removed
+     */
+    private static final class PairRule {
+        final Rules rules;
+        final int D;
+        final char pair;
+        final boolean nullable;
+        final double weight;
+        final double insideWeight;
+
+        PairRule(Rules rules, int D, char pair, boolean nullable, double weight, double insideWeight) {
+            this.rules = rules;
+            this.D = D;
+            this.pair = pair;
+            this.nullable = nullable;
+            this.weight = weight;
+            this.insideWeight = insideWeight;
+        }
+    }
+
+    private Greibach(Grammar g) {
+        this.g = g;
+        axiomNames = new ArrayList<>(g.getAxioms().keySet());
+        n = axiomNames.size();
+        Map<Character, Integer> ids = new HashMap<>();
+        for (int i = 0; i < n; ++i) {
+            ids.put(axiomNames.get(i), i);
+        }
+
+        leftChildren = new int[n][];
+        rightChildren = new int[n][];
+        binaryWeights = new double[n][];
+        binaryInsideWeights = new double[n][];
+        terminals = new char[n][];
+        terminalWeights = new double[n][];
+        terminalInsideWeights = new double[n][];
+        for (int A = 0; A < n; ++A) {
+            Rules rules = g.getAxioms().get(axiomNames.get(A));
+            int binaries = 0;
+            int terminalsCount = 0;
+            leftChildren[A] = new int[rules.size()];
+            rightChildren[A] = new int[rules.size()];
+            binaryWeights[A] = new double[rules.size()];
+            binaryInsideWeights[A] = new double[rules.size()];
+            terminals[A] = new char[rules.size()];
+            terminalWeights[A] = new double[rules.size()];
+            terminalInsideWeights[A] = new double[rules.size()];
+            for (Rule rule : rules) {
+                if (rule.size() == 2) {
+                    leftChildren[A][binaries] = ids.get(rule.get(0));
+                    rightChildren[A][binaries] = ids.get(rule.get(1));
+                    binaryWeights[A][binaries] = rules.getWeight(rule);
+                    binaryInsideWeights[A][binaries++] = rules.getInsideWeight(rule);
+                } else if (rule.get(0) != SpecialChars.epsilon) {
+                    terminals[A][terminalsCount] = rule.get(0);
+                    terminalWeights[A][terminalsCount] = rules.getWeight(rule);
+                    terminalInsideWeights[A][terminalsCount++] = rules.getInsideWeight(rule);
+                }
+            }
+            leftChildren[A] = Arrays.copyOf(leftChildren[A], binaries);
+            rightChildren[A] = Arrays.copyOf(rightChildren[A], binaries);
+            binaryWeights[A] = Arrays.copyOf(binaryWeights[A], binaries);
+            binaryInsideWeights[A] = Arrays.copyOf(binaryInsideWeights[A], binaries);
+            terminals[A] = Arrays.copyOf(terminals[A], terminalsCount);
+            terminalWeights[A] = Arrays.copyOf(terminalWeights[A], terminalsCount);
+            terminalInsideWeights[A] = Arrays.copyOf(terminalInsideWeights[A], terminalsCount);
+        }
+
+        components = new int[n];
+        retained = new boolean[n];
+        normalized = new Rules[n];
+        rightNames = new char[n];
+        for (int A = 0; A < n; ++A) {
+            rightNames[A] = axiomNames.get(A);
+        }
+    }
+
+    /**
+     * Put a grammar in GNF
+     *
+     * Condition : the grammar must be in CNF (Chomsky Normal Form)
+     *
+     * @param g
+     *          the grammar
+     * @throws GreibachException
+     *          if the grammar is not in CNF, or if it is too large in GNF
+     * @throws GrammarException
+     *          if there are not enough free axiom names
+     */
+    public static void normalize(Grammar g) throws GreibachException, GrammarException {
+        if (!Chomsky.isNormalized(g)) {
+            throw new GreibachException("Grammar is not in CNF");
+        }
+        if (g.getStartAxiom() == null || !g.getAxioms().containsKey(g.getStartAxiom())) {
+            return;
+        }
+
+        new Greibach(g).transform();
+    }
+
+    /**
+     * Normalize the components from the bottom, then replace
+     * the rules of the grammar and remove the unreachable axioms
+     *
+     * @throws GreibachException
+     *          if the grammar is too large in GNF
+     * @throws GrammarException
+     *          if there are not enough free axiom names
+     */
+    private void transform() throws GreibachException, GrammarException {
+        Character startName = g.getStartAxiom();
+        int S = axiomNames.indexOf(startName);
+        Rules startRules = g.getAxioms().get(startName);
+        Rule epsilon = Rule.of(SpecialChars.epsilon);
+        Character startCopy = null;
+        for (int A = 0; A < n && startCopy == null; ++A) {
+            if (startRules.contains(epsilon) && contains(rightChildren[A], S)) {
+                startCopy = g.getFirstFreeAxiomName();
+                g.addGeneratedAxiom(startCopy, new Rules());
+                rightNames[S] = startCopy;
+            }
+        }
+
+        List<int[]> orderedComponents = computeComponents();
+        retained[S] = true;
+        for (int A = 0; A < n; ++A) {
+            for (int r = 0; r < leftChildren[A].length; ++r) {
+                retained[rightChildren[A][r]] = true;
+                retained[leftChildren[A][r]] |= components[leftChildren[A][r]] != components[A];
+            }
+        }
+
+        for (int[] component : orderedComponents) {
+            if (component.length == 1 && !contains(leftChildren[component[0]], component[0])) {
+                normalizeAxiom(component[0]);
+            } else {
+                normalizeComponent(component);
+            }
+        }
+
+        for (PairRule pairRule : pairRules) {
+            Rules rules = normalized[pairRule.D];
+            for (Rule rule : rules) {
+                double weight = pairRule.weight * rules.getWeight(rule);
+                double insideWeight = pairRule.insideWeight * rules.getInsideWeight(rule);
+                add(pairRule.rules, append(rule, pairRule.pair), weight, insideWeight);
+                if (pairRule.nullable) {
+                    add(pairRule.rules, rule, weight, insideWeight);
+                }
+            }
+        }
+
+        if (startCopy != null) {
+            g.getAxioms().get(startCopy).addAll(normalized[S]);
+        }
+        if (startRules.contains(epsilon)) {
+            normalized[S].add(epsilon, startRules.getWeight(epsilon), startRules.getInsideWeight(epsilon));
+        }
+        for (int A = 0; A < n; ++A) {
+            g.getAxioms().put(axiomNames.get(A), normalized[A]);
+        }
+        removeUnreachableAxioms();
+    }
+
+    /**
+     * Normalize an axiom which is not left recursive : its left corners are in GNF
+     *
+     * @param A
+     *          the axiom
+     * @throws GreibachException
+     *          if the grammar is too large in GNF
+     */
+    private void normalizeAxiom(int A) throws GreibachException {
+        Rules rules = new Rules();
+        for (int t = 0; t < terminals[A].length; ++t) {
+            add(rules, Rule.of(terminals[A][t]), terminalWeights[A][t], terminalInsideWeights[A][t]);
+        }
+        for (int r = 0; r < leftChildren[A].length; ++r) {
+            Rules leftCornerRules = normalized[leftChildren[A][r]];
+            for (Rule rule : leftCornerRules) {
+                add(rules, append(rule, rightNames[rightChildren[A][r]]), binaryWeights[A][r] * leftCornerRules.getWeight(rule),
+                        binaryInsideWeights[A][r] * leftCornerRules.getInsideWeight(rule));
+            }
+        }
+        normalized[A] = rules;
+    }
+
+    /**
+     * Remove the left recursion of a component with the pairs A[B],
+     * the components below being in GNF
+     *
+     * @param component
+     *          the axioms of the component
+     * @throws GreibachException
+     *          if the grammar is too large in GNF
+     * @throws GrammarException
+     *          if there are not enough free axiom names
+     */
+    private void normalizeComponent(int[] component) throws GreibachException, GrammarException {
+        int id = components[component[0]];
+        // the rules C -> BD of the component, by left corner B
+        Map<Integer, List<int[]>> parents = new HashMap<>();
+        for (int C : component) {
+            for (int r = 0; r < leftChildren[C].length; ++r) {
+                if (components[leftChildren[C][r]] == id) {
+                    parents.computeIfAbsent(leftChildren[C][r], B -> new ArrayList<>()).add(new int[] {C, r});
+                }
+            }
+        }
+
+        for (int A : component) {
+            if (!retained[A]) {
+                normalized[A] = new Rules();
+                continue;
+            }
+
+            // A -> a x A[C]
+            Map<Integer, Character> pairs = new HashMap<>();
+            Deque<Integer> queue = new ArrayDeque<>();
+            Rules rules = new Rules();
+            for (int C : component) {
+                for (int t = 0; t < terminals[C].length; ++t) {
+                    Rule rule = Rule.of(terminals[C][t]);
+                    add(rules, append(rule, getPair(pairs, queue, C)), terminalWeights[C][t], terminalInsideWeights[C][t]);
+                    if (C == A) {
+                        add(rules, rule, terminalWeights[C][t], terminalInsideWeights[C][t]);
+                    }
+                }
+                for (int r = 0; r < leftChildren[C].length; ++r) {
+                    int E = leftChildren[C][r];
+                    if (components[E] == id) {
+                        continue;
+                    }
+
+                    Rules leftCornerRules = normalized[E];
+                    for (Rule leftCornerRule : leftCornerRules) {
+                        Rule rule = append(leftCornerRule, rightNames[rightChildren[C][r]]);
+                        double weight = binaryWeights[C][r] * leftCornerRules.getWeight(leftCornerRule);
+                        double insideWeight = binaryInsideWeights[C][r] * leftCornerRules.getInsideWeight(leftCornerRule);
+                        add(rules, append(rule, getPair(pairs, queue, C)), weight, insideWeight);
+                        if (C == A) {
+                            add(rules, rule, weight, insideWeight);
+                        }
+                    }
+                }
+            }
+            normalized[A] = rules;
+
+            // A[B] -> D A[C], for the pairs used by the rules above
+            while (!queue.isEmpty()) {
+                int B = queue.poll();
+                Rules pairRules = g.getAxioms().get(pairs.get(B));
+                for (int[] parent : parents.getOrDefault(B, Collections.emptyList())) {
+                    int C = parent[0];
+                    int r = parent[1];
+                    this.pairRules.add(new PairRule(pairRules, rightChildren[C][r], getPair(pairs, queue, C), C == A,
+                            binaryWeights[C][r], binaryInsideWeights[C][r]));
+                }
+            }
+        }
+    }
+
+    /**
+     * get the pair A[B] of an axiom A, created the first time it is used
+     *
+     * @param pairs
+     *          the pairs of A, by axiom B
+     * @param queue
+     *          the axioms B of the new pairs, whose rules are not built yet
+     * @param B
+     *          the left corner of the pair
+     * @return
+     *          the name of the pair
+     * @throws GrammarException
+     *          if there are not enough free axiom names
+     */
+    private char getPair(Map<Integer, Character> pairs, Deque<Integer> queue, int B) throws GrammarException {
+        Character pair = pairs.get(B);
+        if (pair == null) {
+            pair = g.getFirstFreeAxiomName();
+            g.addGeneratedAxiom(pair, new Rules());
+            pairs.put(B, pair);
+            queue.add(B);
+        }
+        return pair;
+    }
+
+    /**
+     * Compute the strongly connected components of the left corner graph
+     * (iterative Tarjan algorithm) : a component is found after the components
+     * of its left corners, so they are in the order of the normalization
+     *
+     * @return
+     *          the axioms of each component
+     */
+    private List<int[]> computeComponents() {
+        List<int[]> result = new ArrayList<>();
+        int[] order = new int[n];
+        Arrays.fill(order, -1);
+        int[] low = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] calls = new int[n];
+        int[] next = new int[n];
+        int counter = 0;
+        int stackSize = 0;
+        for (int root = 0; root < n; ++root) {
+            if (order[root] >= 0) {
+                continue;
+            }
+
+            int callsSize = 0;
+            calls[callsSize++] = root;
+            order[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (callsSize > 0) {
+                int v = calls[callsSize - 1];
+                if (next[v] < leftChildren[v].length) {
+                    int w = leftChildren[v][next[v]++];
+                    if (order[w] < 0) {
+                        order[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        calls[callsSize++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+
+                --callsSize;
+                if (callsSize > 0) {
+                    low[calls[callsSize - 1]] = Math.min(low[calls[callsSize - 1]], low[v]);
+                }
+                if (low[v] != order[v]) {
+                    continue;
+                }
 
-    private Greibach() {}
+                int top = stackSize;
+                do {
+                    --stackSize;
+                    onStack[stack[stackSize]] = false;
+                    components[stack[stackSize]] = result.size();
+                } while (stack[stackSize] != v);
+                result.add(Arrays.copyOfRange(stack, stackSize, top));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove the axioms which are not reachable from the starting axiom
+     * (the left corners which have been replaced by their rules)
+     */
+    private void removeUnreachableAxioms() {
+        Set<Character> reachable = new HashSet<>();
+        Deque<Character> queue = new ArrayDeque<>();
+        reachable.add(g.getStartAxiom());
+        queue.add(g.getStartAxiom());
+        while (!queue.isEmpty()) {
+            for (Rule rule : g.getAxioms().get(queue.poll())) {
+                for (int i = 1; i < rule.size(); ++i) {
+                    if (reachable.add(rule.get(i))) {
+                        queue.add(rule.get(i));
+                    }
+                }
+            }
+        }
+
+        for (Character axiomName : new ArrayList<>(g.getAxioms().keySet())) {
+            if (!reachable.contains(axiomName)) {
+                g.removeAxiom(axiomName);
+            }
+        }
+    }
+
+    /**
+     * Add a rule in GNF, merged with an identical rule (see Rules.merge)
+     *
+     * @param rules
+     *          the rules of the axiom
+     * @param rule
+     *          the rule
+     * @param weight
+     *          the weight of the rule
+     * @param insideWeight
+     *          the inside weight of the rule
+     * @throws GreibachException
+     *          if the grammar is too large in GNF
+     */
+    private void add(Rules rules, Rule rule, double weight, double insideWeight) throws GreibachException {
+        if (rules.merge(rule, weight, insideWeight)) {
+            size += rule.size() + 1;
+            if (size > MAX_SIZE) {
+                throw new GreibachException("Grammar is too large in GNF, more than " + MAX_SIZE + " symbols");
+            }
+        }
+    }
+
+    private static Rule append(Rule rule, char c) {
+        char[] symbols = Arrays.copyOf(rule.toCharArray(), rule.size() + 1);
+        symbols[rule.size()] = c;
+        return Rule.of(symbols);
+    }
+
+    private static boolean contains(int[] array, int i) {
+        for (int value : array) {
+            if (value == i) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isNormalized(Grammar g) {
+        if (g.hasEpsilons() && !g.hasEpsilonsOnlyInStart()) {
+            return false;
+        }
+
+        for (Rules rules : g.getAxioms().values()) {
+            for (Rule rule : rules) {
+                if (g.hasEpsilons() && rule.contains(g.getStartAxiom())) {
+                    return false;
+                }
+                if (!isRuleNormalized(rule)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 
-    public static void normalize(Grammar g) {
+    private static boolean isRuleNormalized(Rule rule) {
+        if (Grammar.isAxiom(rule.get(0))) {
+            return false;
+        } else if (rule.get(0) == SpecialChars.epsilon) {
+            return rule.size() == 1;
+        }
 
+        for (int i = 1; i < rule.size(); ++i) {
+            if (!Grammar.isAxiom(rule.get(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 }
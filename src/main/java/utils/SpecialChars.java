@@ -10,5 +10,40 @@ public class SpecialChars {
      */
     public static final Character epsilon = '&';
 
+    /**
+     * The character between an axiom and its rules
+     */
+    public static final Character axiomSeparator = ':';
+
+    /**
+     * The character between two rules
+     */
+    public static final Character ruleSeparator = '|';
+
+    /**
+     * The character starting an axiom name of several characters
+     */
+    public static final Character nameStart = '<';
+
+    /**
+     * The character ending an axiom name of several characters
+     */
+    public static final Character nameEnd = '>';
+
+    /**
+     * The character around terminals which could be read as something else
+     */
+    public static final Character quote = '\'';
+
+    /**
+     * The character starting the weight of a rule
+     */
+    public static final Character weightStart = '[';
+
+    /**
+     * The character ending the weight of a rule
+     */
+    public static final Character weightEnd = ']';
+
     private SpecialChars() {}
 }
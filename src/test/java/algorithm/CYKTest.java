@@ -0,0 +1,200 @@
+package algorithm;
+
+import grammar.Clean;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import normalform.Chomsky;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The engines of the CYK algorithm must agree with each other
+ * and with StringCYK, the reference implementation, on random grammars
+ */
+class CYKTest {
+    private static final int GRAMMARS = 200;
+
+    /**
+     * Put a random grammar in CNF
+     */
+    private static Grammar randomCnf(long seed) throws Exception {
+        return cnf(RandomGrammars.source(new Random(seed), 5));
+    }
+
+    /**
+     * Put a grammar in CNF
+     */
+    private static Grammar cnf(String source) throws Exception {
+        Grammar g = RandomGrammars.parse(source);
+        Clean.normalize(g);
+        Chomsky.normalize(g);
+        return g;
+    }
+
+    @Test
+    void enginesAgreeWithStringCYK() throws Exception {
+        List<String> words = RandomGrammars.words(6);
+        for (long seed = 0; seed < GRAMMARS; ++seed) {
+            Grammar g = randomCnf(seed);
+            CompiledGrammar compiled = CompiledGrammar.compile(g);
+            Earley earley = Earley.compile(g);
+            MembershipChecker checker = new MembershipChecker(compiled);
+            IncrementalCYK incremental = new IncrementalCYK(compiled);
+
+            for (String word : words) {
+                boolean expected = StringCYK.isMember(g, word);
+                String message = "seed " + seed + ", word '" + word + "'\n" + g;
+                assertEquals(expected, BitsetCYK.isMember(compiled, word), message);
+                assertEquals(expected, ParallelCYK.isMember(compiled, word), message);
+                assertEquals(expected, ValiantCYK.isMember(compiled, word), message);
+                assertEquals(expected, CYK.isMember(compiled, word), message);
+                assertEquals(expected, checker.isMember(word), message);
+                assertEquals(expected, earley.isMember(word), message);
+
+                incremental.reset();
+                for (char c : word.toCharArray()) {
+                    incremental.append(c);
+                }
+                assertEquals(expected, incremental.isMember(), message);
+            }
+        }
+    }
+
+    @Test
+    void prefixesOfTheMembersAreViable() throws Exception {
+        List<String> words = RandomGrammars.words(6);
+        for (long seed = 0; seed < GRAMMARS / 10; ++seed) {
+            CompiledGrammar compiled = CompiledGrammar.compile(randomCnf(seed));
+            IncrementalCYK incremental = new IncrementalCYK(compiled);
+            Set<String> prefixes = new HashSet<>();
+            for (String word : words) {
+                if (BitsetCYK.isMember(compiled, word) || (word.isEmpty() && compiled.acceptsEmptyWord())) {
+                    for (int i = 0; i <= word.length(); ++i) {
+                        prefixes.add(word.substring(0, i));
+                    }
+                }
+            }
+
+            for (String word : words) {
+                incremental.reset();
+                for (char c : word.toCharArray()) {
+                    incremental.append(c);
+                }
+                // a viable prefix may only be completed by a word longer than 6 characters
+                if (prefixes.contains(word)) {
+                    assertTrue(incremental.isViablePrefix(), "seed " + seed + ", word '" + word + "'");
+                }
+            }
+        }
+
+        IncrementalCYK anbn = new IncrementalCYK(CompiledGrammar.compile(cnf("S : aSb | ab\n")));
+        assertTrue(anbn.isViablePrefix());
+        for (char c : "aaab".toCharArray()) {
+            anbn.append(c);
+            assertTrue(anbn.isViablePrefix());
+        }
+        anbn.append('a');
+        assertFalse(anbn.isViablePrefix());
+        anbn.reset();
+        anbn.append('b');
+        assertFalse(anbn.isViablePrefix());
+    }
+
+    @Test
+    void enginesAgreeOnLongWords() throws Exception {
+        Random r = new Random(0);
+        for (long seed = 0; seed < GRAMMARS / 10; ++seed) {
+            CompiledGrammar compiled = CompiledGrammar.compile(randomCnf(seed));
+            for (int length : new int[] {CYK.PARALLEL_THRESHOLD, CYK.VALIANT_THRESHOLD + 1}) {
+                String word = RandomGrammars.word(r, length);
+                boolean expected = BitsetCYK.isMember(compiled, word);
+                assertEquals(expected, ParallelCYK.isMember(compiled, word), "seed " + seed);
+                assertEquals(expected, ValiantCYK.isMember(compiled, word), "seed " + seed);
+                assertEquals(expected, new MembershipChecker(compiled).isMember(word), "seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void tooLongWordIsRejected() throws Exception {
+        // the chart of 50000 characters has more than 2^31 cells
+        CompiledGrammar compiled = CompiledGrammar.compile(RandomGrammars.parse("S : SS | a\n"));
+        String word = RandomGrammars.word(new Random(0), 50000).replace('b', 'a');
+        assertThrows(IllegalArgumentException.class, () -> BitsetCYK.isMember(compiled, word));
+        assertThrows(IllegalArgumentException.class, () -> ParallelCYK.isMember(compiled, word));
+    }
+
+    @Test
+    void batchAgreesWithSingleWords() throws Exception {
+        List<String> words = RandomGrammars.words(6);
+        for (long seed = 0; seed < GRAMMARS / 10; ++seed) {
+            CompiledGrammar compiled = CompiledGrammar.compile(randomCnf(seed));
+            boolean[] expected = new boolean[words.size()];
+            for (int i = 0; i < expected.length; ++i) {
+                expected[i] = BitsetCYK.isMember(compiled, words.get(i));
+            }
+
+            assertArrayEquals(expected, BatchCYK.isMemberAll(compiled, words));
+            assertArrayEquals(expected, BatchCYK.isMemberAll(compiled, words.parallelStream()));
+            Boolean[] lazy = BatchCYK.members(compiled, words.stream()).toArray(Boolean[]::new);
+            for (int i = 0; i < expected.length; ++i) {
+                assertEquals(expected[i], lazy[i], words.get(i));
+            }
+        }
+    }
+
+    @Test
+    void interleavedBatchesOfTwoGrammarsDoNotShareResults() throws Exception {
+        List<String> words = RandomGrammars.words(6);
+        CompiledGrammar first = CompiledGrammar.compile(randomCnf(1));
+        CompiledGrammar second = CompiledGrammar.compile(randomCnf(2));
+        // the checker of the thread goes from a grammar to the other at each word
+        Iterator<Boolean> firstMembers = BatchCYK.members(first, words.stream()).iterator();
+        Iterator<Boolean> secondMembers = BatchCYK.members(second, words.stream()).iterator();
+        for (String word : words) {
+            assertEquals(BitsetCYK.isMember(first, word), firstMembers.next(), word);
+            assertEquals(BitsetCYK.isMember(second, word), secondMembers.next(), word);
+        }
+    }
+
+    @Test
+    void firstParseTreeProducesTheWord() throws Exception {
+        for (long seed = 0; seed < GRAMMARS / 10; ++seed) {
+            CompiledGrammar compiled = CompiledGrammar.compile(randomCnf(seed));
+            for (String word : RandomGrammars.words(6)) {
+                ParseTree tree = CYK.parseFirst(compiled, word);
+                if (word.isEmpty() || !BitsetCYK.isMember(compiled, word)) {
+                    assertNull(tree, word);
+                } else {
+                    assertEquals(word, leaves(tree), word);
+                }
+            }
+        }
+    }
+
+    /**
+     * get the terminals of the leaves of a tree, from left to right
+     */
+    private static String leaves(ParseTree tree) {
+        if (tree.isLeaf()) {
+            return String.valueOf(tree.getSymbol());
+        }
+        StringBuilder ret = new StringBuilder();
+        for (ParseTree child : tree.getChildren()) {
+            ret.append(leaves(child));
+        }
+        return ret.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package algorithm;
+
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The caches must find the grammars by fingerprint and the words by value,
+ * forget the least recently used ones, and count their hits, misses and evictions
+ */
+class GrammarCacheTest {
+    private static final String ANBN = "S : aSb | ab\n";
+    private static final String ANY = "S : aS | bS | a | b\n";
+    private static final String EMPTY = "S : aSb | &\n";
+
+    @Test
+    void grammarsAreFoundByFingerprint() throws Exception {
+        GrammarCache cache = new GrammarCache(2, 2);
+        Grammar anbn = RandomGrammars.parse(ANBN);
+        String source = anbn.toString();
+
+        CompiledGrammar compiled = cache.compile(anbn);
+        assertEquals(source, anbn.toString());
+        // a grammar parsed again is not compiled again
+        assertSame(compiled, cache.compile(RandomGrammars.parse(ANBN)));
+        assertCounters(cache, 1, 1, 0);
+
+        cache.compile(RandomGrammars.parse(ANY));
+        // anbn is the least recently used
+        cache.compile(RandomGrammars.parse(EMPTY));
+        assertCounters(cache, 1, 3, 1);
+        assertEquals(2, cache.size());
+
+        cache.compile(RandomGrammars.parse(ANY));
+        assertNotSame(compiled, cache.compile(RandomGrammars.parse(ANBN)));
+        assertCounters(cache, 2, 4, 2);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void wordsAreRemembered() throws Exception {
+        GrammarCache cache = new GrammarCache(1, 2);
+        Grammar anbn = RandomGrammars.parse(ANBN);
+        assertTrue(cache.isMember(anbn, "aabb"));
+        assertTrue(cache.isMember(anbn, "aabb"));
+        assertFalse(cache.isMember(anbn, "abab"));
+        // aabb is the least recently used
+        assertTrue(cache.isMember(anbn, "ab"));
+        assertTrue(cache.isMember(anbn, "aabb"));
+
+        MembershipCache words = cache.get(anbn);
+        assertEquals(1, words.getHits());
+        assertEquals(4, words.getMisses());
+        assertEquals(2, words.getEvictions());
+        assertEquals(2, words.size());
+        assertCounters(cache, 5, 1, 0);
+    }
+
+    private static void assertCounters(GrammarCache cache, long hits, long misses, long evictions) {
+        assertEquals(hits + " " + misses + " " + evictions, cache.getHits() + " " + cache.getMisses() + " " + cache.getEvictions());
+    }
+}
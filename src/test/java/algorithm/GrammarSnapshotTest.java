@@ -0,0 +1,64 @@
+package algorithm;
+
+import exception.SnapshotException;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A snapshot must be loaded into a compiled grammar
+ * recognizing the same words with the same parse trees
+ */
+class GrammarSnapshotTest {
+    private static final int GRAMMARS = 50;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadedSnapshotIsTheSameGrammar() throws Exception {
+        List<String> words = RandomGrammars.words(6);
+        for (long seed = 0; seed < GRAMMARS; ++seed) {
+            Grammar source = RandomGrammars.parse(RandomGrammars.source(new Random(seed), 5));
+            Path file = directory.resolve("grammar" + seed + ".snapshot");
+            GrammarSnapshot.write(source, file);
+
+            CompiledGrammar compiled = new GrammarCache(1, 1).compile(source);
+            CompiledGrammar loaded = GrammarSnapshot.load(file, source);
+            assertEquals(compiled.getAxiomsCount(), loaded.getAxiomsCount());
+            for (String word : words) {
+                assertEquals(CYK.isMember(compiled, word), CYK.isMember(loaded, word), "seed " + seed + ", word '" + word + "'");
+                assertEquals(String.valueOf(CYK.parseFirst(compiled, word)), String.valueOf(CYK.parseFirst(loaded, word)));
+                assertEquals(WeightedCYK.inside(compiled, word), WeightedCYK.inside(loaded, word));
+            }
+        }
+    }
+
+    @Test
+    void staleSnapshotIsRejected() throws Exception {
+        Path file = directory.resolve("stale.snapshot");
+        GrammarSnapshot.write(RandomGrammars.parse("S : aSb | ab\n"), file);
+        assertThrows(SnapshotException.class, () -> GrammarSnapshot.load(file, RandomGrammars.parse("S : aSb | &\n")));
+    }
+
+    @Test
+    void corruptedSnapshotIsRejected() throws Exception {
+        Path file = directory.resolve("corrupted.snapshot");
+        Grammar source = RandomGrammars.parse("S : aSb | ab\n");
+        GrammarSnapshot.write(source, file);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(SnapshotException.class, () -> GrammarSnapshot.load(file, source));
+    }
+}
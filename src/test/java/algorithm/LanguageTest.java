@@ -0,0 +1,97 @@
+package algorithm;
+
+import grammar.Clean;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import normalform.Chomsky;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The enumerated words must be the members of the language in shortlex order,
+ * and the sampled words must be members counted as their parse trees
+ */
+class LanguageTest {
+    private static final int GRAMMARS = 100;
+    private static final int MAX_LENGTH = 6;
+
+    private static CompiledGrammar compile(String source) throws Exception {
+        Grammar g = RandomGrammars.parse(source);
+        Clean.normalize(g);
+        Chomsky.normalize(g);
+        return CompiledGrammar.compile(g);
+    }
+
+    private static boolean isMember(CompiledGrammar g, String word) {
+        return word.isEmpty() ? g.acceptsEmptyWord() : BitsetCYK.isMember(g, word);
+    }
+
+    @Test
+    void enumeratedWordsAreTheMembers() throws Exception {
+        List<String> words = RandomGrammars.words(MAX_LENGTH);
+        for (long seed = 0; seed < GRAMMARS; ++seed) {
+            CompiledGrammar compiled = compile(RandomGrammars.source(new Random(seed), 5));
+            List<String> expected = words.stream().filter(word -> isMember(compiled, word)).collect(Collectors.toList());
+
+            assertEquals(expected, new LanguageEnumerator(compiled).words(MAX_LENGTH).collect(Collectors.toList()), "seed " + seed);
+            // with a small memory, the words of the long lengths are merged again each time
+            assertEquals(expected, new LanguageEnumerator(compiled, 1024).words(MAX_LENGTH).collect(Collectors.toList()), "seed " + seed);
+            assertEquals(expected.stream().filter(word -> word.length() >= 3).collect(Collectors.toList()),
+                    new LanguageEnumerator(compiled).words(3, MAX_LENGTH).parallel().collect(Collectors.toList()), "seed " + seed);
+        }
+    }
+
+    @Test
+    void samplesAreMembersCountedAsTheirTrees() throws Exception {
+        for (long seed = 0; seed < GRAMMARS; ++seed) {
+            CompiledGrammar compiled = compile(RandomGrammars.source(new Random(seed), 5));
+            WordSampler sampler = new WordSampler(compiled);
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int length = 0; length <= MAX_LENGTH; ++length) {
+                BigInteger trees = length == 0 && compiled.acceptsEmptyWord() ? BigInteger.ONE : BigInteger.ZERO;
+                for (String word : RandomGrammars.words(length)) {
+                    ParseForest forest = word.length() < length ? null : ParseCYK.parse(compiled, word);
+                    if (forest != null) {
+                        trees = trees.add(forest.countTrees());
+                    }
+                }
+                assertEquals(trees, sampler.count(length), "seed " + seed + ", length " + length);
+
+                String word = sampler.sample(length, random);
+                if (trees.signum() == 0) {
+                    assertNull(word);
+                    assertEquals(0, sampler.samples(length, seed).count());
+                } else {
+                    assertEquals(length, word.length());
+                    assertTrue(isMember(compiled, word), "seed " + seed + ", word '" + word + "'");
+                    assertTrue(sampler.samples(length, seed).limit(20).allMatch(sample -> isMember(compiled, sample)));
+                    assertEquals(sampler.samples(length, seed).limit(20).collect(Collectors.toList()),
+                            sampler.samples(length, seed).limit(20).collect(Collectors.toList()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void samplesOfAnUnambiguousGrammarAreUniform() throws Exception {
+        // the 2^4 words of length 4 are equally likely
+        WordSampler sampler = new WordSampler(compile("S : aS | bS | a | b\n"));
+        assertEquals(BigInteger.valueOf(16), sampler.count(4));
+        Map<String, Long> counts = sampler.samples(4, 0).limit(16000)
+                .collect(Collectors.groupingBy(word -> word, Collectors.counting()));
+        assertEquals(16, counts.size());
+        for (long count : counts.values()) {
+            assertTrue(count > 800 && count < 1200, counts.toString());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package algorithm;
+
+import grammar.Clean;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import normalform.Chomsky;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A parse forest must count and build all the parse trees of a word,
+ * and a parse tree must go back to the rules before the CNF
+ */
+class ParseForestTest {
+    private static final int GRAMMARS = 50;
+    private static final BigInteger MAX_TREES = BigInteger.valueOf(1000);
+
+    private static CompiledGrammar compile(String source) throws Exception {
+        Grammar g = RandomGrammars.parse(source);
+        Clean.normalize(g);
+        Chomsky.normalize(g);
+        return CompiledGrammar.compile(g);
+    }
+
+    @Test
+    void forestHasTheCatalanNumberOfTrees() throws Exception {
+        // the trees of a^n with S -> SS | a are the binary trees with n leaves
+        CompiledGrammar compiled = compile("S : SS | a\n");
+        StringBuilder word = new StringBuilder("a");
+        for (int n = 1; n <= 10; ++n, word.append('a')) {
+            ParseForest forest = ParseCYK.parse(compiled, word.toString());
+            assertEquals(catalan(n - 1), forest.countTrees(), word.toString());
+            assertTrees(forest, word.toString());
+        }
+        // counted without building the trees
+        for (int n = 11; n <= 60; ++n, word.append('a')) {
+            assertEquals(catalan(n - 1), ParseCYK.parse(compiled, word.toString()).countTrees(), word.toString());
+        }
+        assertNull(ParseCYK.parse(compiled, "ab"));
+    }
+
+    /**
+     * get the number of binary trees with n internal nodes
+     */
+    private static BigInteger catalan(int n) {
+        BigInteger ret = BigInteger.ONE;
+        for (int i = 0; i < n; ++i) {
+            ret = ret.multiply(BigInteger.valueOf(2 * (2 * i + 1))).divide(BigInteger.valueOf(i + 2));
+        }
+        return ret;
+    }
+
+    @Test
+    void forestHasAllTheTrees() throws Exception {
+        for (long seed = 0; seed < GRAMMARS; ++seed) {
+            CompiledGrammar compiled = compile(RandomGrammars.source(new Random(seed), 5));
+            for (String word : RandomGrammars.words(5)) {
+                ParseForest forest = word.isEmpty() ? null : ParseCYK.parse(compiled, word);
+                // the trees of the most ambiguous words are only counted
+                if (forest != null && forest.countTrees().compareTo(MAX_TREES) <= 0) {
+                    assertTrees(forest, word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check that the trees of a forest are distinct, as many as counted,
+     * and that they produce the word
+     */
+    private static void assertTrees(ParseForest forest, String word) {
+        Set<String> trees = new HashSet<>();
+        for (ParseTree tree : forest.trees()) {
+            assertEquals(word, leaves(tree));
+            assertTrue(trees.add(tree.toString()), tree.toString());
+        }
+        assertEquals(forest.countTrees(), BigInteger.valueOf(trees.size()), word);
+        assertEquals(trees.size(), forest.stream().count());
+    }
+
+    @Test
+    void treeWithoutGeneratedAxiomsHasTheRulesOfTheGrammar() throws Exception {
+        CompiledGrammar compiled = compile("S : aSb | ab\n");
+        assertEquals("S(a S(a S(a b) b) b)", CYK.parseFirst(compiled, "aaabbb").withoutGeneratedAxioms().toString());
+
+        compiled = compile("<Expr> : <Expr>+<Term> | <Term>\n<Term> : x | (<Expr>)\n");
+        ParseTree tree = CYK.parseFirst(compiled, "x+(x)").withoutGeneratedAxioms();
+        assertEquals("x+(x)", leaves(tree));
+        assertEquals(3, tree.getChildren().size(), tree.toString());
+        for (ParseTree child : tree.getChildren()) {
+            assertFalse(child.isGenerated(), tree.toString());
+        }
+    }
+
+    /**
+     * get the terminals of the leaves of a tree, from left to right
+     */
+    private static String leaves(ParseTree tree) {
+        if (tree.isLeaf()) {
+            return String.valueOf(tree.getSymbol());
+        }
+        StringBuilder ret = new StringBuilder();
+        for (ParseTree child : tree.getChildren()) {
+            ret.append(leaves(child));
+        }
+        return ret.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The results must be written in the order of the words for every grammar,
+ * a word which can not be checked must not stop the others,
+ * and the run must end when the words can not be read
+ */
+class BatchCheckerTest {
+    @TempDir
+    Path directory;
+
+    private static InputStream words(String... words) {
+        return new ByteArrayInputStream(String.join("\n", words).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A stream of words failing after its first word,
+     * with an IOException or with an unexpected exception
+     */
+    private static InputStream failing(boolean io) {
+        return new SequenceInputStream(words("ab\n"), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (io) {
+                    throw new IOException("broken");
+                }
+                throw new IllegalStateException("broken");
+            }
+        });
+    }
+
+    @Test
+    void resultsFollowTheWords() throws Exception {
+        Files.write(directory.resolve("anbn.txt"), "S : aSb | ab\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("any.txt"), "S : aS | bS | a | b\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("bad.txt"), "S : '&'\n".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        new BatchChecker(2, 2).run(directory, words("ab", "aabb", "ba", "aab", "ab"), out, new PrintStream(err, true));
+
+        List<String> expected = Arrays.asList(
+                "anbn.txt\tab\ttrue", "anbn.txt\taabb\ttrue", "any.txt\tab\ttrue", "any.txt\taabb\ttrue",
+                "anbn.txt\tba\tfalse", "anbn.txt\taab\tfalse", "any.txt\tba\ttrue", "any.txt\taab\ttrue",
+                "anbn.txt\tab\ttrue", "any.txt\tab\ttrue");
+        assertEquals(expected, Arrays.asList(out.toString("UTF-8").split("\n")));
+        assertTrue(err.toString("UTF-8").startsWith("bad.txt : "), err.toString("UTF-8"));
+    }
+
+    @Test
+    void wordWhichCanNotBeCheckedIsAnError() throws Exception {
+        Files.write(directory.resolve("any.txt"), "S : SS | a\n".getBytes(StandardCharsets.UTF_8));
+        // the chart of 50000 characters has more than 2^31 cells
+        char[] tooLong = new char[50000];
+        Arrays.fill(tooLong, 'a');
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        new BatchChecker(1, 1).run(directory, words("a", new String(tooLong), "aa"), out, new PrintStream(err, true));
+
+        List<String> expected = Arrays.asList("any.txt\ta\ttrue", "any.txt\t" + new String(tooLong) + "\terror", "any.txt\taa\ttrue");
+        assertEquals(expected, Arrays.asList(out.toString("UTF-8").split("\n")));
+        assertTrue(err.toString("UTF-8").contains("any.txt : 1 words not checked"), err.toString("UTF-8"));
+    }
+
+    @Test
+    void failingWordsEndTheRun() throws Exception {
+        Files.write(directory.resolve("anbn.txt"), "S : aSb | ab\n".getBytes(StandardCharsets.UTF_8));
+        PrintStream err = new PrintStream(new ByteArrayOutputStream(), true);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new BatchChecker(1, 1).run(directory, failing(false), new ByteArrayOutputStream(), err));
+        assertEquals("broken", e.getCause().getMessage());
+        assertThrows(IOException.class,
+                () -> new BatchChecker(1, 1).run(directory, failing(true), new ByteArrayOutputStream(), err));
+    }
+}
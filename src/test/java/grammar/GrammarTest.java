@@ -0,0 +1,191 @@
+package grammar;
+
+import exception.BadFormattedGrammarException;
+import normalform.Chomsky;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A printed grammar must be parsed again into the same grammar,
+ * and the fingerprint must only depend on the grammar itself
+ */
+class GrammarTest {
+    private static final int GRAMMARS = 200;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Write a grammar in the format of the files
+     */
+    private static String print(Grammar g) {
+        return g.toString().replace(" -> ", " : ");
+    }
+
+    @Test
+    void printedGrammarIsParsedAgain() throws Exception {
+        for (long seed = 0; seed < GRAMMARS; ++seed) {
+            Grammar g = RandomGrammars.parse(RandomGrammars.source(new Random(seed), 5));
+            Grammar parsed = RandomGrammars.parse(print(g));
+            assertEquals(g.getFingerprint(), parsed.getFingerprint(), print(g));
+            assertEquals(g.toString(), parsed.toString());
+        }
+    }
+
+    @Test
+    void printedGrammarKeepsTheWeightsAndTheQuotedTerminals() throws Exception {
+        Grammar g = RandomGrammars.parse("<Expr> : <Expr>'+'<Term> [0.25] | <Term> [0.75]\n<Term> : 'S' | (<Expr>) [0.5]\n");
+        Grammar parsed = RandomGrammars.parse(print(g));
+        assertEquals(g.getFingerprint(), parsed.getFingerprint(), print(g));
+        Rules rules = parsed.getAxioms().get(parsed.getStartAxiom());
+        assertEquals(0.25, rules.getWeight(rules.get(0)));
+    }
+
+    @Test
+    void printedGrammarKeepsTheQuotedReservedCharacters() throws Exception {
+        Grammar g = RandomGrammars.parse("S : a':'b | '|'S'<' | ' '\n");
+        Grammar parsed = RandomGrammars.parse(print(g));
+        assertEquals(g.getFingerprint(), parsed.getFingerprint(), print(g));
+        assertEquals(g.toString(), parsed.toString());
+    }
+
+    @Test
+    void quotedEpsilonIsRejected() {
+        BadFormattedGrammarException e = assertThrows(BadFormattedGrammarException.class, () -> RandomGrammars.parse("S : a'&'b\n"));
+        assertEquals(1, e.getLine());
+        assertEquals(7, e.getColumn());
+    }
+
+    @Test
+    void errorsAreLocated() {
+        assertError("S : a\n: b\n", 2, 1);
+        assertError("S : a\nA b\n", 2, 3);
+        assertError("S : a | | b\n", 1, 9);
+        assertError("S : a&\n", 1, 6);
+        assertError("S : a | & | &\n", 1, 13);
+        assertError("S : a [0]\n", 1, 7);
+        assertError("S : a\n<Item : b\n", 2, 6);
+    }
+
+    private static void assertError(String source, int line, int column) {
+        BadFormattedGrammarException e = assertThrows(BadFormattedGrammarException.class, () -> RandomGrammars.parse(source), source);
+        assertEquals(line + ":" + column, e.getLine() + ":" + e.getColumn(), source + "\n" + e.getMessage());
+    }
+
+    @Test
+    void fileIsParsedLikeItsText() throws Exception {
+        // a file with a byte order mark and names out of ASCII
+        StringBuilder source = new StringBuilder("\uFEFFS : <\u00C9l\u00E9ment0>\n");
+        for (int i = 0; i < 5000; ++i) {
+            source.append("\u00C9l\u00E9ment").append(i).append(" : a<\u00C9l\u00E9ment").append((i + 1) % 5000).append("> | b\n");
+        }
+        Path file = directory.resolve("large.txt");
+        Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+        assertEquals(RandomGrammars.parse(source.toString()).getFingerprint(), new Grammar(file).getFingerprint());
+
+        Path invalid = directory.resolve("invalid.txt");
+        Files.write(invalid, new byte[] {'S', ' ', ':', ' ', (byte) 0xC3, 'a'});
+        assertThrows(IOException.class, () -> new Grammar(invalid));
+    }
+
+    @Test
+    void fingerprintDoesNotDependOnTheOrder() throws Exception {
+        Grammar g = RandomGrammars.parse("S : <Item> | a\n<Item> : bS | &\n");
+        Grammar reordered = RandomGrammars.parse("S : a | <Item>\n<Item> : & | bS\n");
+        assertEquals(g.getFingerprint(), reordered.getFingerprint());
+
+        Grammar other = RandomGrammars.parse("S : <Item> | a\n<Item> : aS | &\n");
+        assertNotEquals(g.getFingerprint(), other.getFingerprint());
+    }
+
+    @Test
+    void fingerprintFollowsTheModifications() throws Exception {
+        Grammar g = RandomGrammars.parse("S : <Item> | a\n<Item> : bS | &\n");
+        String fingerprint = g.getFingerprint();
+        assertEquals(fingerprint, g.getFingerprint());
+
+        Rules rules = g.getAxioms().get(g.getStartAxiom());
+        rules.setWeight(Rule.of('a'), 0.5);
+        String weighted = g.getFingerprint();
+        assertNotEquals(fingerprint, weighted);
+
+        rules.add(Rule.of('b'));
+        assertNotEquals(weighted, g.getFingerprint());
+        rules.remove(Rule.of('b'));
+        assertEquals(weighted, g.getFingerprint());
+    }
+
+    @Test
+    void fingerprintDoesNotDependOnTheOtherGrammars() throws Exception {
+        String source = "<Expr> : <Expr>+<Term> | <Term>\n<Term> : x | (<Expr>)\n";
+        Grammar g = RandomGrammars.parse(source);
+        Clean.normalize(g);
+        Chomsky.normalize(g);
+        String fingerprint = g.getFingerprint();
+
+        // other grammars intern names and generate helpers in their own tables
+        for (long seed = 0; seed < 10; ++seed) {
+            Grammar other = RandomGrammars.parse(RandomGrammars.source(new Random(seed), 8));
+            Clean.normalize(other);
+            Chomsky.normalize(other);
+        }
+
+        Grammar again = RandomGrammars.parse(source);
+        Clean.normalize(again);
+        Chomsky.normalize(again);
+        assertEquals(fingerprint, again.getFingerprint());
+        assertEquals(g.toString(), again.toString());
+    }
+
+    @Test
+    void rulesOfAnotherAxiomAreNotPut() throws Exception {
+        Grammar g = RandomGrammars.parse("S : <Item> | a\n<Item> : bS | &\n");
+        Character item = g.getSymbols().getAxiom("Item");
+        Rules startRules = g.getAxioms().get(g.getStartAxiom());
+        String fingerprint = g.getFingerprint();
+
+        assertThrows(IllegalStateException.class, () -> g.getAxioms().put(item, startRules));
+        assertEquals(fingerprint, g.getFingerprint());
+        assertEquals(Collections.singletonList(g.getStartAxiom()), g.getCallingAxioms(item));
+        assertEquals(Collections.singletonList(item), g.getCallingAxioms(g.getStartAxiom()));
+    }
+
+    @Test
+    void rulesAreInternedByAllTheThreads() {
+        List<String> words = RandomGrammars.words(10);
+        Rule[] rules = words.stream().map(Rule::of).toArray(Rule[]::new);
+        for (int i = 0; i < 4; ++i) {
+            Rule[] again = words.parallelStream().map(Rule::of).toArray(Rule[]::new);
+            for (int j = 0; j < rules.length; ++j) {
+                assertSame(rules[j], again[j], words.get(j));
+            }
+        }
+    }
+
+    @Test
+    void axiomsAreLimitedByGrammar() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < Symbols.MAX_AXIOMS / 2; ++i) {
+            source.append("Item").append(i).append(" : a<Item").append((i + 1) % (Symbols.MAX_AXIOMS / 2)).append("> | b\n");
+        }
+
+        // together, the grammars have more axioms than a single grammar can have
+        for (int i = 0; i < 3; ++i) {
+            Grammar g = RandomGrammars.parse(source.toString());
+            assertEquals(Symbols.MAX_AXIOMS / 2, g.getAxioms().size());
+        }
+    }
+}
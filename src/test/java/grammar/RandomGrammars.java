@@ -0,0 +1,128 @@
+package grammar;
+
+import exception.BadFormattedGrammarException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class generates the random grammars and the words of the tests
+ *
+ * The grammars have single letter and named axioms, epsilon rules,
+ * unit rules and long rules over the terminals a and b, so they
+ * go through every step of Clean and of the normal forms.
+ */
+public final class RandomGrammars {
+    /**
+     * The terminals of the grammars and of the words
+     */
+    public static final String TERMINALS = "ab";
+
+    private RandomGrammars() {}
+
+    /**
+     * Generate the source of a random grammar, the first axiom is S
+     *
+     * @param r
+     *          the random generator
+     * @param axioms
+     *          the number of axioms
+     * @return
+     *          the lines of the grammar
+     */
+    public static String source(Random r, int axioms) {
+        String[] names = new String[axioms];
+        for (int i = 0; i < axioms; ++i) {
+            names[i] = i == 0 ? "S" : i % 2 == 1 ? String.valueOf((char) ('A' + i)) : "<Item" + i + ">";
+        }
+
+        StringBuilder ret = new StringBuilder();
+        for (String name : names) {
+            ret.append(name.startsWith("<") ? name.substring(1, name.length() - 1) : name).append(" : ");
+            int rules = 1 + r.nextInt(3);
+            boolean epsilon = false;
+            for (int j = 0; j < rules; ++j) {
+                if (j > 0) {
+                    ret.append(" | ");
+                }
+                // epsilon appears at most once in an axiom
+                int length = epsilon ? 1 + r.nextInt(3) : r.nextInt(4);
+                if (length == 0) {
+                    ret.append('&');
+                    epsilon = true;
+                }
+                for (int k = 0; k < length; ++k) {
+                    if (r.nextInt(3) == 0) {
+                        ret.append(TERMINALS.charAt(r.nextInt(TERMINALS.length())));
+                    } else {
+                        ret.append(names[r.nextInt(axioms)]);
+                    }
+                }
+            }
+            ret.append('\n');
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Parse the source of a grammar
+     *
+     * @param source
+     *          the lines of the grammar
+     * @return
+     *          the grammar
+     * @throws BadFormattedGrammarException
+     *          if the source is not a grammar
+     */
+    public static Grammar parse(String source) throws BadFormattedGrammarException {
+        try {
+            return new Grammar(new StringReader(source));
+        } catch (IOException e) {
+            // a StringReader can not fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * get all the words over the terminals up to a length, in shortlex order
+     *
+     * @param maxLength
+     *          the maximum length
+     * @return
+     *          the words, from the empty word
+     */
+    public static List<String> words(int maxLength) {
+        List<String> words = new ArrayList<>();
+        words.add("");
+        for (int i = 0; i < words.size(); ++i) {
+            if (words.get(i).length() < maxLength) {
+                for (char c : TERMINALS.toCharArray()) {
+                    words.add(words.get(i) + c);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Generate a random word over the terminals
+     *
+     * @param r
+     *          the random generator
+     * @param length
+     *          the length of the word
+     * @return
+     *          the word
+     */
+    public static String word(Random r, int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; ++i) {
+            word[i] = TERMINALS.charAt(r.nextInt(TERMINALS.length()));
+        }
+        return new String(word);
+    }
+}
@@ -0,0 +1,135 @@
+package metrics;
+
+import algorithm.BitsetCYK;
+import algorithm.CYK;
+import algorithm.CompiledGrammar;
+import algorithm.ParallelCYK;
+import grammar.Clean;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import normalform.Chomsky;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The listener must receive one event per stage of the pipeline and per chart,
+ * with the sizes of the grammars and of the charts, and nothing once it is removed
+ */
+class MetricsTest {
+    /**
+     * A listener keeping the events
+     */
+    private static final class Events implements PipelineListener {
+        final List<StageEvent> stages = Collections.synchronizedList(new ArrayList<>());
+        final List<ChartEvent> charts = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void stageFinished(StageEvent event) {
+            stages.add(event);
+        }
+
+        @Override
+        public void chartFilled(ChartEvent event) {
+            charts.add(event);
+        }
+    }
+
+    @AfterEach
+    void removeListener() {
+        Metrics.setListener(null);
+    }
+
+    private static CompiledGrammar compile(String source) throws Exception {
+        Grammar g = RandomGrammars.parse(source);
+        Clean.normalize(g);
+        Chomsky.normalize(g);
+        return CompiledGrammar.compile(g);
+    }
+
+    @Test
+    void everyStageIsReported() throws Exception {
+        Events events = new Events();
+        Metrics.setListener(events);
+        compile("S : aSb | A\nA : c | &\n");
+
+        List<Stage> stages = new ArrayList<>();
+        for (StageEvent event : events.stages) {
+            stages.add(event.getStage());
+            assertTrue(event.getNanos() >= 0, event.toString());
+        }
+        for (Stage stage : Stage.values()) {
+            assertTrue(stages.contains(stage), stage + " in " + stages);
+        }
+
+        StageEvent parse = events.stages.get(0);
+        assertEquals(Stage.PARSE, parse.getStage());
+        assertEquals(2, parse.getAxiomsAfter());
+        assertEquals(4, parse.getRulesAfter());
+        StageEvent compile = events.stages.get(events.stages.size() - 1);
+        assertEquals(Stage.COMPILE, compile.getStage());
+        assertEquals(compile.getAxiomsBefore(), compile.getAxiomsAfter());
+    }
+
+    @Test
+    void chartsAreReported() throws Exception {
+        CompiledGrammar compiled = compile("S : SS | a\n");
+        MetricsRegistry registry = new MetricsRegistry();
+        Events events = new Events();
+        Metrics.setListener(new PipelineListener() {
+            @Override
+            public void chartFilled(ChartEvent event) {
+                registry.chartFilled(event);
+                events.chartFilled(event);
+            }
+        });
+
+        String word = "aaaaaaaaaa";
+        assertTrue(BitsetCYK.isMember(compiled, word));
+        assertEquals(1, events.charts.size());
+        ChartEvent chart = events.charts.get(0);
+        assertEquals(word.length(), chart.getWordLength());
+        assertFalse(chart.isParallel());
+        // every cell of a^n holds S
+        assertEquals(55, chart.getCells());
+        assertEquals(55, chart.getNonEmptyCells());
+        assertTrue(chart.getPairChecks() > 0);
+        assertEquals(chart.getPairChecks(), registry.getPairChecks());
+
+        StringBuilder longWord = new StringBuilder();
+        for (int i = 0; i < CYK.PARALLEL_THRESHOLD; ++i) {
+            longWord.append('a');
+        }
+        assertTrue(ParallelCYK.isMember(compiled, longWord.toString()));
+        assertEquals(2, events.charts.size());
+        assertTrue(events.charts.get(1).isParallel());
+
+        Metrics.setListener(null);
+        assertFalse(Metrics.isEnabled());
+        BitsetCYK.isMember(compiled, word);
+        assertEquals(2, events.charts.size());
+    }
+
+    @Test
+    void registrySumsTheStages() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Metrics.setListener(registry);
+        compile("S : aSb | ab\n");
+        compile("S : aS | b\n");
+
+        assertEquals(2, registry.getRuns(Stage.PARSE));
+        assertEquals(2, registry.getRuns(Stage.COMPILE));
+        assertTrue(registry.toString().contains("COMPILE"), registry.toString());
+
+        registry.clear();
+        assertEquals(0, registry.getRuns(Stage.PARSE));
+        assertEquals(0, registry.getNanos(Stage.PARSE));
+    }
+}
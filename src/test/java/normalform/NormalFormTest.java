@@ -0,0 +1,135 @@
+package normalform;
+
+import algorithm.CYK;
+import algorithm.CompiledGrammar;
+import algorithm.Earley;
+import algorithm.WeightedCYK;
+import grammar.Clean;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Clean, Chomsky and Greibach must keep the language of random grammars,
+ * the reference being the Earley algorithm on the grammar as parsed
+ */
+class NormalFormTest {
+    private static final int GRAMMARS = 300;
+
+    @Test
+    void cleanAndChomskyKeepTheLanguage() throws Exception {
+        List<String> words = RandomGrammars.words(6);
+        for (long seed = 0; seed < GRAMMARS; ++seed) {
+            String source = RandomGrammars.source(new Random(seed), 5);
+            Grammar parsed = RandomGrammars.parse(source);
+            Earley reference = Earley.compile(parsed);
+
+            Grammar g = new Grammar(parsed);
+            Clean.normalize(g);
+            Chomsky.normalize(g);
+            assertTrue(Chomsky.isNormalized(g), source);
+            CompiledGrammar compiled = CompiledGrammar.compile(g);
+
+            for (String word : words) {
+                assertEquals(reference.isMember(word), CYK.isMember(compiled, word), "word '" + word + "'\n" + source + "--\n" + g);
+            }
+        }
+    }
+
+    @Test
+    void greibachKeepsTheLanguage() throws Exception {
+        List<String> words = RandomGrammars.words(6);
+        for (long seed = 0; seed < GRAMMARS / 3; ++seed) {
+            String source = RandomGrammars.source(new Random(seed), 4);
+            Grammar parsed = RandomGrammars.parse(source);
+            Earley reference = Earley.compile(parsed);
+
+            Grammar g = new Grammar(parsed);
+            Clean.normalize(g);
+            Chomsky.normalize(g);
+            Greibach.normalize(g);
+            assertTrue(Greibach.isNormalized(g), source);
+            Earley normalized = Earley.compile(g);
+
+            for (String word : words) {
+                assertEquals(reference.isMember(word), normalized.isMember(word), "word '" + word + "'\n" + source + "--\n" + g);
+            }
+        }
+    }
+
+    @Test
+    void greibachTransformsALongLeftRecursiveCycle() throws Exception {
+        // S -> Item1 B -> Item2 BB -> ... -> S B^100 : a cycle of 100 left corners
+        StringBuilder source = new StringBuilder("S : <Item1>B | a\n");
+        for (int i = 1; i < 100; ++i) {
+            source.append("Item").append(i).append(" : ").append(i < 99 ? "<Item" + (i + 1) + ">" : "S").append("B\n");
+        }
+        source.append("B : b\n");
+
+        Grammar g = RandomGrammars.parse(source.toString());
+        Greibach.normalize(g);
+        assertTrue(Greibach.isNormalized(g));
+        Earley normalized = Earley.compile(g);
+        StringBuilder word = new StringBuilder("a");
+        for (int i = 1; i <= 200; ++i) {
+            word.append('b');
+            assertEquals(i % 100 == 0, normalized.isMember(word.toString()), word.toString());
+        }
+    }
+
+    @Test
+    void cleanAndChomskyKeepTheInsideWeights() throws Exception {
+        // unit cycle : S derives itself with weight 1/4
+        assertInside("S : A [0.5] | a [0.5]\nA : S [0.5] | b [0.5]\n", "a", 2.0 / 3);
+        assertInside("S : A [0.5] | a [0.5]\nA : S [0.5] | b [0.5]\n", "b", 1.0 / 3);
+        // nullable axioms
+        assertInside("S : AB\nA : a [0.6] | & [0.4]\nB : b [0.5] | & [0.5]\n", "ab", 0.3);
+        assertInside("S : AB\nA : a [0.6] | & [0.4]\nB : b [0.5] | & [0.5]\n", "b", 0.2);
+        assertInside("S : AB\nA : a [0.6] | & [0.4]\nB : b [0.5] | & [0.5]\n", "", 0.2);
+        // S -> SA with a nullable A derives S -> S
+        assertInside("S : SA [0.5] | b [0.5]\nA : a [0.5] | & [0.5]\n", "b", 2.0 / 3);
+        assertInside("S : SA [0.5] | b [0.5]\nA : a [0.5] | & [0.5]\n", "ba", 2.0 / 9);
+    }
+
+    @Test
+    void cleanAndChomskyKeepTheBestDerivations() throws Exception {
+        // two derivations of a, the best one has the weight 0.5
+        assertViterbi("S : A [0.5] | B [0.5]\nA : a\nB : a\n", "a", 0.5);
+        assertViterbi("S : A [0.5] | a [0.5]\nA : S [0.5] | b [0.5]\n", "a", 0.5);
+        assertViterbi("S : A [0.5] | a [0.5]\nA : S [0.5] | b [0.5]\n", "b", 0.25);
+        assertViterbi("S : AB\nA : a [0.6] | & [0.4]\nB : b [0.5] | & [0.5]\n", "b", 0.2);
+        assertViterbi("S : SA [0.5] | b [0.5]\nA : a [0.5] | & [0.5]\n", "ba", 0.125);
+    }
+
+    @Test
+    void normalFormsKeepAnUnweightedGrammarUnweighted() throws Exception {
+        Grammar g = RandomGrammars.parse("S : AB | A\nA : a | &\nB : b | &\n");
+        Clean.normalize(g);
+        assertFalse(g.toString().contains("["), g.toString());
+        Chomsky.normalize(g);
+        assertEquals(0, WeightedCYK.viterbi(CompiledGrammar.compile(g), "ab"));
+        Greibach.normalize(g);
+        assertFalse(g.toString().contains("["), g.toString());
+    }
+
+    private static void assertInside(String source, String word, double expected) throws Exception {
+        Grammar g = RandomGrammars.parse(source);
+        Clean.normalize(g);
+        Chomsky.normalize(g);
+        assertEquals(expected, Math.exp(WeightedCYK.inside(CompiledGrammar.compile(g), word)), 1e-9, source + "--\n" + g);
+    }
+
+    private static void assertViterbi(String source, String word, double expected) throws Exception {
+        Grammar g = RandomGrammars.parse(source);
+        Clean.normalize(g);
+        Chomsky.normalize(g);
+        assertEquals(expected, Math.exp(WeightedCYK.viterbi(CompiledGrammar.compile(g), word)), 1e-9, source + "--\n" + g);
+    }
+}